@@ -0,0 +1,40 @@
+package com.ctre.phoenix.motion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emulation of the Phoenix buffered trajectory point streams.  The handle
+ * is the index of the stream's {@link TrajectoryBuffer}, which the
+ * emulated motor controller firmware reads from when the stream is
+ * started.
+ */
+public class BuffTrajPointStreamJNI {
+	private static final List<TrajectoryBuffer> _streams = new ArrayList<>();
+
+	public static synchronized long Create1() {
+		_streams.add(new TrajectoryBuffer(Integer.MAX_VALUE));
+		return _streams.size() - 1;
+	}
+
+	public static synchronized int Clear(long handle) {
+		_streams.get((int) handle).clear();
+		return 0;
+	}
+
+	public static synchronized int Write(long handle, double position, double velocity, double arbFeedFwd,
+			double auxiliaryPos, double auxiliaryVel, double auxiliaryArbFeedFwd, int profileSlotSelect0,
+			int profileSlotSelect1, boolean isLastPoint, boolean zeroPos, int timeDur, boolean useAuxPID) {
+		_streams.get((int) handle).push(position, velocity, arbFeedFwd, auxiliaryPos, auxiliaryVel,
+				auxiliaryArbFeedFwd, profileSlotSelect0, profileSlotSelect1, isLastPoint, zeroPos, timeDur, useAuxPID);
+		return 0;
+	}
+
+	/**
+	 * @return The points of a stream, for the firmware.  Callers
+	 *         synchronize on this class while reading them.
+	 */
+	public static synchronized TrajectoryBuffer GetBuffer(long handle) {
+		return _streams.get((int) handle);
+	}
+}
@@ -11,7 +11,7 @@ public class BufferedTrajectoryPointStream{
 
     public BufferedTrajectoryPointStream()
     {
-        m_handle = 0;
+        m_handle = BuffTrajPointStreamJNI.Create1();
     }
 	/**
 	 * Clear all trajectory points.
@@ -19,7 +19,7 @@ public class BufferedTrajectoryPointStream{
 	 */
     public ErrorCode Clear()
     {
-        return ErrorCode.valueOf(0);
+        return ErrorCode.valueOf(BuffTrajPointStreamJNI.Clear(m_handle));
     }
 	/**
 	 * Write a single trajectory point into the buffer.
@@ -28,7 +28,9 @@ public class BufferedTrajectoryPointStream{
 	 */
     public ErrorCode Write(TrajectoryPoint trajPt)
     {
-        int status = 0;
+        int status = BuffTrajPointStreamJNI.Write(m_handle, trajPt.position, trajPt.velocity, trajPt.arbFeedFwd,
+                trajPt.auxiliaryPos, trajPt.auxiliaryVel, trajPt.auxiliaryArbFeedFwd, trajPt.profileSlotSelect0,
+                trajPt.profileSlotSelect1, trajPt.isLastPoint, trajPt.zeroPos, trajPt.timeDur, trajPt.useAuxPID);
         return ErrorCode.valueOf(status);
     }
 	/**
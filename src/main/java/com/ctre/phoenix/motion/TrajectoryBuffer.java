@@ -0,0 +1,190 @@
+package com.ctre.phoenix.motion;
+
+/**
+ * Bounded FIFO of trajectory points, as held by the emulated API and motor
+ * controller firmware.
+ *
+ * <p>The members of the points are kept in parallel primitive arrays used
+ * as a ring, so pushing and popping points does not allocate.  The arrays
+ * start small and grow up to the capacity.
+ */
+public class TrajectoryBuffer {
+	private static final byte kIsLast = 1;
+	private static final byte kZeroPos = 2;
+	private static final byte kUseAuxPID = 4;
+
+	private final int _capacity;
+	private int _head;
+	private int _size;
+	private double[] _position;
+	private double[] _velocity;
+	private double[] _arbFeedFwd;
+	private double[] _auxiliaryPos;
+	private double[] _auxiliaryVel;
+	private double[] _auxiliaryArbFeedFwd;
+	private int[] _profileSlotSelect0;
+	private int[] _profileSlotSelect1;
+	private int[] _timeDur;
+	private byte[] _flags;
+
+	/**
+	 * @param capacity Maximum number of points.
+	 */
+	public TrajectoryBuffer(int capacity) {
+		_capacity = capacity;
+		allocate(Math.min(capacity, 64));
+	}
+
+	private void allocate(int length) {
+		_position = new double[length];
+		_velocity = new double[length];
+		_arbFeedFwd = new double[length];
+		_auxiliaryPos = new double[length];
+		_auxiliaryVel = new double[length];
+		_auxiliaryArbFeedFwd = new double[length];
+		_profileSlotSelect0 = new int[length];
+		_profileSlotSelect1 = new int[length];
+		_timeDur = new int[length];
+		_flags = new byte[length];
+	}
+
+	// Double the arrays, unrolling the ring so that the head is at 0.
+	private void grow() {
+		int n = (int) Math.min((long) _capacity, _position.length * 2L);
+		double[] position = new double[n], velocity = new double[n], arbFeedFwd = new double[n];
+		double[] auxiliaryPos = new double[n], auxiliaryVel = new double[n], auxiliaryArbFeedFwd = new double[n];
+		int[] profileSlotSelect0 = new int[n], profileSlotSelect1 = new int[n], timeDur = new int[n];
+		byte[] flags = new byte[n];
+		for (int k = 0; k < _size; k++) {
+			int j = index(k);
+			position[k] = _position[j];
+			velocity[k] = _velocity[j];
+			arbFeedFwd[k] = _arbFeedFwd[j];
+			auxiliaryPos[k] = _auxiliaryPos[j];
+			auxiliaryVel[k] = _auxiliaryVel[j];
+			auxiliaryArbFeedFwd[k] = _auxiliaryArbFeedFwd[j];
+			profileSlotSelect0[k] = _profileSlotSelect0[j];
+			profileSlotSelect1[k] = _profileSlotSelect1[j];
+			timeDur[k] = _timeDur[j];
+			flags[k] = _flags[j];
+		}
+		_position = position;
+		_velocity = velocity;
+		_arbFeedFwd = arbFeedFwd;
+		_auxiliaryPos = auxiliaryPos;
+		_auxiliaryVel = auxiliaryVel;
+		_auxiliaryArbFeedFwd = auxiliaryArbFeedFwd;
+		_profileSlotSelect0 = profileSlotSelect0;
+		_profileSlotSelect1 = profileSlotSelect1;
+		_timeDur = timeDur;
+		_flags = flags;
+		_head = 0;
+	}
+
+	private int index(int i) {
+		int j = _head + i;
+		return j < _position.length ? j : j - _position.length;
+	}
+
+	/**
+	 * Append a point.
+	 *
+	 * @return false if the buffer is full.
+	 */
+	public boolean push(double position, double velocity, double arbFeedFwd, double auxiliaryPos,
+			double auxiliaryVel, double auxiliaryArbFeedFwd, int profileSlotSelect0, int profileSlotSelect1,
+			boolean isLastPoint, boolean zeroPos, int timeDur, boolean useAuxPID) {
+		if (_size == _capacity)
+			return false;
+		if (_size == _position.length)
+			grow();
+		int i = index(_size);
+		_position[i] = position;
+		_velocity[i] = velocity;
+		_arbFeedFwd[i] = arbFeedFwd;
+		_auxiliaryPos[i] = auxiliaryPos;
+		_auxiliaryVel[i] = auxiliaryVel;
+		_auxiliaryArbFeedFwd[i] = auxiliaryArbFeedFwd;
+		_profileSlotSelect0[i] = profileSlotSelect0;
+		_profileSlotSelect1[i] = profileSlotSelect1;
+		_timeDur[i] = timeDur;
+		_flags[i] = (byte) ((isLastPoint ? kIsLast : 0) | (zeroPos ? kZeroPos : 0) | (useAuxPID ? kUseAuxPID : 0));
+		_size++;
+		return true;
+	}
+
+	/**
+	 * Append point i of another buffer.
+	 *
+	 * @return false if this buffer is full.
+	 */
+	public boolean push(TrajectoryBuffer from, int i) {
+		int j = from.index(i);
+		byte flags = from._flags[j];
+		return push(from._position[j], from._velocity[j], from._arbFeedFwd[j], from._auxiliaryPos[j],
+				from._auxiliaryVel[j], from._auxiliaryArbFeedFwd[j], from._profileSlotSelect0[j],
+				from._profileSlotSelect1[j], (flags & kIsLast) != 0, (flags & kZeroPos) != 0, from._timeDur[j],
+				(flags & kUseAuxPID) != 0);
+	}
+
+	/**
+	 * Remove the oldest point.
+	 */
+	public void pop() {
+		if (_size == 0)
+			return;
+		_head = index(1);
+		_size--;
+	}
+
+	public void clear() {
+		_head = 0;
+		_size = 0;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public int capacity() {
+		return _capacity;
+	}
+
+	public boolean isFull() {
+		return _size == _capacity;
+	}
+
+	/* Members of point i, 0 being the oldest. */
+
+	public double getPosition(int i) {
+		return _position[index(i)];
+	}
+
+	public double getVelocity(int i) {
+		return _velocity[index(i)];
+	}
+
+	public double getArbFeedFwd(int i) {
+		return _arbFeedFwd[index(i)];
+	}
+
+	public int getProfileSlotSelect0(int i) {
+		return _profileSlotSelect0[index(i)];
+	}
+
+	public int getProfileSlotSelect1(int i) {
+		return _profileSlotSelect1[index(i)];
+	}
+
+	public int getTimeDur(int i) {
+		return _timeDur[index(i)];
+	}
+
+	public boolean isLastPoint(int i) {
+		return (_flags[index(i)] & kIsLast) != 0;
+	}
+
+	public boolean isZeroPos(int i) {
+		return (_flags[index(i)] & kZeroPos) != 0;
+	}
+}
@@ -2,6 +2,7 @@ package com.ctre.phoenix.motorcontrol;
 
 import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.ctre.phoenix.motorcontrol.can.MotControllerJNI;
 
 /**
  * Collection of sensors available to a motor controller.
@@ -85,7 +86,7 @@ public class SensorCollection {
 	 */
 
 	public int getQuadraturePosition() {
-		return 0;
+		return MotControllerJNI.GetQuadraturePosition(_handle);
 	}
 
 	/**
@@ -103,7 +104,7 @@ public class SensorCollection {
 	 */
 
 	public ErrorCode setQuadraturePosition(int newPosition, int timeoutMs) {
-		return ErrorCode.valueOf(0);
+		return ErrorCode.valueOf(MotControllerJNI.SetQuadraturePosition(_handle, newPosition, timeoutMs));
 	}
 
     
@@ -262,7 +263,7 @@ public class SensorCollection {
 	 */
 
 	public int getQuadratureVelocity() {
-		return 0;
+		return MotControllerJNI.GetQuadratureVelocity(_handle);
 	}
 
 	/**
@@ -273,7 +274,7 @@ public class SensorCollection {
 	 */
 
 	public int getPulseWidthPosition() {
-		return 0;
+		return MotControllerJNI.GetPulseWidthPosition(_handle);
 	}
 
 	/**
@@ -288,7 +289,7 @@ public class SensorCollection {
 	 * @return  an ErrErrorCode
 	 */
 	public ErrorCode setPulseWidthPosition(int newPosition, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.SetPulseWidthPosition(_handle, newPosition, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -300,7 +301,7 @@ public class SensorCollection {
 	 */
 
 	public int getPulseWidthVelocity() {
-		return 0;
+		return MotControllerJNI.GetPulseWidthVelocity(_handle);
 	}
 
 	/**
@@ -361,7 +362,7 @@ public class SensorCollection {
 	 */
 
 	public boolean isFwdLimitSwitchClosed() {
-		return false;
+		return MotControllerJNI.IsFwdLimitSwitchClosed(_handle) != 0;
 	}
 
 	/**
@@ -372,6 +373,6 @@ public class SensorCollection {
 	 */
 
 	public boolean isRevLimitSwitchClosed() {
-		return false;
+		return MotControllerJNI.IsRevLimitSwitchClosed(_handle) != 0;
 	}
 }
@@ -21,7 +21,8 @@ import com.ctre.phoenix.motorcontrol.StickyFaults;
 import com.ctre.phoenix.motorcontrol.VelocityMeasPeriod;
 
 import edu.wpi.first.wpilibj.RobotEmulator;
-import edu.wpi.first.wpilibj.RobotMotorObserver;
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
 
 import com.ctre.phoenix.ParamEnum;
 import com.ctre.phoenix.motion.BufferedTrajectoryPointStream;
@@ -29,9 +30,6 @@ import com.ctre.phoenix.motion.MotionProfileStatus;
 import com.ctre.phoenix.motion.SetValueMotionProfile;
 import com.ctre.phoenix.motion.TrajectoryPoint;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.ErrorCollection;
 import com.ctre.phoenix.ParamEnum;
@@ -45,6 +43,12 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	private ControlMode m_sendMode = ControlMode.PercentOutput;
 
 	private int _arbId = 0;
+	// Targets for replaying sensor values, see DataLogReplay.
+	private final String _replayPosition;
+	private final String _replayVelocity;
+	private final String _replayCurrent;
+	// Device number on the emulator event bus.
+	private final int _busDevice;
 	private InvertType _invert = InvertType.None;
 
 	/**
@@ -61,9 +65,13 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @param arbId
 	 */
 	public BaseMotorController(int arbId) {
-		m_handle = 0;
+		m_handle = MotControllerJNI.Create(arbId);
 		_arbId = arbId;
-		RobotEmulator.getInstance().manage(this);
+		String replayKey = "motor/" + Integer.toHexString(arbId) + "/";
+		_replayPosition = replayKey + "position";
+		_replayVelocity = replayKey + "velocity";
+		_replayCurrent = replayKey + "current";
+		_busDevice = RobotEmulator.getInstance().manage(this);
 	}
 
 	/**
@@ -91,7 +99,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Device number.
 	 */
 	public int getDeviceID() {
-		return 0;
+		return MotControllerJNI.GetDeviceNumber(m_handle);
 	}
 
 	// ------ Set output routines. ----------//
@@ -175,9 +183,8 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 		m_sendMode = mode;
 		int work;
 
-		for(RobotMotorObserver rmo : observers) {
-		    rmo.didSet(this, mode, demand0, demand1Type, demand1);
-		}
+		RobotEmulator.getInstance().getEventBus().publish(_busDevice, DeviceEventKind.kMotorSet,
+				mode.ordinal(), demand1Type.ordinal(), demand0, demand1);
 		
 		switch (m_controlMode) {
 		case PercentOutput:
@@ -193,6 +200,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 			} else {
 				work = (int) demand0;
 			}
+			demand0 = work;
 			/* single precision guarantees 16bits of integral precision,
 		   * so float/double cast on work is safe */
 			break;
@@ -203,12 +211,15 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 		case MotionProfileArc:
 			break;
 		case Current:
+			/* the firmware works in milliamps */
+			demand0 *= 1000.;
 			break;
 		case Disabled:
 			/* fall thru... */
 		default:
 			break;
 		}
+		MotControllerJNI.Set_4(m_handle, m_sendMode.value, demand0, demand1, demand1Type.value);
 
 	}
 
@@ -265,6 +276,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *            Indicates whether to invert the phase of the sensor.
 	 */
 	public void setSensorPhase(boolean PhaseSensor) {
+		MotControllerJNI.SetSensorPhase(m_handle, PhaseSensor);
 	}
 
 	/**
@@ -306,6 +318,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 */
 	public void setInverted(InvertType invertType){
 		_invert = invertType;
+		MotControllerJNI.SetInverted_2(m_handle, invertType.value);
 	}
 	
 	/**
@@ -370,7 +383,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configOpenloopRamp(double secondsFromNeutralToFull, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigOpenloopRamp(m_handle, secondsFromNeutralToFull, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -399,7 +412,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configClosedloopRamp(double secondsFromNeutralToFull, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigClosedloopRamp(m_handle, secondsFromNeutralToFull, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -427,7 +440,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configPeakOutputForward(double percentOut, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigPeakOutputForward(m_handle, percentOut, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -454,7 +467,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configPeakOutputReverse(double percentOut, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigPeakOutputReverse(m_handle, percentOut, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -480,7 +493,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configNominalOutputForward(double percentOut, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigNominalOutputForward(m_handle, percentOut, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -507,7 +520,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configNominalOutputReverse(double percentOut, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigNominalOutputReverse(m_handle, percentOut, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -535,7 +548,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configNeutralDeadband(double percentDeadband, int timeoutMs) {
-		int retval = 0;
+		int retval = MotControllerJNI.ConfigNeutralDeadband(m_handle, percentDeadband, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -567,7 +580,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configVoltageCompSaturation(double voltage, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigVoltageCompSaturation(m_handle, voltage, timeoutMs);
+		int retval = MotControllerJNI.ConfigVoltageCompSaturation(m_handle, voltage, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -624,7 +637,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *            Enable state of voltage compensation.
 	 **/
 	public void enableVoltageCompensation(boolean enable) {
-		//MotControllerJNI.EnableVoltageCompensation(m_handle, enable);
+		MotControllerJNI.EnableVoltageCompensation(m_handle, enable);
 	}
 
 	// ------ General Status ----------//
@@ -634,7 +647,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The bus voltage value (in volts).
 	 */
 	public double getBusVoltage() {
-		return 12; //MotControllerJNI.GetBusVoltage(m_handle);
+		return MotControllerJNI.GetBusVoltage(m_handle);
 	}
 
 	/**
@@ -643,7 +656,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Output of the motor controller (in percent).
 	 */
 	public double getMotorOutputPercent() {
-		return 50; //MotControllerJNI.GetMotorOutputPercent(m_handle);
+		return MotControllerJNI.GetMotorOutputPercent(m_handle);
 	}
 
 	/**
@@ -659,7 +672,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The output current (in amps).
 	 */
 	protected double getOutputCurrent() {
-		return 1; //MotControllerJNI.GetOutputCurrent(m_handle);
+		return DataLogReplay.getInstance().getDouble(_replayCurrent, MotControllerJNI.GetOutputCurrent(m_handle));
 	}
 
 	/**
@@ -668,7 +681,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Temperature of the motor controller (in 'C)
 	 */
 	public double getTemperature() {
-		return 40; //MotControllerJNI.GetTemperature(m_handle);
+		return MotControllerJNI.GetTemperature(m_handle);
 	}
 
 	// ------ sensor selection ----------//
@@ -896,7 +909,10 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Position of selected sensor (in raw sensor units).
 	 */
 	public int getSelectedSensorPosition(int pidIdx) {
-		return 10; //MotControllerJNI.GetSelectedSensorPosition(m_handle, pidIdx);
+		if (pidIdx != 0)
+			return 0;
+		return (int) Math.round(DataLogReplay.getInstance().getDouble(_replayPosition,
+				MotControllerJNI.GetSelectedSensorPosition(m_handle, pidIdx)));
 	}
 	/**
 	 * Get the selected sensor position (in raw sensor units).
@@ -917,7 +933,10 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * See Phoenix-Documentation for how to interpret.
 	 */
 	public int getSelectedSensorVelocity(int pidIdx) {
-		return 0; //MotControllerJNI.GetSelectedSensorVelocity(m_handle, pidIdx);
+		if (pidIdx != 0)
+			return 0;
+		return (int) Math.round(DataLogReplay.getInstance().getDouble(_replayVelocity,
+				MotControllerJNI.GetSelectedSensorVelocity(m_handle, pidIdx)));
 	}
 	/**
 	 * Get the selected sensor velocity.
@@ -944,7 +963,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode setSelectedSensorPosition(int sensorPos, int pidIdx, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.SetSelectedSensorPosition(m_handle, sensorPos, pidIdx, timeoutMs);
+		int retval = MotControllerJNI.SetSelectedSensorPosition(m_handle, sensorPos, pidIdx, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -971,7 +990,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode setControlFramePeriod(ControlFrame frame, int periodMs) {
-		int retval = 0;//MotControllerJNI.SetControlFramePeriod(m_handle, frame.value, periodMs);
+		int retval = MotControllerJNI.SetControlFramePeriod(m_handle, frame.value, periodMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -991,7 +1010,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode setControlFramePeriod(int frame, int periodMs) {
-		int retval = 0; //MotControllerJNI.SetControlFramePeriod(m_handle, frame, periodMs);
+		int retval = MotControllerJNI.SetControlFramePeriod(m_handle, frame, periodMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -1015,7 +1034,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode setStatusFramePeriod(int frameValue, int periodMs, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.SetStatusFramePeriod(m_handle, frameValue, periodMs, timeoutMs);
+		int retval = MotControllerJNI.SetStatusFramePeriod(m_handle, frameValue, periodMs, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1080,7 +1099,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Period of the given status frame.
 	 */
 	public int getStatusFramePeriod(int frame, int timeoutMs) {
-		return 0; //MotControllerJNI.GetStatusFramePeriod(m_handle, frame, timeoutMs);
+		return MotControllerJNI.GetStatusFramePeriod(m_handle, frame, timeoutMs);
 	}
 	/**
 	 * Gets the period of the given status frame.
@@ -1106,7 +1125,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Period of the given status frame.
 	 */
 	public int getStatusFramePeriod(StatusFrame frame, int timeoutMs) {
-		return 0; //MotControllerJNI.GetStatusFramePeriod(m_handle, frame.value, timeoutMs);
+		return MotControllerJNI.GetStatusFramePeriod(m_handle, frame.value, timeoutMs);
 	}
 	/**
 	 * Gets the period of the given status frame.
@@ -1132,7 +1151,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Period of the given status frame.
 	 */
 	public int getStatusFramePeriod(StatusFrameEnhanced frame, int timeoutMs) {
-		return 0; //MotControllerJNI.GetStatusFramePeriod(m_handle, frame.value, timeoutMs);
+		return MotControllerJNI.GetStatusFramePeriod(m_handle, frame.value, timeoutMs);
 	}
 	/**
 	 * Gets the period of the given status frame.
@@ -1276,8 +1295,8 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 */
 	public ErrorCode configReverseLimitSwitchSource(RemoteLimitSwitchSource type, LimitSwitchNormal normalOpenOrClose,
 			int deviceID, int timeoutMs) {
-		int retval = 0; /*MotControllerJNI.ConfigReverseLimitSwitchSource(m_handle, type.value, normalOpenOrClose.value,
-				deviceID, timeoutMs); */
+		int retval = MotControllerJNI.ConfigReverseLimitSwitchSource(m_handle, type.value, normalOpenOrClose.value,
+				deviceID, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1376,8 +1395,8 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 */
 	protected ErrorCode configForwardLimitSwitchSource(int typeValue, int normalOpenOrCloseValue, int deviceID,
 			int timeoutMs) {
-		int retval = 0; /*MotControllerJNI.ConfigForwardLimitSwitchSource(m_handle, typeValue, normalOpenOrCloseValue,
-				deviceID, timeoutMs); */
+		int retval = MotControllerJNI.ConfigForwardLimitSwitchSource(m_handle, typeValue, normalOpenOrCloseValue,
+				deviceID, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -1407,8 +1426,8 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 */
 	protected ErrorCode configReverseLimitSwitchSource(int typeValue, int normalOpenOrCloseValue, int deviceID,
 			int timeoutMs) {
-		int retval = 0; /*MotControllerJNI.ConfigReverseLimitSwitchSource(m_handle, typeValue, normalOpenOrCloseValue,
-				deviceID, timeoutMs); */
+		int retval = MotControllerJNI.ConfigReverseLimitSwitchSource(m_handle, typeValue, normalOpenOrCloseValue,
+				deviceID, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -1419,7 +1438,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *            Enable state for limit switches.
 	 **/
 	public void overrideLimitSwitchesEnable(boolean enable) {
-		//MotControllerJNI.OverrideLimitSwitchesEnable(m_handle, enable);
+		MotControllerJNI.OverrideLimitSwitchesEnable(m_handle, enable);
 	}
 
 	// ------ soft limit ----------//
@@ -1435,7 +1454,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configForwardSoftLimitThreshold(int forwardSensorLimit, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigForwardSoftLimitThreshold(m_handle, forwardSensorLimit, timeoutMs);
+		int retval = MotControllerJNI.ConfigForwardSoftLimitThreshold(m_handle, forwardSensorLimit, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1462,7 +1481,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configReverseSoftLimitThreshold(int reverseSensorLimit, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigReverseSoftLimitThreshold(m_handle, reverseSensorLimit, timeoutMs);
+		int retval = MotControllerJNI.ConfigReverseSoftLimitThreshold(m_handle, reverseSensorLimit, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1489,7 +1508,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configForwardSoftLimitEnable(boolean enable, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigForwardSoftLimitEnable(m_handle, enable, timeoutMs);
+		int retval = MotControllerJNI.ConfigForwardSoftLimitEnable(m_handle, enable, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1516,7 +1535,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configReverseSoftLimitEnable(boolean enable, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigReverseSoftLimitEnable(m_handle, enable, timeoutMs);
+		int retval = MotControllerJNI.ConfigReverseSoftLimitEnable(m_handle, enable, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1540,7 +1559,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *            Enable state for soft limit switches.
 	 */
 	public void overrideSoftLimitsEnable(boolean enable) {
-		//MotControllerJNI.OverrideSoftLimitsEnable(m_handle, enable);
+		MotControllerJNI.OverrideSoftLimitsEnable(m_handle, enable);
 	}
 
 	// ------ Current Lim ----------//
@@ -1564,7 +1583,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode config_kP(int slotIdx, double value, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.Config_kP(m_handle, slotIdx,  value, timeoutMs);
+		int retval = MotControllerJNI.Config_kP(m_handle, slotIdx, value, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1602,7 +1621,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode config_kI(int slotIdx, double value, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.Config_kI(m_handle, slotIdx,  value, timeoutMs);
+		int retval = MotControllerJNI.Config_kI(m_handle, slotIdx, value, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1642,7 +1661,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode config_kD(int slotIdx, double value, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.Config_kD(m_handle, slotIdx,  value, timeoutMs);
+		int retval = MotControllerJNI.Config_kD(m_handle, slotIdx, value, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1681,7 +1700,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode config_kF(int slotIdx, double value, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.Config_kF(m_handle, slotIdx,  value, timeoutMs);
+		int retval = MotControllerJNI.Config_kF(m_handle, slotIdx, value, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1720,7 +1739,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode config_IntegralZone(int slotIdx, int izone, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.Config_IntegralZone(m_handle, slotIdx,  izone, timeoutMs);
+		int retval = MotControllerJNI.Config_IntegralZone(m_handle, slotIdx, izone, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1755,8 +1774,8 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configAllowableClosedloopError(int slotIdx, int allowableClosedLoopError, int timeoutMs) {
-		int retval = 0; /*MotControllerJNI.ConfigAllowableClosedloopError(m_handle, slotIdx, allowableClosedLoopError,
-				timeoutMs);*/
+		int retval = MotControllerJNI.ConfigAllowableClosedloopError(m_handle, slotIdx, allowableClosedLoopError,
+				timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1789,7 +1808,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMaxIntegralAccumulator(int slotIdx, double iaccum, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMaxIntegralAccumulator(m_handle, slotIdx, iaccum, timeoutMs);
+		int retval = MotControllerJNI.ConfigMaxIntegralAccumulator(m_handle, slotIdx, iaccum, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1824,7 +1843,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configClosedLoopPeakOutput(int slotIdx, double percentOut, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigClosedLoopPeakOutput(m_handle, slotIdx, percentOut, timeoutMs);
+		int retval = MotControllerJNI.ConfigClosedLoopPeakOutput(m_handle, slotIdx, percentOut, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1861,7 +1880,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
   	public ErrorCode configClosedLoopPeriod(int slotIdx, int loopTimeMs, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigClosedLoopPeriod(m_handle, slotIdx, loopTimeMs, timeoutMs);
+		int retval = MotControllerJNI.ConfigClosedLoopPeriod(m_handle, slotIdx, loopTimeMs, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1939,7 +1958,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode setIntegralAccumulator(double iaccum, int pidIdx, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.SetIntegralAccumulator(m_handle,  iaccum, pidIdx, timeoutMs);
+		int retval = MotControllerJNI.SetIntegralAccumulator(m_handle, iaccum, pidIdx, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -1978,7 +1997,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Closed-loop error value.
 	 */
 	public int getClosedLoopError(int pidIdx) {
-		return 0; //MotControllerJNI.GetClosedLoopError(m_handle, pidIdx);
+		return MotControllerJNI.GetClosedLoopError(m_handle, pidIdx);
 	}
 	/**
 	 * Gets the closed-loop error. The units depend on which control mode is in
@@ -2010,7 +2029,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Integral accumulator value (Closed-loop error X 1ms).
 	 */
 	public double getIntegralAccumulator(int pidIdx) {
-		return 0; //MotControllerJNI.GetIntegralAccumulator(m_handle, pidIdx);
+		return MotControllerJNI.GetIntegralAccumulator(m_handle, pidIdx);
 	}
 	/**
 	 * Gets the iaccum value.
@@ -2031,7 +2050,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The error derivative value.
 	 */
 	public double getErrorDerivative(int pidIdx) {
-		return 0; //MotControllerJNI.GetErrorDerivative(m_handle, pidIdx);
+		return MotControllerJNI.GetErrorDerivative(m_handle, pidIdx);
 	}
 	/**
 	 * Gets the derivative of the closed-loop error.
@@ -2053,7 +2072,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *            0 for Primary closed-loop. 1 for auxiliary closed-loop.
 	 **/
 	public void selectProfileSlot(int slotIdx, int pidIdx) {
-		//MotControllerJNI.SelectProfileSlot(m_handle, slotIdx, pidIdx);
+		MotControllerJNI.SelectProfileSlot(m_handle, slotIdx, pidIdx);
 	}
 
 	/**
@@ -2064,7 +2083,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The closed loop target.
 	 */
 	public double getClosedLoopTarget(int pidIdx) {
-		double value = 1000; //MotControllerJNI.GetClosedLoopTarget(m_handle, pidIdx);
+		double value = MotControllerJNI.GetClosedLoopTarget(m_handle, pidIdx);
 		if(m_controlMode == ControlMode.Current){
 			value = value / 1000; //convert back to amps
 		}
@@ -2087,7 +2106,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The Active Trajectory Position in sensor units.
 	 */
 	public int getActiveTrajectoryPosition() {
-		return 1; //MotControllerJNI.GetActiveTrajectoryPosition(m_handle);
+		return MotControllerJNI.GetActiveTrajectoryPosition(m_handle);
 	}
 
 	/**
@@ -2099,7 +2118,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The Active Trajectory Position in sensor units.
 	 */
 	public int getActiveTrajectoryPosition(int pidIdx) {
-		return 1; //MotControllerJNI.GetActiveTrajectoryPosition3(m_handle, pidIdx);
+		return pidIdx == 0 ? MotControllerJNI.GetActiveTrajectoryPosition(m_handle) : 0;
 	}
 
 	/**
@@ -2109,7 +2128,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The Active Trajectory Velocity in sensor units per 100ms.
 	 */
 	public int getActiveTrajectoryVelocity() {
-		return 1; //MotControllerJNI.GetActiveTrajectoryVelocity(m_handle);
+		return MotControllerJNI.GetActiveTrajectoryVelocity(m_handle);
 	}
 
 	/**
@@ -2121,7 +2140,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return The Active Trajectory Velocity in sensor units per 100ms.
 	 */
 	public int getActiveTrajectoryVelocity(int pidIdx) {
-		return 1; //MotControllerJNI.GetActiveTrajectoryVelocity3(m_handle, pidIdx);
+		return pidIdx == 0 ? MotControllerJNI.GetActiveTrajectoryVelocity(m_handle) : 0;
 	}
 
 	/**
@@ -2175,7 +2194,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMotionCruiseVelocity(int sensorUnitsPer100ms, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMotionCruiseVelocity(m_handle, sensorUnitsPer100ms, timeoutMs);
+		int retval = MotControllerJNI.ConfigMotionCruiseVelocity(m_handle, sensorUnitsPer100ms, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2205,7 +2224,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMotionAcceleration(int sensorUnitsPer100msPerSec, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMotionAcceleration(m_handle, sensorUnitsPer100msPerSec, timeoutMs);
+		int retval = MotControllerJNI.ConfigMotionAcceleration(m_handle, sensorUnitsPer100msPerSec, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2236,7 +2255,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMotionSCurveStrength(int curveStrength, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMotionSCurveStrength(m_handle, curveStrength, timeoutMs);
+		int retval = MotControllerJNI.ConfigMotionSCurveStrength(m_handle, curveStrength, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -2261,7 +2280,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode clearMotionProfileTrajectories() {
-		int retval = 0; //MotControllerJNI.ClearMotionProfileTrajectories(m_handle);
+		int retval = MotControllerJNI.ClearMotionProfileTrajectories(m_handle);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -2274,7 +2293,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return number of trajectory points in the top buffer.
 	 */
 	public int getMotionProfileTopLevelBufferCount() {
-		return 1; //MotControllerJNI.GetMotionProfileTopLevelBufferCount(m_handle);
+		return MotControllerJNI.GetMotionProfileTopLevelBufferCount(m_handle);
 	}
 	/**
 	 * Push another trajectory point into the top level buffer (which is emptied
@@ -2311,7 +2330,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 *         full due to kMotionProfileTopBufferCapacity.
 	 */
 	public ErrorCode pushMotionProfileTrajectory(TrajectoryPoint trajPt) {
-		int retval = 0; //MotControllerJNI.PushMotionProfileTrajectory3(m_handle, trajPt.position, trajPt.velocity, trajPt.arbFeedFwd, trajPt.auxiliaryPos, trajPt.auxiliaryVel, trajPt.auxiliaryArbFeedFwd, trajPt.profileSlotSelect0, trajPt.profileSlotSelect1, trajPt.isLastPoint, trajPt.zeroPos, trajPt.timeDur, trajPt.useAuxPID);
+		int retval = MotControllerJNI.PushMotionProfileTrajectory3(m_handle, trajPt.position, trajPt.velocity, trajPt.arbFeedFwd, trajPt.auxiliaryPos, trajPt.auxiliaryVel, trajPt.auxiliaryArbFeedFwd, trajPt.profileSlotSelect0, trajPt.profileSlotSelect1, trajPt.isLastPoint, trajPt.zeroPos, trajPt.timeDur, trajPt.useAuxPID);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -2345,7 +2364,13 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return nonzero error code if operation fails.
      */
 	public ErrorCode startMotionProfile(BufferedTrajectoryPointStream stream, int minBufferedPts, ControlMode motionProfControlMode) {
-		int retval = 0; //MotControllerJNI.StartMotionProfile(m_handle, stream.getHandle(), minBufferedPts, motionProfControlMode.value);
+		int retval = MotControllerJNI.StartMotionProfile(m_handle, stream.getHandle(), minBufferedPts, motionProfControlMode.value);
+		if (retval == 0) {
+			m_controlMode = motionProfControlMode;
+			m_sendMode = motionProfControlMode;
+			RobotEmulator.getInstance().getEventBus().publish(_busDevice, DeviceEventKind.kMotorSet,
+					motionProfControlMode.ordinal(), DemandType.Neutral.ordinal(), SetValueMotionProfile.Disable.value, 0);
+		}
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2359,7 +2384,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return true if MP was started using StartMotionProfile, and it has completed execution (MPE is now in "hold").
 	 */
 	public boolean isMotionProfileFinished() {
-		return true; //MotControllerJNI.IsMotionProfileFinished(m_handle);
+		return MotControllerJNI.IsMotionProfileFinished(m_handle);
 	}
 
 	/**
@@ -2371,7 +2396,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return number of trajectory points in the top buffer.
 	 */
 	public boolean isMotionProfileTopLevelBufferFull() {
-		return false; //MotControllerJNI.IsMotionProfileTopLevelBufferFull(m_handle);
+		return MotControllerJNI.IsMotionProfileTopLevelBufferFull(m_handle);
 	}
 
 	/**
@@ -2384,7 +2409,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * utilize threading.
 	 */
 	public void processMotionProfileBuffer() {
-		//MotControllerJNI.ProcessMotionProfileBuffer(m_handle);
+		MotControllerJNI.ProcessMotionProfileBuffer(m_handle);
 	}
 	/**
 	 * Retrieve all status information.
@@ -2432,7 +2457,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode getMotionProfileStatus(MotionProfileStatus statusToFill) {
-		int retval = 0; //MotControllerJNI.GetMotionProfileStatus2(m_handle, _motionProfStats);
+		int retval = MotControllerJNI.GetMotionProfileStatus2(m_handle, _motionProfStats);
 		statusToFill.topBufferRem = _motionProfStats[0];
 		statusToFill.topBufferCnt = _motionProfStats[1];
 		statusToFill.btmBufferCnt = _motionProfStats[2];
@@ -2458,7 +2483,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode clearMotionProfileHasUnderrun(int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ClearMotionProfileHasUnderrun(m_handle, timeoutMs);
+		int retval = MotControllerJNI.ClearMotionProfileHasUnderrun(m_handle, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2483,7 +2508,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode changeMotionControlFramePeriod(int periodMs) {
-		int retval = 0; //MotControllerJNI.ChangeMotionControlFramePeriod(m_handle, periodMs);
+		int retval = MotControllerJNI.ChangeMotionControlFramePeriod(m_handle, periodMs);
 		return ErrorCode.valueOf(retval);
 	}
 
@@ -2503,7 +2528,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMotionProfileTrajectoryPeriod(int baseTrajDurationMs, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMotionProfileTrajectoryPeriod(m_handle, baseTrajDurationMs, timeoutMs);
+		int retval = MotControllerJNI.ConfigMotionProfileTrajectoryPeriod(m_handle, baseTrajDurationMs, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2537,7 +2562,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Error Code generated by function. 0 indicates no error.
 	 */
 	public ErrorCode configMotionProfileTrajectoryInterpolationEnable(boolean enable, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigMotionProfileTrajectoryInterpolationEnable(m_handle, enable, timeoutMs);
+		int retval = MotControllerJNI.ConfigMotionProfileTrajectoryInterpolationEnable(m_handle, enable, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -2729,7 +2754,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Last Error Code generated by a function.
 	 */
 	public ErrorCode getFaults(Faults toFill) {
-		int bits = 0; //MotControllerJNI.GetFaults(m_handle);
+		int bits = MotControllerJNI.GetFaults(m_handle);
 		toFill.update(bits);
 		return getLastError();
 	}
@@ -2742,7 +2767,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Last Error Code generated by a function.
 	 */
 	public ErrorCode getStickyFaults(StickyFaults toFill) {
-		int bits = 0; //MotControllerJNI.GetStickyFaults(m_handle);
+		int bits = MotControllerJNI.GetStickyFaults(m_handle);
 		toFill.update(bits);
 		return getLastError();
 	}
@@ -2757,7 +2782,7 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 	 * @return Last Error Code generated by a function.
 	 */
 	public ErrorCode clearStickyFaults(int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ClearStickyFaults(m_handle, timeoutMs);
+		int retval = MotControllerJNI.ClearStickyFaults(m_handle, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -3139,15 +3164,15 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
 		
 		
         
-//		if(SlotConfigurationUtil.kPDifferent(slot) || !enableOptimization) errorCollection.NewError(config_kP(slotIdx, slot.kP, timeoutMs));
-//		if(SlotConfigurationUtil.kIDifferent(slot) || !enableOptimization) errorCollection.NewError(config_kI(slotIdx, slot.kI, timeoutMs));
-//		if(SlotConfigurationUtil.kDDifferent(slot) || !enableOptimization) errorCollection.NewError(config_kD(slotIdx, slot.kD, timeoutMs));
-//		if(SlotConfigurationUtil.kFDifferent(slot) || !enableOptimization) errorCollection.NewError(config_kF(slotIdx, slot.kF, timeoutMs));
-//		if(SlotConfigurationUtil.integralZoneDifferent(slot) || !enableOptimization) errorCollection.NewError(config_IntegralZone(slotIdx, slot.integralZone, timeoutMs));
-//		if(SlotConfigurationUtil.allowableClosedloopErrorDifferent(slot) || !enableOptimization) errorCollection.NewError(configAllowableClosedloopError(slotIdx, slot.allowableClosedloopError, timeoutMs));
-//		if(SlotConfigurationUtil.maxIntegralAccumulatorDifferent(slot) || !enableOptimization) errorCollection.NewError(configMaxIntegralAccumulator(slotIdx, slot.maxIntegralAccumulator, timeoutMs));
-//		if(SlotConfigurationUtil.closedLoopPeakOutputDifferent(slot) || !enableOptimization) errorCollection.NewError(configClosedLoopPeakOutput(slotIdx, slot.closedLoopPeakOutput, timeoutMs));
-//		if(SlotConfigurationUtil.closedLoopPeriodDifferent(slot) || !enableOptimization) errorCollection.NewError(configClosedLoopPeriod(slotIdx, slot.closedLoopPeriod, timeoutMs));
+		errorCollection.NewError(config_kP(slotIdx, slot.kP, timeoutMs));
+		errorCollection.NewError(config_kI(slotIdx, slot.kI, timeoutMs));
+		errorCollection.NewError(config_kD(slotIdx, slot.kD, timeoutMs));
+		errorCollection.NewError(config_kF(slotIdx, slot.kF, timeoutMs));
+		errorCollection.NewError(config_IntegralZone(slotIdx, slot.integralZone, timeoutMs));
+		errorCollection.NewError(configAllowableClosedloopError(slotIdx, slot.allowableClosedloopError, timeoutMs));
+		errorCollection.NewError(configMaxIntegralAccumulator(slotIdx, slot.maxIntegralAccumulator, timeoutMs));
+		errorCollection.NewError(configClosedLoopPeakOutput(slotIdx, slot.closedLoopPeakOutput, timeoutMs));
+		errorCollection.NewError(configClosedLoopPeriod(slotIdx, slot.closedLoopPeriod, timeoutMs));
     
         return errorCollection._worstError;
     
@@ -3392,9 +3417,4 @@ public abstract class BaseMotorController implements com.ctre.phoenix.motorcontr
     
     }
 
-    private List<RobotMotorObserver> observers = new ArrayList<RobotMotorObserver>();
-    public void addObserver(RobotMotorObserver o) {
-        observers.add(o);
-    }
-
 }
@@ -0,0 +1,1405 @@
+package com.ctre.phoenix.motorcontrol.can;
+
+import java.util.Arrays;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.BuffTrajPointStreamJNI;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.InvertType;
+import com.ctre.phoenix.motorcontrol.LimitSwitchNormal;
+import com.ctre.phoenix.motorcontrol.LimitSwitchSource;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.emulator.CANBusModel;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
+
+/**
+ * Emulation of the CTRE motor controller firmware.  The methods match the
+ * Phoenix JNI entry points that BaseMotorController calls, the state of
+ * every controller is kept here and its motor is simulated by
+ * {@link MotorPhysics}.  The handle is the index into the state arrays.
+ *
+ * <p>The closed loop modes run as a {@link MotorPhysics.Controller}, every
+ * closed loop period (1ms by default), with the gains of the selected
+ * slot.  As in the firmware, the output is
+ * (kP * error + kI * iaccum + kD * derivative + kF * target) / 1023 of
+ * full output.  Position errors are in sensor units, velocity errors in
+ * sensor units per 100ms and current errors in milliamps.  In Motion Magic
+ * the position loop follows the setpoints of a {@link MotionMagicProfiler}
+ * and kF multiplies the setpoint velocity.  In the motion profile modes it
+ * follows the points of a {@link MotionProfileExecutor}, with the gains
+ * of the slot selected by the active point.
+ *
+ * <p>The output goes through the shaping stages of the firmware: the peak
+ * outputs clamp it, it is neutral within the neutral deadband, and in the
+ * closed loop modes it is at least the nominal output.  It then ramps,
+ * every firmware tick, at the open loop ramp in PercentOutput and the
+ * closed loop ramp in the closed loop modes.  With voltage compensation
+ * the ramped output is a fraction of the saturation voltage, converted to
+ * a duty cycle of the bus voltage every tick.
+ *
+ * <p>Before it reaches the motor, an output that drives into a tripped
+ * limit switch or beyond an enabled soft limit is neutral, and the fault
+ * is reported.  The limit switches are given to MotorPhysics by the
+ * command file; a Talon SRX may read them from another Talon SRX.  The
+ * soft limits compare the selected sensor position to the thresholds.
+ * While limits apply, PercentOutput is re-evaluated every firmware tick.
+ *
+ * <p>With the current limit of a Talon SRX enabled, the firmware tick
+ * watches the motor current: once it has been above the peak limit for
+ * the peak duration, or above the continuous limit when the peak limit is
+ * 0, the output is reduced so that the motor draws the continuous limit,
+ * until the output asked for draws less than that.
+ *
+ * <p>In Follower mode the motor follows the motor of the controller whose
+ * id is the demand, through the follower graph of MotorPhysics, in the
+ * direction given by the InvertType of the follower.
+ *
+ * <p>Every controller sends its status frames on the {@link CANBusModel}
+ * at their periods, 10ms for Status_1, 20ms for Status_2 and 160ms for
+ * the others, and receives Control_3_General every 10ms.  The getters
+ * return the values of the last status frame that carries them: the
+ * output in Status_1, the selected sensor and the current in Status_2, the
+ * quadrature sensor in Status_3, the bus voltage and the temperature in
+ * Status_4, the pulse width sensor in Status_8 and the closed loop state
+ * in Status_13.  The Victor SPX has no Status_3 nor Status_8.  The
+ * firmware itself works on the current values.
+ *
+ * <p>All state is guarded by the MotorPhysics lock, as the firmware is run
+ * from inside the physics steps.
+ */
+public class MotControllerJNI {
+	public static final int kSlots = 4;
+
+	private static final int kPercentOutput = ControlMode.PercentOutput.value;
+	private static final int kFollower = ControlMode.Follower.value;
+	private static final int kPosition = ControlMode.Position.value;
+	private static final int kVelocity = ControlMode.Velocity.value;
+	private static final int kCurrent = ControlMode.Current.value;
+	private static final int kMotionMagic = ControlMode.MotionMagic.value;
+	private static final int kMotionProfile = ControlMode.MotionProfile.value;
+	private static final int kMotionProfileArc = ControlMode.MotionProfileArc.value;
+	private static final int kMPDisable = SetValueMotionProfile.Disable.value;
+	private static final int kMPEnable = SetValueMotionProfile.Enable.value;
+	private static final int kArbitraryFeedForward = DemandType.ArbitraryFeedForward.value;
+	private static final int kFeedbackConnector = LimitSwitchSource.FeedbackConnector.value;
+	private static final int kRemoteTalonSRX = LimitSwitchSource.RemoteTalonSRX.value;
+	private static final int kLimitSwitchDeactivated = LimitSwitchSource.Deactivated.value;
+	private static final int kLimitSwitchDisabled = LimitSwitchNormal.Disabled.value;
+	private static final int kTalonSRXArbId = 0x02040000;
+	private static final int kVictorSPXArbId = 0x01040000;
+	// Frames, as in StatusFrameEnhanced and ControlFrame.
+	private static final int kStatus1General = 0x1400;
+	private static final int kStatus2Feedback0 = 0x1440;
+	private static final int kStatus3Quadrature = 0x1480;
+	private static final int kStatus4AinTempVbat = 0x14C0;
+	private static final int kStatus8PulseWidth = 0x15C0;
+	private static final int kStatus11UartGadgeteer = 0x1680;
+	private static final int kStatus13BasePIDF0 = 0x1700;
+	private static final int kControl3General = 0x040080;
+	private static final int[] kStatusFrames = { kStatus1General, kStatus2Feedback0, kStatus3Quadrature,
+			kStatus4AinTempVbat, 0x1540, 0x1580, kStatus8PulseWidth, 0x1600, 0x1640, kStatus11UartGadgeteer,
+			0x16C0, kStatus13BasePIDF0, 0x1740, 0x1780, 0x1C00 };
+	private static final int kDefaultStatusFramePeriodMs = 160;
+	private static final int kDefaultControlFramePeriodMs = 10;
+	// Faults and StickyFaults bits.
+	private static final int kUnderVoltage = 1;
+	private static final int kForwardLimitSwitch = 2;
+	private static final int kReverseLimitSwitch = 4;
+	private static final int kForwardSoftLimit = 8;
+	private static final int kReverseSoftLimit = 16;
+	private static final double kUnderVoltageThreshold = 6.5;
+	private static final double kDefaultNeutralDeadband = 0.04;
+	private static final double kDefaultVoltageCompSaturation = 12;
+
+	private static final MotorPhysics _physics = MotorPhysics.getInstance();
+	private static final CANBusModel _bus = CANBusModel.getInstance();
+
+	private static int _count;
+	private static int _closedLoopCount;
+	private static int[] _baseArbId = new int[8];
+	private static int[] _motor = new int[8];
+	private static int[] _mode = new int[8];
+	private static double[] _demand0 = new double[8];
+	private static double[] _demand1 = new double[8];
+	private static int[] _demand1Type = new int[8];
+	private static boolean[] _inverted = new boolean[8];
+	private static int[] _invertType = new int[8];
+	private static boolean[] _sensorPhase = new boolean[8];
+	private static double[] _selectedOffset = new double[8];
+	private static double[] _quadOffset = new double[8];
+	private static double[] _pulseWidthOffset = new double[8];
+
+	// Slot gains, indexed by handle * kSlots + slot.
+	private static double[] _kP = new double[8 * kSlots];
+	private static double[] _kI = new double[8 * kSlots];
+	private static double[] _kD = new double[8 * kSlots];
+	private static double[] _kF = new double[8 * kSlots];
+	private static double[] _iZone = new double[8 * kSlots];
+	private static double[] _allowableError = new double[8 * kSlots];
+	private static double[] _maxIAccum = new double[8 * kSlots];
+	private static double[] _peakOutput = new double[8 * kSlots];
+	private static int[] _periodMs = new int[8 * kSlots];
+
+	// Closed loop state.
+	private static int[] _slot = new int[8];
+	private static long[] _lastRun = new long[8];
+	private static double[] _target = new double[8];
+	private static double[] _error = new double[8];
+	private static double[] _iAccum = new double[8];
+	private static double[] _derivative = new double[8];
+
+	// Motion Magic.
+	private static double[] _cruiseVelocity = new double[8];
+	private static double[] _acceleration = new double[8];
+	private static int[] _sCurveStrength = new int[8];
+	private static boolean[] _profileRestart = new boolean[8];
+	private static MotionMagicProfiler[] _profiler = new MotionMagicProfiler[8];
+
+	// Motion profiles.
+	private static MotionProfileExecutor[] _motionProfile = new MotionProfileExecutor[8];
+
+	// Limits, indexed by handle * 2 + (forward ? 0 : 1).
+	private static int[] _limitSwitchSource = new int[16];
+	private static int[] _limitSwitchNormal = new int[16];
+	private static int[] _limitSwitchDevice = new int[16];
+	private static double[] _softLimitThreshold = new double[16];
+	private static boolean[] _softLimitEnable = new boolean[16];
+	private static boolean[] _limitSwitchesOverridden = new boolean[8];
+	private static boolean[] _softLimitsOverridden = new boolean[8];
+	private static int[] _limitFaults = new int[8];
+	private static int[] _stickyFaults = new int[8];
+
+	// Output shaping.
+	private static double[] _peakOutputForward = new double[8];
+	private static double[] _peakOutputReverse = new double[8];
+	private static double[] _nominalOutputForward = new double[8];
+	private static double[] _nominalOutputReverse = new double[8];
+	private static double[] _neutralDeadband = new double[8];
+	private static double[] _openloopRamp = new double[8];
+	private static double[] _closedloopRamp = new double[8];
+	private static double[] _voltageCompSaturation = new double[8];
+	private static boolean[] _voltageCompEnable = new boolean[8];
+	private static double[] _rampTarget = new double[8];
+	private static double[] _rampOutput = new double[8];
+
+	// Current limit.
+	private static int[] _peakCurrentLimit = new int[8];
+	private static int[] _peakCurrentDurationMs = new int[8];
+	private static int[] _continuousCurrentLimit = new int[8];
+	private static boolean[] _currentLimitEnable = new boolean[8];
+	private static boolean[] _currentLimiting = new boolean[8];
+	private static long[] _overPeakSince = new long[8];
+	// The motor output before the current limit.
+	private static double[] _unlimitedOutput = new double[8];
+
+	// CAN frames: the bus frame of the first status frame, the others
+	// follow in the order of kStatusFrames.
+	private static int[] _firstStatusFrame = new int[8];
+	private static int[] _controlFrame = new int[8];
+	// The values of the last status frames.
+	private static double[] _sentOutput = new double[8];
+	private static double[] _sentPosition = new double[8];
+	private static double[] _sentVelocity = new double[8];
+	private static double[] _sentCurrent = new double[8];
+	private static double[] _sentQuadPosition = new double[8];
+	private static double[] _sentQuadVelocity = new double[8];
+	private static double[] _sentBusVoltage = new double[8];
+	private static double[] _sentTemperature = new double[8];
+	private static double[] _sentPulseWidthPosition = new double[8];
+	private static double[] _sentPulseWidthVelocity = new double[8];
+	private static double[] _sentError = new double[8];
+	private static double[] _sentIAccum = new double[8];
+	private static double[] _sentDerivative = new double[8];
+
+	private static final MotorPhysics.Controller _firmware = new MotorPhysics.Controller() {
+		@Override
+		public boolean isActive() {
+			if (_closedLoopCount > 0)
+				return true;
+			for (int h = 0; h < _count; h++) {
+				if (_mode[h] == kPercentOutput && isLimited(h))
+					return true;
+				if (isCurrentLimitWatched(h))
+					return true;
+				if (isRamping(h) && (_rampOutput[h] != 0 || _physics.isEnabled()))
+					return true;
+				if (_voltageCompEnable[h] && _rampOutput[h] != 0)
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void update(long now) {
+			for (int h = 0; h < _count; h++) {
+				boolean watched = isCurrentLimitWatched(h);
+				if (watched)
+					updateCurrentLimit(h, now);
+				if (isMotionProfile(_mode[h]) && _motionProfile[h].update(now, (int) _demand0[h], _physics.isEnabled()))
+					zeroSensor(h);
+				if (isClosedLoop(_mode[h]) && now - _lastRun[h] >= _periodMs[h * kSlots + _slot[h]] * 1000L)
+					runClosedLoop(h, now);
+				else if (_mode[h] == kPercentOutput && (watched || isLimited(h)))
+					drive(h, _demand0[h]);
+				if (isRamping(h)) {
+					ramp(h);
+					apply(h);
+				} else if (_voltageCompEnable[h] && _rampOutput[h] != 0) {
+					apply(h);
+				}
+			}
+		}
+	};
+
+	private static final CANBusModel.Sender _status = new CANBusModel.Sender() {
+		@Override
+		public void send(int h, int frame) {
+			switch (frame) {
+			case kStatus1General:
+				_sentOutput[h] = motorOutputPercent(h);
+				break;
+			case kStatus2Feedback0:
+				_sentPosition[h] = selectedPosition(h);
+				_sentVelocity[h] = selectedVelocity(h);
+				_sentCurrent[h] = _physics.getCurrent(_motor[h]);
+				break;
+			case kStatus3Quadrature:
+				_sentQuadPosition[h] = _physics.getPosition(_motor[h]) + _quadOffset[h];
+				_sentQuadVelocity[h] = _physics.getVelocity(_motor[h]) / 10;
+				break;
+			case kStatus4AinTempVbat:
+				_sentBusVoltage[h] = _physics.getBusVoltage();
+				_sentTemperature[h] = _physics.getTemperature(_motor[h]);
+				break;
+			case kStatus8PulseWidth:
+				_sentPulseWidthPosition[h] = _physics.getPosition(_motor[h]) + _pulseWidthOffset[h];
+				_sentPulseWidthVelocity[h] = _physics.getVelocity(_motor[h]) / 10;
+				break;
+			case kStatus13BasePIDF0:
+				_sentError[h] = _error[h];
+				_sentIAccum[h] = _iAccum[h];
+				_sentDerivative[h] = _derivative[h];
+				break;
+			default:
+				break;
+			}
+		}
+	};
+
+	static {
+		_physics.addController(_firmware);
+	}
+
+	private static boolean isClosedLoop(int mode) {
+		return mode == kPosition || mode == kVelocity || mode == kCurrent || mode == kMotionMagic
+				|| isMotionProfile(mode);
+	}
+
+	private static boolean isMotionProfile(int mode) {
+		return mode == kMotionProfile || mode == kMotionProfileArc;
+	}
+
+	public static long Create(int baseArbId) {
+		synchronized (_physics) {
+			int h = _count;
+			if (h == _baseArbId.length) {
+				int n = h * 2;
+				_baseArbId = Arrays.copyOf(_baseArbId, n);
+				_motor = Arrays.copyOf(_motor, n);
+				_mode = Arrays.copyOf(_mode, n);
+				_demand0 = Arrays.copyOf(_demand0, n);
+				_demand1 = Arrays.copyOf(_demand1, n);
+				_demand1Type = Arrays.copyOf(_demand1Type, n);
+				_inverted = Arrays.copyOf(_inverted, n);
+				_invertType = Arrays.copyOf(_invertType, n);
+				_sensorPhase = Arrays.copyOf(_sensorPhase, n);
+				_selectedOffset = Arrays.copyOf(_selectedOffset, n);
+				_quadOffset = Arrays.copyOf(_quadOffset, n);
+				_pulseWidthOffset = Arrays.copyOf(_pulseWidthOffset, n);
+				_kP = Arrays.copyOf(_kP, n * kSlots);
+				_kI = Arrays.copyOf(_kI, n * kSlots);
+				_kD = Arrays.copyOf(_kD, n * kSlots);
+				_kF = Arrays.copyOf(_kF, n * kSlots);
+				_iZone = Arrays.copyOf(_iZone, n * kSlots);
+				_allowableError = Arrays.copyOf(_allowableError, n * kSlots);
+				_maxIAccum = Arrays.copyOf(_maxIAccum, n * kSlots);
+				_peakOutput = Arrays.copyOf(_peakOutput, n * kSlots);
+				_periodMs = Arrays.copyOf(_periodMs, n * kSlots);
+				_slot = Arrays.copyOf(_slot, n);
+				_lastRun = Arrays.copyOf(_lastRun, n);
+				_target = Arrays.copyOf(_target, n);
+				_error = Arrays.copyOf(_error, n);
+				_iAccum = Arrays.copyOf(_iAccum, n);
+				_derivative = Arrays.copyOf(_derivative, n);
+				_cruiseVelocity = Arrays.copyOf(_cruiseVelocity, n);
+				_acceleration = Arrays.copyOf(_acceleration, n);
+				_sCurveStrength = Arrays.copyOf(_sCurveStrength, n);
+				_profileRestart = Arrays.copyOf(_profileRestart, n);
+				_profiler = Arrays.copyOf(_profiler, n);
+				_motionProfile = Arrays.copyOf(_motionProfile, n);
+				_limitSwitchSource = Arrays.copyOf(_limitSwitchSource, n * 2);
+				_limitSwitchNormal = Arrays.copyOf(_limitSwitchNormal, n * 2);
+				_limitSwitchDevice = Arrays.copyOf(_limitSwitchDevice, n * 2);
+				_softLimitThreshold = Arrays.copyOf(_softLimitThreshold, n * 2);
+				_softLimitEnable = Arrays.copyOf(_softLimitEnable, n * 2);
+				_limitSwitchesOverridden = Arrays.copyOf(_limitSwitchesOverridden, n);
+				_softLimitsOverridden = Arrays.copyOf(_softLimitsOverridden, n);
+				_limitFaults = Arrays.copyOf(_limitFaults, n);
+				_stickyFaults = Arrays.copyOf(_stickyFaults, n);
+				_peakCurrentLimit = Arrays.copyOf(_peakCurrentLimit, n);
+				_peakCurrentDurationMs = Arrays.copyOf(_peakCurrentDurationMs, n);
+				_continuousCurrentLimit = Arrays.copyOf(_continuousCurrentLimit, n);
+				_currentLimitEnable = Arrays.copyOf(_currentLimitEnable, n);
+				_currentLimiting = Arrays.copyOf(_currentLimiting, n);
+				_overPeakSince = Arrays.copyOf(_overPeakSince, n);
+				_unlimitedOutput = Arrays.copyOf(_unlimitedOutput, n);
+				_peakOutputForward = Arrays.copyOf(_peakOutputForward, n);
+				_peakOutputReverse = Arrays.copyOf(_peakOutputReverse, n);
+				_nominalOutputForward = Arrays.copyOf(_nominalOutputForward, n);
+				_nominalOutputReverse = Arrays.copyOf(_nominalOutputReverse, n);
+				_neutralDeadband = Arrays.copyOf(_neutralDeadband, n);
+				_openloopRamp = Arrays.copyOf(_openloopRamp, n);
+				_closedloopRamp = Arrays.copyOf(_closedloopRamp, n);
+				_voltageCompSaturation = Arrays.copyOf(_voltageCompSaturation, n);
+				_voltageCompEnable = Arrays.copyOf(_voltageCompEnable, n);
+				_rampTarget = Arrays.copyOf(_rampTarget, n);
+				_rampOutput = Arrays.copyOf(_rampOutput, n);
+				_firstStatusFrame = Arrays.copyOf(_firstStatusFrame, n);
+				_controlFrame = Arrays.copyOf(_controlFrame, n);
+				_sentOutput = Arrays.copyOf(_sentOutput, n);
+				_sentPosition = Arrays.copyOf(_sentPosition, n);
+				_sentVelocity = Arrays.copyOf(_sentVelocity, n);
+				_sentCurrent = Arrays.copyOf(_sentCurrent, n);
+				_sentQuadPosition = Arrays.copyOf(_sentQuadPosition, n);
+				_sentQuadVelocity = Arrays.copyOf(_sentQuadVelocity, n);
+				_sentBusVoltage = Arrays.copyOf(_sentBusVoltage, n);
+				_sentTemperature = Arrays.copyOf(_sentTemperature, n);
+				_sentPulseWidthPosition = Arrays.copyOf(_sentPulseWidthPosition, n);
+				_sentPulseWidthVelocity = Arrays.copyOf(_sentPulseWidthVelocity, n);
+				_sentError = Arrays.copyOf(_sentError, n);
+				_sentIAccum = Arrays.copyOf(_sentIAccum, n);
+				_sentDerivative = Arrays.copyOf(_sentDerivative, n);
+			}
+			_count = h + 1;
+			_baseArbId[h] = baseArbId;
+			for (int s = h * kSlots; s < (h + 1) * kSlots; s++) {
+				_peakOutput[s] = 1;
+				_periodMs[s] = 1;
+			}
+			_overPeakSince[h] = -1;
+			_peakOutputForward[h] = 1;
+			_peakOutputReverse[h] = -1;
+			_neutralDeadband[h] = kDefaultNeutralDeadband;
+			_voltageCompSaturation[h] = kDefaultVoltageCompSaturation;
+			_profiler[h] = new MotionMagicProfiler();
+			_motionProfile[h] = new MotionProfileExecutor();
+			if ((baseArbId & ~0x3F) == kVictorSPXArbId) {
+				// No feedback connector.
+				_limitSwitchSource[h * 2] = kLimitSwitchDeactivated;
+				_limitSwitchSource[h * 2 + 1] = kLimitSwitchDeactivated;
+			}
+			_motor[h] = _physics.add(motorName(baseArbId));
+			_physics.registerDevice(_motor[h], baseArbId);
+			for (int i = 0; i < kStatusFrames.length; i++) {
+				int frame = kStatusFrames[i];
+				int periodMs = frame == kStatus1General ? 10 : frame == kStatus2Feedback0 ? 20
+						: kDefaultStatusFramePeriodMs;
+				if (isTalonOnly(frame) && (baseArbId & ~0x3F) != kTalonSRXArbId)
+					periodMs = 0;
+				int f = _bus.addFrame(_status, h, frame, 8, periodMs);
+				if (i == 0)
+					_firstStatusFrame[h] = f;
+			}
+			_controlFrame[h] = _bus.addFrame(null, h, kControl3General, 8, kDefaultControlFramePeriodMs);
+			return h;
+		}
+	}
+
+	/* CAN frames */
+
+	private static boolean isTalonOnly(int frame) {
+		return frame == kStatus3Quadrature || frame == kStatus8PulseWidth || frame == kStatus11UartGadgeteer;
+	}
+
+	// The bus frame of a status frame, -1 if the controller does not send
+	// it.
+	private static int statusFrame(int h, int frame) {
+		if (isTalonOnly(frame) && (_baseArbId[h] & ~0x3F) != kTalonSRXArbId)
+			return -1;
+		for (int i = 0; i < kStatusFrames.length; i++) {
+			if (kStatusFrames[i] == frame)
+				return _firstStatusFrame[h] + i;
+		}
+		return -1;
+	}
+
+	public static int SetStatusFramePeriod(long handle, int frame, int periodMs, int timeoutMs) {
+		synchronized (_physics) {
+			int f = statusFrame((int) handle, frame);
+			if (f < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_bus.setPeriod(f, Math.max(1, Math.min(255, periodMs)));
+			return 0;
+		}
+	}
+
+	public static int GetStatusFramePeriod(long handle, int frame, int timeoutMs) {
+		synchronized (_physics) {
+			int f = statusFrame((int) handle, frame);
+			return f < 0 ? 0 : _bus.getPeriod(f);
+		}
+	}
+
+	// Only the general control frame is sent periodically.
+	public static int SetControlFramePeriod(long handle, int frame, int periodMs) {
+		synchronized (_physics) {
+			if (frame == kControl3General)
+				_bus.setPeriod(_controlFrame[(int) handle], Math.max(1, Math.min(100, periodMs)));
+			return 0;
+		}
+	}
+
+	// The motor of a controller is named after its type, as a Talon SRX
+	// and a Victor SPX may have the same device number.
+	private static String motorName(int baseArbId) {
+		return ((baseArbId & ~0x3F) == kVictorSPXArbId ? "victorspx:" : "talonsrx:") + (baseArbId & 0x3F);
+	}
+
+	public static int GetDeviceNumber(long handle) {
+		synchronized (_physics) {
+			return _baseArbId[(int) handle] & 0x3F;
+		}
+	}
+
+	/* Output */
+
+	// Shape an output and make it the target of the ramp.
+	private static void drive(int h, double out) {
+		if (_demand1Type[h] == kArbitraryFeedForward)
+			out += _demand1[h];
+		out = Math.max(_peakOutputReverse[h], Math.min(_peakOutputForward[h], out));
+		if (Math.abs(out) < _neutralDeadband[h])
+			out = 0;
+		else if (isClosedLoop(_mode[h]))
+			out = out > 0 ? Math.max(out, _nominalOutputForward[h]) : Math.min(out, _nominalOutputReverse[h]);
+		_rampTarget[h] = out;
+		if (rampSeconds(h) == 0)
+			_rampOutput[h] = out;
+		apply(h);
+	}
+
+	private static double rampSeconds(int h) {
+		if (isClosedLoop(_mode[h]))
+			return _closedloopRamp[h];
+		return _mode[h] == kPercentOutput ? _openloopRamp[h] : 0;
+	}
+
+	private static boolean isRamping(int h) {
+		return _rampOutput[h] != _rampTarget[h];
+	}
+
+	// Move the ramped output towards its target by one firmware tick.  The
+	// ramp starts from neutral while the robot is disabled.
+	private static void ramp(int h) {
+		double seconds = rampSeconds(h);
+		if (!_physics.isEnabled()) {
+			_rampOutput[h] = 0;
+		} else if (seconds == 0) {
+			_rampOutput[h] = _rampTarget[h];
+		} else {
+			double step = MotorPhysics.kTickMicros / 1e6 / seconds;
+			_rampOutput[h] += Math.max(-step, Math.min(step, _rampTarget[h] - _rampOutput[h]));
+		}
+	}
+
+	// Drive the motor with the ramped output.
+	private static void apply(int h) {
+		double out = _rampOutput[h];
+		if (_voltageCompEnable[h] && out != 0)
+			out = Math.max(-1, Math.min(1, out * _voltageCompSaturation[h] / _physics.getBusVoltage()));
+		out = limit(h, out);
+		if (_inverted[h])
+			out = -out;
+		_unlimitedOutput[h] = out;
+		if (_currentLimiting[h])
+			out = _physics.limitCurrent(_motor[h], out, _continuousCurrentLimit[h]);
+		_physics.setOutput(_motor[h], out);
+	}
+
+	// Neutral an output that drives into a limit, and record the fault.
+	private static double limit(int h, double out) {
+		int faults = 0;
+		if (out > 0) {
+			if (isLimitSwitchTripped(h, true))
+				faults |= kForwardLimitSwitch;
+			if (isSoftLimitEnabled(h, true) && selectedPosition(h) > _softLimitThreshold[h * 2])
+				faults |= kForwardSoftLimit;
+		} else if (out < 0) {
+			if (isLimitSwitchTripped(h, false))
+				faults |= kReverseLimitSwitch;
+			if (isSoftLimitEnabled(h, false) && selectedPosition(h) < _softLimitThreshold[h * 2 + 1])
+				faults |= kReverseSoftLimit;
+		}
+		_limitFaults[h] = faults;
+		_stickyFaults[h] |= faults;
+		return faults != 0 ? 0 : out;
+	}
+
+	// Recompute the motor output after a change of demand or inversion.
+	private static void update(int h) {
+		if (_mode[h] == kPercentOutput)
+			drive(h, _demand0[h]);
+		else if (!isClosedLoop(_mode[h]))
+			drive(h, 0);
+		// Closed loops update their output on their next run.
+	}
+
+	public static void Set_4(long handle, int mode, double demand0, double demand1, int demand1Type) {
+		synchronized (_physics) {
+			// Setting the output cancels a streamed motion profile.
+			_motionProfile[(int) handle].cancel();
+			setMode((int) handle, mode, demand0, demand1, demand1Type);
+		}
+	}
+
+	private static void setMode(int h, int mode, double demand0, double demand1, int demand1Type) {
+		boolean changed = mode != _mode[h];
+		if (changed && _mode[h] == kFollower)
+			_physics.follow(_motor[h], 0, 0, false);
+		if (isClosedLoop(mode) != isClosedLoop(_mode[h]))
+			_closedLoopCount += isClosedLoop(mode) ? 1 : -1;
+		if (changed) {
+			_iAccum[h] = 0;
+			_lastRun[h] = Long.MIN_VALUE / 2;
+			_profileRestart[h] = true;
+		}
+		_mode[h] = mode;
+		_demand0[h] = demand0;
+		_demand1[h] = demand1;
+		_demand1Type[h] = demand1Type;
+		if (isMotionProfile(mode)) {
+			_motionProfile[h].setArc(mode == kMotionProfileArc);
+			// Hold where we are until a point is active.
+			if (changed)
+				_target[h] = closedLoopSensor(h);
+		} else if (isClosedLoop(mode) && mode != kMotionMagic) {
+			_target[h] = demand0;
+		}
+		if (mode == kFollower)
+			follow(h);
+		update(h);
+	}
+
+	// Follow the controller given by the demand, an id as built by
+	// BaseMotorController.follow().
+	private static void follow(int h) {
+		int id24 = (int) _demand0[h];
+		int leaderArbId = ((id24 >> 8) << 16) | (id24 & 0xFF);
+		if (_invertType[h] == InvertType.FollowMaster.value)
+			_physics.follow(_motor[h], leaderArbId, 1, false);
+		else if (_invertType[h] == InvertType.OpposeMaster.value)
+			_physics.follow(_motor[h], leaderArbId, -1, false);
+		else
+			_physics.follow(_motor[h], leaderArbId, _inverted[h] ? -1 : 1, true);
+	}
+
+	public static void SetInverted(long handle, boolean invert) {
+		SetInverted_2(handle, invert ? InvertType.InvertMotorOutput.value : InvertType.None.value);
+	}
+
+	public static void SetInverted_2(long handle, int invertType) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_invertType[h] = invertType;
+			_inverted[h] = invertType == InvertType.InvertMotorOutput.value;
+			_physics.setInverted(_motor[h], _inverted[h]);
+			if (_mode[h] == kFollower)
+				follow(h);
+			update(h);
+		}
+	}
+
+	public static void SetSensorPhase(long handle, boolean PhaseSensor) {
+		synchronized (_physics) {
+			_sensorPhase[(int) handle] = PhaseSensor;
+		}
+	}
+
+	/* Closed loop */
+
+	// Sensor value for the closed loop of the current mode.
+	private static double closedLoopSensor(int h) {
+		if (_mode[h] == kVelocity)
+			return _physics.getVelocity(_motor[h]) * sensorSign(h) / 10;
+		if (_mode[h] == kCurrent)
+			return _physics.getSignedCurrent(_motor[h]) * (_inverted[h] ? -1000 : 1000);
+		return _physics.getPosition(_motor[h]) * sensorSign(h) + _selectedOffset[h];
+	}
+
+	private static void runClosedLoop(int h, long now) {
+		int s = h * kSlots + _slot[h];
+		_lastRun[h] = now;
+		if (!_physics.isEnabled()) {
+			// The firmware clears the loop state while neutral.
+			_iAccum[h] = 0;
+			_derivative[h] = 0;
+			_profileRestart[h] = true;
+			_error[h] = _target[h] - closedLoopSensor(h);
+			return;
+		}
+		double feedForwardTarget = _target[h];
+		double arbFeedFwd = 0;
+		if (isMotionProfile(_mode[h])) {
+			MotionProfileExecutor mp = _motionProfile[h];
+			int outputEnable = mp.getOutputEnable((int) _demand0[h]);
+			if (outputEnable == kMPDisable) {
+				// Neutral output, the buffered points are kept.
+				_iAccum[h] = 0;
+				_error[h] = 0;
+				_physics.setOutput(_motor[h], 0);
+				return;
+			}
+			feedForwardTarget = 0;
+			if (mp.isActivePointValid()) {
+				// Streamed points are not checked when they are pushed.
+				if (slotIndex(h, mp.getProfileSlotSelect0()) >= 0)
+					s = slotIndex(h, mp.getProfileSlotSelect0());
+				_target[h] = mp.getPosition(now);
+				if (outputEnable == kMPEnable) {
+					feedForwardTarget = mp.getVelocity(now);
+					arbFeedFwd = mp.getArbFeedFwd();
+				}
+			}
+		} else if (_mode[h] == kMotionMagic) {
+			MotionMagicProfiler profiler = _profiler[h];
+			if (_profileRestart[h]) {
+				profiler.start(closedLoopSensor(h), _physics.getVelocity(_motor[h]) * sensorSign(h) / 10);
+				_profileRestart[h] = false;
+			}
+			profiler.update(_demand0[h], _cruiseVelocity[h], _acceleration[h], _sCurveStrength[h],
+					_periodMs[s] / 1000.);
+			_target[h] = profiler.getPosition();
+			feedForwardTarget = profiler.getVelocity();
+		}
+		double error = _target[h] - closedLoopSensor(h);
+		if (Math.abs(error) <= _allowableError[s]) {
+			error = 0;
+		}
+		if (_iZone[s] != 0 && Math.abs(error) > _iZone[s]) {
+			_iAccum[h] = 0;
+		} else {
+			_iAccum[h] += error;
+			if (_maxIAccum[s] != 0)
+				_iAccum[h] = Math.max(-_maxIAccum[s], Math.min(_maxIAccum[s], _iAccum[h]));
+		}
+		_derivative[h] = error - _error[h];
+		_error[h] = error;
+		double out = (_kP[s] * error + _kI[s] * _iAccum[h] + _kD[s] * _derivative[h] + _kF[s] * feedForwardTarget) / 1023;
+		out = Math.max(-_peakOutput[s], Math.min(_peakOutput[s], out));
+		drive(h, out + arbFeedFwd);
+	}
+
+	// The index of a slot in the slot arrays, -1 for a slot that does not
+	// exist.
+	private static int slotIndex(long handle, int slotIdx) {
+		return slotIdx >= 0 && slotIdx < kSlots ? (int) handle * kSlots + slotIdx : -1;
+	}
+
+	public static int Config_kP(long handle, int slotIdx, double value, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_kP[s] = value;
+			return 0;
+		}
+	}
+
+	public static int Config_kI(long handle, int slotIdx, double value, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_kI[s] = value;
+			return 0;
+		}
+	}
+
+	public static int Config_kD(long handle, int slotIdx, double value, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_kD[s] = value;
+			return 0;
+		}
+	}
+
+	public static int Config_kF(long handle, int slotIdx, double value, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_kF[s] = value;
+			return 0;
+		}
+	}
+
+	public static int Config_IntegralZone(long handle, int slotIdx, double izone, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_iZone[s] = izone;
+			return 0;
+		}
+	}
+
+	public static int ConfigAllowableClosedloopError(long handle, int slotIdx, int allowableClosedLoopError,
+			int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_allowableError[s] = allowableClosedLoopError;
+			return 0;
+		}
+	}
+
+	public static int ConfigMaxIntegralAccumulator(long handle, int slotIdx, double iaccum, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_maxIAccum[s] = iaccum;
+			return 0;
+		}
+	}
+
+	public static int ConfigClosedLoopPeakOutput(long handle, int slotIdx, double percentOut, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_peakOutput[s] = Math.max(0, Math.min(1, percentOut));
+			return 0;
+		}
+	}
+
+	public static int ConfigClosedLoopPeriod(long handle, int slotIdx, int loopTimeMs, int timeoutMs) {
+		synchronized (_physics) {
+			int s = slotIndex(handle, slotIdx);
+			if (s < 0)
+				return ErrorCode.InvalidParamValue.value;
+			_periodMs[s] = Math.max(1, loopTimeMs);
+			return 0;
+		}
+	}
+
+	public static void SelectProfileSlot(long handle, int slotIdx, int pidIdx) {
+		synchronized (_physics) {
+			if (pidIdx == 0 && slotIndex(handle, slotIdx) >= 0)
+				_slot[(int) handle] = slotIdx;
+		}
+	}
+
+	public static int SetIntegralAccumulator(long handle, double iaccum, int pidIdx, int timeoutMs) {
+		synchronized (_physics) {
+			if (pidIdx == 0)
+				_iAccum[(int) handle] = iaccum;
+			return 0;
+		}
+	}
+
+	public static int GetClosedLoopError(long handle, int pidIdx) {
+		synchronized (_physics) {
+			// Bring the loop and the status frames up to date first.
+			_physics.update();
+			return pidIdx == 0 ? (int) Math.round(_sentError[(int) handle]) : 0;
+		}
+	}
+
+	public static double GetIntegralAccumulator(long handle, int pidIdx) {
+		synchronized (_physics) {
+			_physics.update();
+			return pidIdx == 0 ? _sentIAccum[(int) handle] : 0;
+		}
+	}
+
+	public static double GetErrorDerivative(long handle, int pidIdx) {
+		synchronized (_physics) {
+			_physics.update();
+			return pidIdx == 0 ? _sentDerivative[(int) handle] : 0;
+		}
+	}
+
+	public static int ConfigMotionCruiseVelocity(long handle, int sensorUnitsPer100ms, int timeoutMs) {
+		synchronized (_physics) {
+			_cruiseVelocity[(int) handle] = sensorUnitsPer100ms;
+			return 0;
+		}
+	}
+
+	public static int ConfigMotionAcceleration(long handle, int sensorUnitsPer100msPerSec, int timeoutMs) {
+		synchronized (_physics) {
+			_acceleration[(int) handle] = sensorUnitsPer100msPerSec;
+			return 0;
+		}
+	}
+
+	public static int ConfigMotionSCurveStrength(long handle, int curveStrength, int timeoutMs) {
+		synchronized (_physics) {
+			_sCurveStrength[(int) handle] = curveStrength;
+			return 0;
+		}
+	}
+
+	public static int GetActiveTrajectoryPosition(long handle) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_physics.getPosition(_motor[h]);
+			if (_mode[h] == kMotionMagic)
+				return (int) Math.round(_profiler[h].getPosition());
+			if (isMotionProfile(_mode[h]) && _motionProfile[h].isActivePointValid())
+				return (int) Math.round(_motionProfile[h].getPosition(_lastRun[h]));
+			return 0;
+		}
+	}
+
+	public static int GetActiveTrajectoryVelocity(long handle) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_physics.getPosition(_motor[h]);
+			if (_mode[h] == kMotionMagic)
+				return (int) Math.round(_profiler[h].getVelocity());
+			if (isMotionProfile(_mode[h]) && _motionProfile[h].isActivePointValid())
+				return (int) Math.round(_motionProfile[h].getVelocity(_lastRun[h]));
+			return 0;
+		}
+	}
+
+	/* Motion profile */
+
+	public static int PushMotionProfileTrajectory3(long handle, double position, double velocity,
+			double arbFeedFwd, double auxiliaryPos, double auxiliaryVel, double auxiliaryArbFeedFwd,
+			int profileSlotSelect0, int profileSlotSelect1, boolean isLastPoint, boolean zeroPos, int timeDur,
+			boolean useAuxPID) {
+		synchronized (_physics) {
+			if (slotIndex(handle, profileSlotSelect0) < 0)
+				return ErrorCode.InvalidParamValue.value;
+			return _motionProfile[(int) handle].push(position, velocity, arbFeedFwd, auxiliaryPos, auxiliaryVel,
+					auxiliaryArbFeedFwd, profileSlotSelect0, profileSlotSelect1, isLastPoint, zeroPos, timeDur,
+					useAuxPID);
+		}
+	}
+
+	public static void ProcessMotionProfileBuffer(long handle) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			// Run the executer up to now before adding to its buffer.
+			_physics.getPosition(_motor[h]);
+			_motionProfile[h].process(RobotController.getFPGATime());
+		}
+	}
+
+	public static int ClearMotionProfileTrajectories(long handle) {
+		synchronized (_physics) {
+			_motionProfile[(int) handle].clear();
+			return 0;
+		}
+	}
+
+	public static int GetMotionProfileTopLevelBufferCount(long handle) {
+		synchronized (_physics) {
+			return _motionProfile[(int) handle].getTopCount();
+		}
+	}
+
+	public static boolean IsMotionProfileTopLevelBufferFull(long handle) {
+		synchronized (_physics) {
+			return _motionProfile[(int) handle].isTopFull();
+		}
+	}
+
+	public static int GetMotionProfileStatus2(long handle, int[] statusToFill) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_physics.getPosition(_motor[h]);
+			_motionProfile[h].getStatus(statusToFill);
+			return 0;
+		}
+	}
+
+	public static int ClearMotionProfileHasUnderrun(long handle, int timeoutMs) {
+		synchronized (_physics) {
+			_motionProfile[(int) handle].clearHasUnderrun();
+			return 0;
+		}
+	}
+
+	public static int ChangeMotionControlFramePeriod(long handle, int periodMs) {
+		synchronized (_physics) {
+			_motionProfile[(int) handle].setFramePeriod(periodMs);
+			return 0;
+		}
+	}
+
+	public static int ConfigMotionProfileTrajectoryPeriod(long handle, int baseTrajDurationMs, int timeoutMs) {
+		synchronized (_physics) {
+			_motionProfile[(int) handle].setBasePeriod(baseTrajDurationMs);
+			return 0;
+		}
+	}
+
+	public static int ConfigMotionProfileTrajectoryInterpolationEnable(long handle, boolean enable, int timeoutMs) {
+		synchronized (_physics) {
+			_motionProfile[(int) handle].setInterpolation(enable);
+			return 0;
+		}
+	}
+
+	public static int StartMotionProfile(long handle, long streamHandle, int minBufferedPts, int controlMode) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			if (!isMotionProfile(controlMode))
+				return ErrorCode.InvalidParamValue.value;
+			_physics.getPosition(_motor[h]);
+			_motionProfile[h].start(BuffTrajPointStreamJNI.GetBuffer(streamHandle), minBufferedPts);
+			setMode(h, controlMode, kMPDisable, 0, 0);
+			return 0;
+		}
+	}
+
+	public static boolean IsMotionProfileFinished(long handle) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_physics.getPosition(_motor[h]);
+			return _motionProfile[h].isFinished();
+		}
+	}
+
+	public static double GetClosedLoopTarget(long handle, int pidIdx) {
+		synchronized (_physics) {
+			return pidIdx == 0 ? _target[(int) handle] : 0;
+		}
+	}
+
+	/* Limits */
+
+	private static boolean isSoftLimitEnabled(int h, boolean forward) {
+		return !_softLimitsOverridden[h] && _softLimitEnable[h * 2 + (forward ? 0 : 1)];
+	}
+
+	// The limit switch is pressed, from the feedback connector of this
+	// controller or of a remote Talon SRX, and enabled.
+	private static boolean isLimitSwitchTripped(int h, boolean forward) {
+		int i = h * 2 + (forward ? 0 : 1);
+		if (_limitSwitchesOverridden[h] || _limitSwitchNormal[i] == kLimitSwitchDisabled)
+			return false;
+		int source = h;
+		if (_limitSwitchSource[i] == kRemoteTalonSRX)
+			source = handleOf(kTalonSRXArbId | _limitSwitchDevice[i]);
+		else if (_limitSwitchSource[i] != kFeedbackConnector)
+			return false;
+		return source >= 0 && _physics.isLimitSwitchPressed(_motor[source], forward);
+	}
+
+	private static int handleOf(int baseArbId) {
+		for (int h = 0; h < _count; h++) {
+			if (_baseArbId[h] == baseArbId)
+				return h;
+		}
+		return -1;
+	}
+
+	// A limit may neutral the output at any time.
+	private static boolean isLimited(int h) {
+		return isSoftLimitEnabled(h, true) || isSoftLimitEnabled(h, false)
+				|| (!_limitSwitchesOverridden[h] && _physics.hasLimitSwitches());
+	}
+
+	private static int configLimitSwitchSource(long handle, boolean forward, int type, int normalOpenOrClose,
+			int deviceID) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			int i = h * 2 + (forward ? 0 : 1);
+			_limitSwitchSource[i] = type;
+			_limitSwitchNormal[i] = normalOpenOrClose;
+			_limitSwitchDevice[i] = deviceID;
+			update(h);
+			return 0;
+		}
+	}
+
+	public static int ConfigForwardLimitSwitchSource(long handle, int type, int normalOpenOrClose, int deviceID,
+			int timeoutMs) {
+		return configLimitSwitchSource(handle, true, type, normalOpenOrClose, deviceID);
+	}
+
+	public static int ConfigReverseLimitSwitchSource(long handle, int type, int normalOpenOrClose, int deviceID,
+			int timeoutMs) {
+		return configLimitSwitchSource(handle, false, type, normalOpenOrClose, deviceID);
+	}
+
+	/**
+	 * @param enable false to ignore the limit switches.
+	 */
+	public static void OverrideLimitSwitchesEnable(long handle, boolean enable) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_limitSwitchesOverridden[h] = !enable;
+			update(h);
+		}
+	}
+
+	public static int ConfigForwardSoftLimitThreshold(long handle, int forwardSensorLimit, int timeoutMs) {
+		synchronized (_physics) {
+			_softLimitThreshold[(int) handle * 2] = forwardSensorLimit;
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigReverseSoftLimitThreshold(long handle, int reverseSensorLimit, int timeoutMs) {
+		synchronized (_physics) {
+			_softLimitThreshold[(int) handle * 2 + 1] = reverseSensorLimit;
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigForwardSoftLimitEnable(long handle, boolean enable, int timeoutMs) {
+		synchronized (_physics) {
+			_softLimitEnable[(int) handle * 2] = enable;
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigReverseSoftLimitEnable(long handle, boolean enable, int timeoutMs) {
+		synchronized (_physics) {
+			_softLimitEnable[(int) handle * 2 + 1] = enable;
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	/**
+	 * @param enable false to ignore the soft limits.
+	 */
+	public static void OverrideSoftLimitsEnable(long handle, boolean enable) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_softLimitsOverridden[h] = !enable;
+			update(h);
+		}
+	}
+
+	/**
+	 * @return 1 if the forward limit switch on the feedback connector is
+	 *         pressed, whether or not the limit is enabled.
+	 */
+	public static int IsFwdLimitSwitchClosed(long handle) {
+		synchronized (_physics) {
+			return _physics.isLimitSwitchPressed(_motor[(int) handle], true) ? 1 : 0;
+		}
+	}
+
+	public static int IsRevLimitSwitchClosed(long handle) {
+		synchronized (_physics) {
+			return _physics.isLimitSwitchPressed(_motor[(int) handle], false) ? 1 : 0;
+		}
+	}
+
+	/* Faults */
+
+	// The limit faults as of the last output, and the bus voltage now.
+	private static int faults(int h) {
+		int faults = _limitFaults[h];
+		if (_physics.getBusVoltage() < kUnderVoltageThreshold)
+			faults |= kUnderVoltage;
+		_stickyFaults[h] |= faults;
+		return faults;
+	}
+
+	public static int GetFaults(long handle) {
+		synchronized (_physics) {
+			return faults((int) handle);
+		}
+	}
+
+	public static int GetStickyFaults(long handle) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			faults(h);
+			return _stickyFaults[h];
+		}
+	}
+
+	public static int ClearStickyFaults(long handle, int timeoutMs) {
+		synchronized (_physics) {
+			_stickyFaults[(int) handle] = 0;
+			return 0;
+		}
+	}
+
+	/* General status */
+
+	public static double GetBusVoltage(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return _sentBusVoltage[(int) handle];
+		}
+	}
+
+	private static double motorOutputPercent(int h) {
+		double out = _physics.getOutput(_motor[h]);
+		return _inverted[h] ? -out : out;
+	}
+
+	public static double GetMotorOutputPercent(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return _sentOutput[(int) handle];
+		}
+	}
+
+	public static double GetOutputCurrent(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return _sentCurrent[(int) handle];
+		}
+	}
+
+	/* Current limit */
+
+	private static boolean isCurrentLimitWatched(int h) {
+		return _currentLimitEnable[h] && _unlimitedOutput[h] != 0;
+	}
+
+	// Start limiting when the current has been above the peak for the
+	// peak duration, stop when the output asked for draws less than the
+	// continuous limit.
+	private static void updateCurrentLimit(int h, long now) {
+		int continuous = _continuousCurrentLimit[h];
+		if (_currentLimiting[h]) {
+			double out = _unlimitedOutput[h];
+			if (_physics.limitCurrent(_motor[h], out, continuous) == out) {
+				_currentLimiting[h] = false;
+				_overPeakSince[h] = -1;
+			}
+			return;
+		}
+		boolean peak = _peakCurrentLimit[h] > 0;
+		if (_physics.getCurrent(_motor[h]) <= (peak ? _peakCurrentLimit[h] : continuous)) {
+			_overPeakSince[h] = -1;
+			return;
+		}
+		if (_overPeakSince[h] < 0)
+			_overPeakSince[h] = now;
+		if (!peak || now - _overPeakSince[h] >= _peakCurrentDurationMs[h] * 1000L)
+			_currentLimiting[h] = true;
+	}
+
+	/* Output shaping */
+
+	public static int ConfigOpenloopRamp(long handle, double secondsFromNeutralToFull, int timeoutMs) {
+		synchronized (_physics) {
+			_openloopRamp[(int) handle] = Math.max(0, secondsFromNeutralToFull);
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigClosedloopRamp(long handle, double secondsFromNeutralToFull, int timeoutMs) {
+		synchronized (_physics) {
+			_closedloopRamp[(int) handle] = Math.max(0, secondsFromNeutralToFull);
+			return 0;
+		}
+	}
+
+	public static int ConfigPeakOutputForward(long handle, double percentOut, int timeoutMs) {
+		synchronized (_physics) {
+			_peakOutputForward[(int) handle] = Math.max(0, Math.min(1, percentOut));
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigPeakOutputReverse(long handle, double percentOut, int timeoutMs) {
+		synchronized (_physics) {
+			_peakOutputReverse[(int) handle] = Math.max(-1, Math.min(0, percentOut));
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigNominalOutputForward(long handle, double percentOut, int timeoutMs) {
+		synchronized (_physics) {
+			_nominalOutputForward[(int) handle] = Math.max(0, Math.min(1, percentOut));
+			return 0;
+		}
+	}
+
+	public static int ConfigNominalOutputReverse(long handle, double percentOut, int timeoutMs) {
+		synchronized (_physics) {
+			_nominalOutputReverse[(int) handle] = Math.max(-1, Math.min(0, percentOut));
+			return 0;
+		}
+	}
+
+	public static int ConfigNeutralDeadband(long handle, double percentDeadband, int timeoutMs) {
+		synchronized (_physics) {
+			_neutralDeadband[(int) handle] = Math.max(0.001, Math.min(0.25, percentDeadband));
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static int ConfigVoltageCompSaturation(long handle, double voltage, int timeoutMs) {
+		synchronized (_physics) {
+			_voltageCompSaturation[(int) handle] = Math.max(0, voltage);
+			update((int) handle);
+			return 0;
+		}
+	}
+
+	public static void EnableVoltageCompensation(long handle, boolean enable) {
+		synchronized (_physics) {
+			_voltageCompEnable[(int) handle] = enable;
+			update((int) handle);
+		}
+	}
+
+	public static int ConfigPeakCurrentLimit(long handle, int amps, int timeoutMs) {
+		synchronized (_physics) {
+			_peakCurrentLimit[(int) handle] = Math.max(0, amps);
+			return 0;
+		}
+	}
+
+	public static int ConfigPeakCurrentDuration(long handle, int milliseconds, int timeoutMs) {
+		synchronized (_physics) {
+			_peakCurrentDurationMs[(int) handle] = Math.max(0, milliseconds);
+			return 0;
+		}
+	}
+
+	public static int ConfigContinuousCurrentLimit(long handle, int amps, int timeoutMs) {
+		synchronized (_physics) {
+			_continuousCurrentLimit[(int) handle] = Math.max(0, amps);
+			return 0;
+		}
+	}
+
+	public static void EnableCurrentLimit(long handle, boolean enable) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_currentLimitEnable[h] = enable;
+			if (!enable) {
+				_currentLimiting[h] = false;
+				_overPeakSince[h] = -1;
+				update(h);
+			}
+		}
+	}
+
+	public static double GetTemperature(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return _sentTemperature[(int) handle];
+		}
+	}
+
+	/* Sensors */
+
+	// The sensor as the firmware sees it: in phase with the motor output
+	// unless the sensor phase or the inversion say otherwise.
+	private static double sensorSign(int h) {
+		return (_inverted[h] ^ _sensorPhase[h]) ? -1 : 1;
+	}
+
+	private static double selectedPosition(int h) {
+		return _physics.getPosition(_motor[h]) * sensorSign(h) + _selectedOffset[h];
+	}
+
+	// Native velocity units are counts per 100ms.
+	private static double selectedVelocity(int h) {
+		return _physics.getVelocity(_motor[h]) * sensorSign(h) / 10;
+	}
+
+	public static int GetSelectedSensorPosition(long handle, int pidIdx) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentPosition[(int) handle]);
+		}
+	}
+
+	public static int GetSelectedSensorVelocity(long handle, int pidIdx) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentVelocity[(int) handle]);
+		}
+	}
+
+	// A trajectory point asked for the selected sensor to be zeroed.
+	private static void zeroSensor(int h) {
+		_selectedOffset[h] = -_physics.getPosition(_motor[h]) * sensorSign(h);
+	}
+
+	public static int SetSelectedSensorPosition(long handle, int sensorPos, int pidIdx, int timeoutMs) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			double raw = _physics.getPosition(_motor[h]);
+			_selectedOffset[h] = sensorPos - raw * sensorSign(h);
+			return 0;
+		}
+	}
+
+	public static int GetQuadraturePosition(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentQuadPosition[(int) handle]);
+		}
+	}
+
+	public static int SetQuadraturePosition(long handle, int newPosition, int timeoutMs) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_quadOffset[h] = newPosition - _physics.getPosition(_motor[h]);
+			return 0;
+		}
+	}
+
+	public static int GetQuadratureVelocity(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentQuadVelocity[(int) handle]);
+		}
+	}
+
+	public static int GetPulseWidthPosition(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentPulseWidthPosition[(int) handle]);
+		}
+	}
+
+	public static int SetPulseWidthPosition(long handle, int newPosition, int timeoutMs) {
+		synchronized (_physics) {
+			int h = (int) handle;
+			_pulseWidthOffset[h] = newPosition - _physics.getPosition(_motor[h]);
+			return 0;
+		}
+	}
+
+	public static int GetPulseWidthVelocity(long handle) {
+		synchronized (_physics) {
+			_physics.update();
+			return (int) Math.round(_sentPulseWidthVelocity[(int) handle]);
+		}
+	}
+}
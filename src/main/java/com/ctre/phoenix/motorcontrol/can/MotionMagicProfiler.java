@@ -0,0 +1,123 @@
+package com.ctre.phoenix.motorcontrol.can;
+
+/**
+ * Emulation of the Motion Magic profile generator of the motor controller
+ * firmware.
+ *
+ * <p>Every firmware period the profiler moves its setpoint towards the
+ * target, accelerating at most at the configured acceleration up to the
+ * cruise velocity and braking so as to stop on the target: a trapezoidal
+ * velocity profile.  With an S-curve strength of 1 to 8 the trapezoidal
+ * velocity is smoothed by a moving average whose length grows with the
+ * strength, up to the full acceleration time at 8, which limits the jerk
+ * without changing the distance travelled.
+ *
+ * <p>Units are those of the firmware: sensor units, sensor units per
+ * 100ms and sensor units per 100ms per second.
+ */
+class MotionMagicProfiler {
+	private static final int kMaxSCurveStrength = 8;
+
+	// Unfiltered trapezoidal profile, per second.
+	private double _trapPosition;
+	private double _trapVelocity;
+	// Output after smoothing.
+	private double _position;
+	private double _velocity;
+	// Moving average of the trapezoidal velocity.
+	private double[] _window = new double[0];
+	private int _windowLength;
+	private int _windowIndex;
+	private double _windowSum;
+
+	/**
+	 * Start a new profile from the current state of the mechanism.
+	 *
+	 * @param position Current sensor position.
+	 * @param velocity Current sensor velocity, per 100ms.
+	 */
+	void start(double position, double velocity) {
+		_trapPosition = position;
+		_trapVelocity = velocity * 10;
+		_position = position;
+		_velocity = velocity;
+		_windowLength = 0;
+		_windowSum = 0;
+	}
+
+	/**
+	 * Advance the profile by one firmware period.
+	 *
+	 * @param target Final position.
+	 * @param cruiseVelocity Per 100ms.
+	 * @param acceleration Per 100ms per second.
+	 * @param sCurveStrength 0 for a trapezoidal profile, up to 8.
+	 * @param dt Period in seconds.
+	 */
+	void update(double target, double cruiseVelocity, double acceleration, int sCurveStrength, double dt) {
+		double vmax = Math.abs(cruiseVelocity) * 10;
+		double amax = Math.abs(acceleration) * 10;
+		if (vmax == 0 || amax == 0) {
+			_trapVelocity = 0;
+		} else {
+			double remaining = target - _trapPosition;
+			double dv = amax * dt;
+			if (Math.abs(remaining) <= Math.abs(_trapVelocity) * dt && Math.abs(_trapVelocity) <= dv) {
+				// Close enough to stop on the target this period.
+				_trapPosition = target;
+				_trapVelocity = 0;
+			} else {
+				// The fastest velocity from which we can still stop on the
+				// target, limited by the cruise velocity.
+				double desired = Math.signum(remaining) * Math.min(vmax, Math.sqrt(2 * amax * Math.abs(remaining)));
+				_trapVelocity += Math.max(-dv, Math.min(dv, desired - _trapVelocity));
+				_trapPosition += _trapVelocity * dt;
+			}
+		}
+		smooth(sCurveStrength, amax == 0 ? 0 : vmax / amax, dt);
+	}
+
+	// Moving average of the trapezoid velocity over strength/8 of the
+	// time to reach cruise velocity.
+	private void smooth(int sCurveStrength, double accelTime, double dt) {
+		int strength = Math.max(0, Math.min(kMaxSCurveStrength, sCurveStrength));
+		int length = Math.max(1, (int) Math.round(accelTime * strength / kMaxSCurveStrength / dt));
+		if (length != _windowLength) {
+			// New filter, start it from the current smoothed velocity.
+			if (_window.length < length)
+				_window = new double[length];
+			double v = _velocity * 10;
+			for (int i = 0; i < length; i++)
+				_window[i] = v;
+			_windowLength = length;
+			_windowIndex = 0;
+			_windowSum = v * length;
+		}
+		_windowSum += _trapVelocity - _window[_windowIndex];
+		_window[_windowIndex] = _trapVelocity;
+		_windowIndex = (_windowIndex + 1) % length;
+		double v = _windowSum / length;
+		if (length == 1) {
+			_position = _trapPosition;
+		} else if (_trapVelocity == 0 && Math.abs(_windowSum) < 1e-6) {
+			// The filter has drained, settle exactly on the trapezoid.
+			_position = _trapPosition;
+			_windowSum = 0;
+			v = 0;
+		} else {
+			_position += v * dt;
+		}
+		_velocity = v / 10;
+	}
+
+	double getPosition() {
+		return _position;
+	}
+
+	/**
+	 * @return The setpoint velocity, per 100ms.
+	 */
+	double getVelocity() {
+		return _velocity;
+	}
+}
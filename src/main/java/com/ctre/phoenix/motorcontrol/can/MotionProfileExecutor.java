@@ -0,0 +1,282 @@
+package com.ctre.phoenix.motorcontrol.can;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motion.BuffTrajPointStreamJNI;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryBuffer;
+
+/**
+ * Emulation of the motion profile buffers and executer of a motor
+ * controller.
+ *
+ * <p>Trajectory points pushed by the robot code go to the API (top)
+ * buffer.  processMotionProfileBuffer moves at most one point per call to
+ * the firmware (bottom) buffer, no faster than one point per motion
+ * control frame period, as the points travel in the motion control frame.
+ * When a profile is started from a BufferedTrajectoryPointStream the
+ * points are streamed to the bottom buffer at the same rate, by the
+ * firmware tick.
+ *
+ * <p>While enabled the executer applies each point for the base
+ * trajectory period plus the point duration, then pops the next one.  If
+ * the bottom buffer is empty at that time and the active point is not the
+ * last one, the executer underruns and keeps servoing the active point.
+ */
+class MotionProfileExecutor {
+	static final int kTopBufferCapacity = 2048;
+	static final int kBottomBufferCapacity = 120;
+	static final int kArcBottomBufferCapacity = 60;
+	static final int kDefaultFramePeriodMs = 10;
+
+	private static final int kDisable = SetValueMotionProfile.Disable.value;
+	private static final int kEnable = SetValueMotionProfile.Enable.value;
+	private static final int kHold = SetValueMotionProfile.Hold.value;
+
+	private final TrajectoryBuffer _top = new TrajectoryBuffer(kTopBufferCapacity);
+	private final TrajectoryBuffer _bottom = new TrajectoryBuffer(kBottomBufferCapacity);
+	private int _bottomCapacity = kBottomBufferCapacity;
+	private int _framePeriodMs = kDefaultFramePeriodMs;
+	private long _lastTransfer = Long.MIN_VALUE / 2;
+	private int _basePeriodMs;
+	private boolean _interpolate = true;
+
+	// The active point.
+	private boolean _activeValid;
+	private boolean _activeIsLast;
+	private double _activePosition;
+	private double _activeVelocity;
+	private double _activeArbFeedFwd;
+	private int _activeSlot0;
+	private int _activeSlot1;
+	private int _activeDurMs;
+	private long _activeEnd;
+	private boolean _isUnderrun;
+	private boolean _hasUnderrun;
+	private int _outputEnable = kDisable;
+
+	// The stream given to startMotionProfile, null when not streaming.
+	private TrajectoryBuffer _stream;
+	private int _streamIndex;
+	private int _minBufferedPts;
+	private int _streamOutput;
+	private boolean _finished;
+
+	/**
+	 * @return An ErrorCode value.
+	 */
+	int push(double position, double velocity, double arbFeedFwd, double auxiliaryPos, double auxiliaryVel,
+			double auxiliaryArbFeedFwd, int profileSlotSelect0, int profileSlotSelect1, boolean isLastPoint,
+			boolean zeroPos, int timeDur, boolean useAuxPID) {
+		if (!_top.push(position, velocity, arbFeedFwd, auxiliaryPos, auxiliaryVel, auxiliaryArbFeedFwd,
+				profileSlotSelect0, profileSlotSelect1, isLastPoint, zeroPos, timeDur, useAuxPID))
+			return ErrorCode.BufferFull.value;
+		return 0;
+	}
+
+	private boolean canTransfer(long now) {
+		return _bottom.size() < _bottomCapacity && now - _lastTransfer >= _framePeriodMs * 1000L;
+	}
+
+	/**
+	 * Move one point from the top buffer to the bottom buffer, if the
+	 * motion control frame is due.
+	 */
+	void process(long now) {
+		if (_top.size() == 0 || !canTransfer(now))
+			return;
+		_bottom.push(_top, 0);
+		_top.pop();
+		_lastTransfer = now;
+	}
+
+	void clear() {
+		_top.clear();
+		_bottom.clear();
+		_activeValid = false;
+		_stream = null;
+	}
+
+	/**
+	 * Start streaming a BufferedTrajectoryPointStream.
+	 */
+	void start(TrajectoryBuffer stream, int minBufferedPts) {
+		_bottom.clear();
+		_activeValid = false;
+		_isUnderrun = false;
+		_hasUnderrun = false;
+		_stream = stream;
+		_streamIndex = 0;
+		_minBufferedPts = minBufferedPts;
+		_streamOutput = kDisable;
+		_finished = false;
+	}
+
+	/**
+	 * Stop streaming, the robot code has taken over the control mode.
+	 */
+	void cancel() {
+		_stream = null;
+		_finished = false;
+	}
+
+	boolean isFinished() {
+		return _finished;
+	}
+
+	void setArc(boolean arc) {
+		_bottomCapacity = arc ? kArcBottomBufferCapacity : kBottomBufferCapacity;
+	}
+
+	void setFramePeriod(int periodMs) {
+		_framePeriodMs = Math.max(1, periodMs);
+	}
+
+	void setBasePeriod(int periodMs) {
+		_basePeriodMs = Math.max(0, periodMs);
+	}
+
+	void setInterpolation(boolean enable) {
+		_interpolate = enable;
+	}
+
+	void clearHasUnderrun() {
+		_hasUnderrun = false;
+	}
+
+	int getTopCount() {
+		return _top.size();
+	}
+
+	boolean isTopFull() {
+		return _top.isFull();
+	}
+
+	/**
+	 * @param demand The SetValueMotionProfile value given to set().
+	 * @return The output of the executer: the demand, or the state of the
+	 *         stream if streaming.
+	 */
+	int getOutputEnable(int demand) {
+		return _stream != null ? _streamOutput : demand;
+	}
+
+	// Stream one point to the bottom buffer if the frame is due.
+	private void stream(long now) {
+		synchronized (BuffTrajPointStreamJNI.class) {
+			if (_streamIndex < _stream.size() && canTransfer(now)) {
+				_bottom.push(_stream, _streamIndex++);
+				_lastTransfer = now;
+			}
+			if (_streamOutput == kDisable && (_bottom.size() >= _minBufferedPts || _streamIndex == _stream.size()))
+				_streamOutput = kEnable;
+		}
+	}
+
+	/**
+	 * Run the executer for one firmware tick.
+	 *
+	 * @param demand The SetValueMotionProfile value given to set().
+	 * @param enabled false while the robot is disabled, points are not
+	 *        consumed.
+	 * @return true if a point that zeroes the sensor became active.
+	 */
+	boolean update(long now, int demand, boolean enabled) {
+		if (_stream != null)
+			stream(now);
+		_outputEnable = getOutputEnable(demand);
+		if (_outputEnable == kDisable) {
+			_activeValid = false;
+			return false;
+		}
+		if (_outputEnable != kEnable || !enabled)
+			return false;
+		boolean expired = _activeValid && now >= _activeEnd;
+		if (_activeValid && _activeIsLast) {
+			if (expired && _stream != null)
+				finish();
+			return false;
+		}
+		if (_activeValid && !expired)
+			return false;
+		if (_bottom.size() == 0) {
+			_isUnderrun = true;
+			_hasUnderrun = true;
+			if (_stream != null && _streamIndex == _stream.size())
+				finish();
+			return false;
+		}
+		_isUnderrun = false;
+		_activeValid = true;
+		_activeIsLast = _bottom.isLastPoint(0);
+		_activePosition = _bottom.getPosition(0);
+		_activeVelocity = _bottom.getVelocity(0);
+		_activeArbFeedFwd = _bottom.getArbFeedFwd(0);
+		_activeSlot0 = _bottom.getProfileSlotSelect0(0);
+		_activeSlot1 = _bottom.getProfileSlotSelect1(0);
+		_activeDurMs = Math.max(1, _basePeriodMs + _bottom.getTimeDur(0));
+		_activeEnd = now + _activeDurMs * 1000L;
+		boolean zeroPos = _bottom.isZeroPos(0);
+		_bottom.pop();
+		return zeroPos;
+	}
+
+	// The streamed profile is done, hold the last point.
+	private void finish() {
+		_streamOutput = kHold;
+		_outputEnable = kHold;
+		_finished = true;
+	}
+
+	boolean isActivePointValid() {
+		return _activeValid;
+	}
+
+	// Fraction of the active point done, when interpolating towards the
+	// next one, or 0.
+	private double interpolation(long now) {
+		if (!_interpolate || _activeIsLast || _bottom.size() == 0 || now >= _activeEnd)
+			return 0;
+		return 1 - (_activeEnd - now) / (_activeDurMs * 1000.);
+	}
+
+	/**
+	 * @return The position setpoint, in sensor units.
+	 */
+	double getPosition(long now) {
+		double f = interpolation(now);
+		return f == 0 ? _activePosition : _activePosition + (_bottom.getPosition(0) - _activePosition) * f;
+	}
+
+	/**
+	 * @return The velocity setpoint, in sensor units per 100ms.
+	 */
+	double getVelocity(long now) {
+		double f = interpolation(now);
+		return f == 0 ? _activeVelocity : _activeVelocity + (_bottom.getVelocity(0) - _activeVelocity) * f;
+	}
+
+	double getArbFeedFwd() {
+		return _activeArbFeedFwd;
+	}
+
+	int getProfileSlotSelect0() {
+		return _activeSlot0;
+	}
+
+	/**
+	 * Fill the status array of GetMotionProfileStatus2.
+	 */
+	void getStatus(int[] status) {
+		status[0] = _top.capacity() - _top.size();
+		status[1] = _top.size();
+		status[2] = _bottom.size();
+		status[3] = _hasUnderrun ? 1 : 0;
+		status[4] = _isUnderrun ? 1 : 0;
+		status[5] = _activeValid ? 1 : 0;
+		status[6] = _activeValid && _activeIsLast ? 1 : 0;
+		status[7] = _activeSlot0;
+		status[8] = _outputEnable;
+		status[9] = _activeValid ? _activeDurMs : 0;
+		status[10] = _activeSlot1;
+	}
+}
@@ -298,7 +298,7 @@ public class TalonSRX extends com.ctre.phoenix.motorcontrol.can.BaseMotorControl
      * @return Error Code generated by function. 0 indicates no error. 
 	 */
 	public ErrorCode configPeakCurrentLimit(int amps, int timeoutMs) {
-		int retval =  0; //MotControllerJNI.ConfigPeakCurrentLimit(m_handle, amps, timeoutMs);
+		int retval = MotControllerJNI.ConfigPeakCurrentLimit(m_handle, amps, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -343,7 +343,7 @@ public class TalonSRX extends com.ctre.phoenix.motorcontrol.can.BaseMotorControl
      * @return Error Code generated by function. 0 indicates no error. 
 	 */
 	public ErrorCode configPeakCurrentDuration(int milliseconds, int timeoutMs) {
-		int retval = 0; //MotControllerJNI.ConfigPeakCurrentDuration(m_handle, milliseconds, timeoutMs);
+		int retval = MotControllerJNI.ConfigPeakCurrentDuration(m_handle, milliseconds, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -389,7 +389,7 @@ public class TalonSRX extends com.ctre.phoenix.motorcontrol.can.BaseMotorControl
      * @return Error Code generated by function. 0 indicates no error. 
 	 */
 	public ErrorCode configContinuousCurrentLimit(int amps, int timeoutMs) {
-		int retval =  0; //MotControllerJNI.ConfigContinuousCurrentLimit(m_handle, amps, timeoutMs);
+		int retval = MotControllerJNI.ConfigContinuousCurrentLimit(m_handle, amps, timeoutMs);
 		return ErrorCode.valueOf(retval);
 	}
 	/**
@@ -424,7 +424,7 @@ public class TalonSRX extends com.ctre.phoenix.motorcontrol.can.BaseMotorControl
 	 * @see #configContinuousCurrentLimit(int,int)
 	 */
 	public void enableCurrentLimit(boolean enable) {
-		//MotControllerJNI.EnableCurrentLimit(m_handle, enable);
+		MotControllerJNI.EnableCurrentLimit(m_handle, enable);
 	}
 	
     /**
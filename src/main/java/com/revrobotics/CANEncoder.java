@@ -34,8 +34,13 @@ import com.revrobotics.EncoderType;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 import com.revrobotics.jni.CANSparkMaxJNI;
 
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
+
 public class CANEncoder extends CANSensor {
     private int m_cpr;
+    // Targets for replaying sensor values, see DataLogReplay.
+    private final String m_replayPosition;
+    private final String m_replayVelocity;
 	
 	  private AtomicBoolean encInitialized = new AtomicBoolean(false);
 
@@ -48,6 +53,8 @@ public class CANEncoder extends CANSensor {
      */
     public CANEncoder(CANSparkMax device, EncoderType sensorType, int cpr) {
       super(device);
+      m_replayPosition = "sparkmax/" + device.getDeviceId() + "/position";
+      m_replayVelocity = "sparkmax/" + device.getDeviceId() + "/velocity";
       if (!encInitialized.get() || m_cpr != cpr) { 
         encInitialized.set(true);
         m_cpr = cpr;
@@ -65,6 +72,8 @@ public class CANEncoder extends CANSensor {
      */
     public CANEncoder(CANSparkMax device) {
       super(device);
+      m_replayPosition = "sparkmax/" + device.getDeviceId() + "/position";
+      m_replayVelocity = "sparkmax/" + device.getDeviceId() + "/velocity";
       CANError.fromInt(CANSparkMaxJNI.c_SparkMax_SetSensorType(m_device.m_sparkMax, EncoderType.kHallSensor.value));
     }
 
@@ -77,7 +86,8 @@ public class CANEncoder extends CANSensor {
      *
      */
     public double getPosition() {
-      return (double)CANSparkMaxJNI.c_SparkMax_GetEncoderPosition(m_device.m_sparkMax);
+      return DataLogReplay.getInstance().getDouble(m_replayPosition,
+          CANSparkMaxJNI.c_SparkMax_GetEncoderPosition(m_device.m_sparkMax));
     }
 
     /**
@@ -89,7 +99,8 @@ public class CANEncoder extends CANSensor {
      *
      */
     public double getVelocity() {
-      return (double)CANSparkMaxJNI.c_SparkMax_GetEncoderVelocity(m_device.m_sparkMax);
+      return DataLogReplay.getInstance().getDouble(m_replayVelocity,
+          CANSparkMaxJNI.c_SparkMax_GetEncoderVelocity(m_device.m_sparkMax));
     }
 
     /**
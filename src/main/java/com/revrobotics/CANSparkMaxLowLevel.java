@@ -34,6 +34,9 @@ import java.nio.ByteBuffer;
 
 import com.revrobotics.jni.CANSparkMaxJNI;
 
+import edu.wpi.first.wpilibj.RobotEmulator;
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
+
 public abstract class CANSparkMaxLowLevel implements SpeedController {
 	public enum ParameterType {
 	    kInt32, kUint32, kFloat32, kBool;
@@ -152,6 +155,7 @@ public abstract class CANSparkMaxLowLevel implements SpeedController {
 		m_sparkMax = CANSparkMaxJNI.c_SparkMax_Create(deviceID, type.value);
 		m_firmwareString = "";
 		m_motorType = type;
+		m_busDevice = RobotEmulator.getInstance().manage(this);
 	}
 
 	/**
@@ -172,7 +176,7 @@ public abstract class CANSparkMaxLowLevel implements SpeedController {
 	 * 
 	 */
 	public void setControlFramePeriodMs(int periodMs) {
-		CANSparkMaxJNI.c_SparkMax_SetControlFramePeriod(m_deviceID, periodMs);
+		CANSparkMaxJNI.c_SparkMax_SetControlFramePeriod(m_sparkMax, periodMs);
 	}
 
 	/**
@@ -348,6 +352,8 @@ public abstract class CANSparkMaxLowLevel implements SpeedController {
 	}
 
 	CANError setpointCommand(double value, ControlType ctrl, int pidSlot, double arbFeedforward, int arbFFUnits) {
+		RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kSparkMaxSetpoint,
+				ctrl.value, pidSlot, value, arbFeedforward);
 		return CANError.fromInt(CANSparkMaxJNI.c_SparkMax_SetpointCommand(m_sparkMax, (float)value, ctrl.value, pidSlot, (float)arbFeedforward, arbFFUnits));
 	}
 
@@ -409,6 +415,7 @@ public abstract class CANSparkMaxLowLevel implements SpeedController {
 
 	protected long m_sparkMax;
 	private final int m_deviceID;
+	private final int m_busDevice;
 	private String m_firmwareString;
 	protected final MotorType m_motorType;
 }
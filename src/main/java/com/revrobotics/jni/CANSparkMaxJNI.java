@@ -26,19 +26,299 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package com.revrobotics.jni;
 
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.emulator.CANBusModel;
+import edu.wpi.first.wpilibj.emulator.DCMotor;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
+
+/**
+ * Emulation of the SPARK MAX firmware.  The state of every controller is
+ * kept in arrays indexed by the handle, and its motor is simulated by
+ * {@link MotorPhysics} as "sparkmax:&lt;CAN id&gt;", a NEO by default.
+ *
+ * <p>The closed loop control types run every millisecond as a
+ * {@link MotorPhysics.Controller}, in the units of the conversion factors,
+ * with the gains of the slot given to the setpoint command:
+ * out = P * error + I * iAccum + D * derivative + FF * setpoint, clamped to
+ * the output range of the slot.  Smart Motion and Smart Velocity run the
+ * velocity loop on a trapezoidal velocity profile limited by the Smart
+ * Motion maximum velocity and acceleration of the slot.
+ *
+ * <p>The output ramps every millisecond at the open loop ramp rate in the
+ * duty cycle and voltage control types and at the closed loop ramp rate
+ * in the others.  With voltage compensation the duty cycle is a fraction
+ * of the nominal voltage, converted to a duty cycle of the bus voltage
+ * every millisecond.
+ *
+ * <p>The output is reduced so that the motor draws no more than the smart
+ * current limit, which goes from the stall limit at rest to the free
+ * limit at the limit RPM, nor than the secondary current limit.  The
+ * chopping of the secondary limit is emulated by its average effect, a
+ * cap at the limit.  The limits are re-applied every millisecond while the
+ * motor is driven.
+ *
+ * <p>Every controller sends its periodic status frames on the
+ * {@link CANBusModel}, Status 0 every 10ms and Status 1 and 2 every 20ms,
+ * and receives its control frame every 10ms.  The getters return the
+ * values of the last status frame that carries them: the applied output
+ * in Status 0, the velocity, temperature, bus voltage and current in
+ * Status 1, and the position in Status 2.
+ *
+ * <p>Followers are resolved by the follower graph of MotorPhysics, which
+ * knows the controllers by arbitration id: 0x2051800 | id for a SPARK MAX
+ * and 0x2040000 | id for a Talon SRX followed through the Phoenix frame.
+ *
+ * <p>All state is guarded by the MotorPhysics lock, as the firmware is run
+ * from inside the physics steps.
+ */
 public class CANSparkMaxJNI  {
+  public static final int kSlots = 4;
+
+  private static final int kDutyCycle = 0;
+  private static final int kVelocity = 1;
+  private static final int kVoltage = 2;
+  private static final int kPosition = 3;
+  private static final int kSmartMotion = 4;
+  private static final int kCurrent = 5;
+  private static final int kSmartVelocity = 6;
+  private static final int kArbFFVoltage = 0;
+  private static final double kDt = MotorPhysics.kTickMicros / 1e6;
+  private static final int kSparkMaxArbId = 0x2051800;
+  private static final int kPhoenixArbId = 0x2040080;
+  private static final int kTalonSRXArbId = 0x2040000;
+  private static final int kDefaultSmartCurrentLimit = 80;
+  private static final int kDefaultSmartCurrentLimitRPM = 20000;
+  // CANError.kParamInvalid.
+  private static final int kParamInvalid = 11;
+  // Periodic frames, as in CANSparkMaxLowLevel.PeriodicFrame.
+  private static final int kStatus0 = 0;
+  private static final int kStatus1 = 1;
+  private static final int kStatus2 = 2;
+  private static final int[] kDefaultStatusFramePeriodMs = { 10, 20, 20 };
+  private static final int kDefaultControlFramePeriodMs = 10;
+
+  private static final MotorPhysics _physics = MotorPhysics.getInstance();
+  private static final CANBusModel _bus = CANBusModel.getInstance();
+
+  private static int _count;
+  private static int _closedLoopCount;
+  private static int[] _deviceId = new int[8];
+  private static int[] _motorType = new int[8];
+  private static int[] _motor = new int[8];
+  private static int[] _ctrlType = new int[8];
+  private static double[] _setpoint = new double[8];
+  private static int[] _pidSlot = new int[8];
+  private static double[] _arbFF = new double[8];
+  private static int[] _arbFFUnits = new int[8];
+  private static boolean[] _inverted = new boolean[8];
+  private static double[] _appliedOutput = new double[8];
+  private static double[] _positionFactor = new double[8];
+  private static double[] _velocityFactor = new double[8];
+  // Rotations added to the motor position, set by SetEncoderPosition.
+  private static double[] _positionOffset = new double[8];
+
+  // Slot parameters, indexed by handle * kSlots + slot.
+  private static double[] _kP = new double[8 * kSlots];
+  private static double[] _kI = new double[8 * kSlots];
+  private static double[] _kD = new double[8 * kSlots];
+  private static double[] _kDFilter = new double[8 * kSlots];
+  private static double[] _kFF = new double[8 * kSlots];
+  private static double[] _iZone = new double[8 * kSlots];
+  private static double[] _outputMin = new double[8 * kSlots];
+  private static double[] _outputMax = new double[8 * kSlots];
+  private static double[] _iMaxAccum = new double[8 * kSlots];
+  private static double[] _smartMotionMaxVelocity = new double[8 * kSlots];
+  private static double[] _smartMotionMaxAccel = new double[8 * kSlots];
+  private static double[] _smartMotionMinOutputVelocity = new double[8 * kSlots];
+  private static double[] _smartMotionAllowedError = new double[8 * kSlots];
+  private static int[] _smartMotionAccelStrategy = new int[8 * kSlots];
+
+  // Closed loop state.
+  private static double[] _iAccum = new double[8];
+  private static double[] _lastError = new double[8];
+  private static double[] _derivative = new double[8];
+  private static boolean[] _profileRestart = new boolean[8];
+  // Smart Motion profile, in rotations and RPM.
+  private static double[] _profilePosition = new double[8];
+  private static double[] _profileVelocity = new double[8];
+
+  // Current limits.
+  private static int[] _smartCurrentStallLimit = new int[8];
+  private static int[] _smartCurrentFreeLimit = new int[8];
+  private static int[] _smartCurrentLimitRPM = new int[8];
+  private static double[] _secondaryCurrentLimit = new double[8];
+  private static int[] _secondaryCurrentLimitCycles = new int[8];
+  // The output before the current limits.
+  private static double[] _unlimitedOutput = new double[8];
+
+  // Output shaping.
+  private static double[] _openLoopRampRate = new double[8];
+  private static double[] _closedLoopRampRate = new double[8];
+  private static double[] _voltageCompNominal = new double[8];
+  private static double[] _rampTarget = new double[8];
+  private static double[] _rampOutput = new double[8];
+
+  // CAN frames: the bus frame of Status 0, followed by Status 1 and 2.
+  private static int[] _firstStatusFrame = new int[8];
+  private static int[] _controlFrame = new int[8];
+  // The values of the last status frames, the position in rotations
+  // and the velocity in RPM before the conversion factors.
+  private static double[] _sentOutput = new double[8];
+  private static double[] _sentRPM = new double[8];
+  private static double[] _sentTemperature = new double[8];
+  private static double[] _sentBusVoltage = new double[8];
+  private static double[] _sentCurrent = new double[8];
+  private static double[] _sentRotations = new double[8];
+
+  private static final MotorPhysics.Controller _firmware = new MotorPhysics.Controller() {
+    @Override
+    public boolean isActive() {
+      if (_closedLoopCount > 0)
+        return true;
+      for (int h = 0; h < _count; h++) {
+        if (_unlimitedOutput[h] != 0)
+          return true;
+        if (isRamping(h) && (_rampOutput[h] != 0 || _physics.isEnabled()))
+          return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void update(long now) {
+      for (int h = 0; h < _count; h++) {
+        if (isClosedLoop(_ctrlType[h]))
+          runClosedLoop(h);
+        else if (_unlimitedOutput[h] != 0)
+          driveOpenLoop(h);
+        if (isRamping(h)) {
+          ramp(h);
+          apply(h);
+        }
+      }
+    }
+  };
+
+  private static final CANBusModel.Sender _status = new CANBusModel.Sender() {
+    @Override
+    public void send(int h, int frame) {
+      switch (frame) {
+      case kStatus0:
+        _sentOutput[h] = appliedOutput(h);
+        break;
+      case kStatus1:
+        _sentRPM[h] = motorRPM(h);
+        _sentTemperature[h] = _physics.getTemperature(_motor[h]);
+        _sentBusVoltage[h] = _physics.getBusVoltage();
+        _sentCurrent[h] = _physics.getCurrent(_motor[h]);
+        break;
+      case kStatus2:
+        _sentRotations[h] = motorRotations(h) + _positionOffset[h];
+        break;
+      default:
+        break;
+      }
+    }
+  };
+
+  static {
+    _physics.addController(_firmware);
+  }
+
+  private static boolean isClosedLoop(int ctrlType) {
+    return ctrlType == kVelocity || ctrlType == kPosition || ctrlType == kSmartMotion
+        || ctrlType == kCurrent || ctrlType == kSmartVelocity;
+  }
 
 //CANSparkMaxLowLevel
-    private static long instanceNum;
   public static long c_SparkMax_Create(int deviceId, int motortype)
   {
-      return instanceNum++;
+    synchronized (_physics) {
+      int h = _count;
+      if (h == _deviceId.length) {
+        int n = h * 2;
+        _deviceId = Arrays.copyOf(_deviceId, n);
+        _motorType = Arrays.copyOf(_motorType, n);
+        _motor = Arrays.copyOf(_motor, n);
+        _ctrlType = Arrays.copyOf(_ctrlType, n);
+        _setpoint = Arrays.copyOf(_setpoint, n);
+        _pidSlot = Arrays.copyOf(_pidSlot, n);
+        _arbFF = Arrays.copyOf(_arbFF, n);
+        _arbFFUnits = Arrays.copyOf(_arbFFUnits, n);
+        _inverted = Arrays.copyOf(_inverted, n);
+        _appliedOutput = Arrays.copyOf(_appliedOutput, n);
+        _positionFactor = Arrays.copyOf(_positionFactor, n);
+        _velocityFactor = Arrays.copyOf(_velocityFactor, n);
+        _positionOffset = Arrays.copyOf(_positionOffset, n);
+        _kP = Arrays.copyOf(_kP, n * kSlots);
+        _kI = Arrays.copyOf(_kI, n * kSlots);
+        _kD = Arrays.copyOf(_kD, n * kSlots);
+        _kDFilter = Arrays.copyOf(_kDFilter, n * kSlots);
+        _kFF = Arrays.copyOf(_kFF, n * kSlots);
+        _iZone = Arrays.copyOf(_iZone, n * kSlots);
+        _outputMin = Arrays.copyOf(_outputMin, n * kSlots);
+        _outputMax = Arrays.copyOf(_outputMax, n * kSlots);
+        _iMaxAccum = Arrays.copyOf(_iMaxAccum, n * kSlots);
+        _smartMotionMaxVelocity = Arrays.copyOf(_smartMotionMaxVelocity, n * kSlots);
+        _smartMotionMaxAccel = Arrays.copyOf(_smartMotionMaxAccel, n * kSlots);
+        _smartMotionMinOutputVelocity = Arrays.copyOf(_smartMotionMinOutputVelocity, n * kSlots);
+        _smartMotionAllowedError = Arrays.copyOf(_smartMotionAllowedError, n * kSlots);
+        _smartMotionAccelStrategy = Arrays.copyOf(_smartMotionAccelStrategy, n * kSlots);
+        _iAccum = Arrays.copyOf(_iAccum, n);
+        _lastError = Arrays.copyOf(_lastError, n);
+        _derivative = Arrays.copyOf(_derivative, n);
+        _profileRestart = Arrays.copyOf(_profileRestart, n);
+        _profilePosition = Arrays.copyOf(_profilePosition, n);
+        _profileVelocity = Arrays.copyOf(_profileVelocity, n);
+        _smartCurrentStallLimit = Arrays.copyOf(_smartCurrentStallLimit, n);
+        _smartCurrentFreeLimit = Arrays.copyOf(_smartCurrentFreeLimit, n);
+        _smartCurrentLimitRPM = Arrays.copyOf(_smartCurrentLimitRPM, n);
+        _secondaryCurrentLimit = Arrays.copyOf(_secondaryCurrentLimit, n);
+        _secondaryCurrentLimitCycles = Arrays.copyOf(_secondaryCurrentLimitCycles, n);
+        _unlimitedOutput = Arrays.copyOf(_unlimitedOutput, n);
+        _openLoopRampRate = Arrays.copyOf(_openLoopRampRate, n);
+        _closedLoopRampRate = Arrays.copyOf(_closedLoopRampRate, n);
+        _voltageCompNominal = Arrays.copyOf(_voltageCompNominal, n);
+        _rampTarget = Arrays.copyOf(_rampTarget, n);
+        _rampOutput = Arrays.copyOf(_rampOutput, n);
+        _firstStatusFrame = Arrays.copyOf(_firstStatusFrame, n);
+        _controlFrame = Arrays.copyOf(_controlFrame, n);
+        _sentOutput = Arrays.copyOf(_sentOutput, n);
+        _sentRPM = Arrays.copyOf(_sentRPM, n);
+        _sentTemperature = Arrays.copyOf(_sentTemperature, n);
+        _sentBusVoltage = Arrays.copyOf(_sentBusVoltage, n);
+        _sentCurrent = Arrays.copyOf(_sentCurrent, n);
+        _sentRotations = Arrays.copyOf(_sentRotations, n);
+      }
+      _count = h + 1;
+      _deviceId[h] = deviceId;
+      _motorType[h] = motortype;
+      _positionFactor[h] = 1;
+      _velocityFactor[h] = 1;
+      _smartCurrentStallLimit[h] = kDefaultSmartCurrentLimit;
+      _smartCurrentLimitRPM[h] = kDefaultSmartCurrentLimitRPM;
+      for (int s = h * kSlots; s < (h + 1) * kSlots; s++) {
+        _outputMin[s] = -1;
+        _outputMax[s] = 1;
+      }
+      // Brushless motors are NEOs with their hall sensor.
+      _motor[h] = motortype == 1 ? _physics.add("sparkmax:" + deviceId, DCMotor.kNEO, 42)
+          : _physics.add("sparkmax:" + deviceId);
+      _physics.registerDevice(_motor[h], kSparkMaxArbId | deviceId);
+      _firstStatusFrame[h] = _bus.addFrame(_status, h, kStatus0, 8, kDefaultStatusFramePeriodMs[kStatus0]);
+      _bus.addFrame(_status, h, kStatus1, 8, kDefaultStatusFramePeriodMs[kStatus1]);
+      _bus.addFrame(_status, h, kStatus2, 8, kDefaultStatusFramePeriodMs[kStatus2]);
+      _controlFrame[h] = _bus.addFrame(null, h, 0, 8, kDefaultControlFramePeriodMs);
+      return h;
+    }
   }
   public static void c_SparkMax_Destroy(long handle)
   {
-      
+
   }
   public static int c_SparkMax_GetFirmwareVersion(long handle)
   {
@@ -47,33 +327,54 @@ public class CANSparkMaxJNI  {
   //public static int c_SparkMax_GetSerialNumber(long handle, int* serialNumber[3]);
   public static int c_SparkMax_GetDeviceId(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return _deviceId[(int) handle];
+    }
   }
   public static int c_SparkMax_SetMotorType(long handle, int type)
   {
+    synchronized (_physics) {
+      _motorType[(int) handle] = type;
       return 0;
+    }
   }
   public static int c_SparkMax_GetMotorType(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return _motorType[(int) handle];
+    }
   }
   public static int c_SparkMax_SetPeriodicFramePeriod(long handle, int frameId, int periodMs)
   {
+    synchronized (_physics) {
+      if (frameId < kStatus0 || frameId > kStatus2)
+        return kParamInvalid;
+      _bus.setPeriod(_firstStatusFrame[(int) handle] + frameId, Math.max(1, Math.min(65535, periodMs)));
       return 0;
+    }
   }
 
   public static void c_SparkMax_SetControlFramePeriod(long handle, int periodMs)
   {
-      
+    synchronized (_physics) {
+      _bus.setPeriod(_controlFrame[(int) handle], Math.max(1, Math.min(100, periodMs)));
+    }
   }
   public static int c_SparkMax_GetControlFramePeriod(long handle)
   {
-      return 10;
+    synchronized (_physics) {
+      return _bus.getPeriod(_controlFrame[(int) handle]);
+    }
   }
-  
+
   public static int c_SparkMax_SetEncoderPosition(long handle, float position)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      _positionOffset[h] = position / _positionFactor[h] - motorRotations(h);
+      _profileRestart[h] = true;
       return 0;
+    }
   }
   public static int c_SparkMax_RestoreFactoryDefaults(long handle, boolean persist)
   {
@@ -82,64 +383,293 @@ public class CANSparkMaxJNI  {
 
   public static int c_SparkMax_SetFollow(long handle, int followerArbId, int followerCfg)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      int leaderArbId = followerArbId;
+      if ((leaderArbId & ~0x3F) == kPhoenixArbId)
+        leaderArbId = kTalonSRXArbId | (leaderArbId & 0x3F);
+      boolean invert = ((followerCfg >> 18) & 1) != 0;
+      _physics.follow(_motor[h], leaderArbId, invert ? -1 : 1, false);
       return 0;
+    }
   }
   public static float c_SparkMax_SafeFloat(float f)
   {
       return 0.0f;
   }
-  
+
   public static void c_SparkMax_EnableExternalControl(boolean enable)
   {
-      
+
   }
   public static void c_SparkMax_SetEnable(boolean enable)
   {
-      
+
+  }
+
+  // Drive the motor with a duty cycle, in the direction of the setpoint.
+  private static void drive(int h, double out) {
+    if (_arbFFUnits[h] == kArbFFVoltage)
+      out += _arbFF[h] / _physics.getBusVoltage();
+    else
+      out += _arbFF[h];
+    out = Math.max(-1, Math.min(1, out));
+    _rampTarget[h] = out;
+    if (rampRate(h) == 0)
+      _rampOutput[h] = out;
+    apply(h);
+  }
+
+  // Seconds from neutral to full output.
+  private static double rampRate(int h) {
+    return isClosedLoop(_ctrlType[h]) ? _closedLoopRampRate[h] : _openLoopRampRate[h];
+  }
+
+  private static boolean isRamping(int h) {
+    return _rampOutput[h] != _rampTarget[h];
+  }
+
+  // Move the ramped output towards its target by one tick.  The ramp
+  // starts from neutral while the robot is disabled.
+  private static void ramp(int h) {
+    double rate = rampRate(h);
+    if (!_physics.isEnabled())
+      _rampOutput[h] = 0;
+    else if (rate == 0)
+      _rampOutput[h] = _rampTarget[h];
+    else
+      _rampOutput[h] += Math.max(-kDt / rate, Math.min(kDt / rate, _rampTarget[h] - _rampOutput[h]));
+  }
+
+  // Drive the motor with the ramped output.
+  private static void apply(int h) {
+    double out = _rampOutput[h];
+    if (_voltageCompNominal[h] > 0 && _ctrlType[h] != kVoltage && out != 0)
+      out = Math.max(-1, Math.min(1, out * _voltageCompNominal[h] / _physics.getBusVoltage()));
+    _unlimitedOutput[h] = out;
+    out = limitCurrent(h, out);
+    _appliedOutput[h] = out;
+    _physics.setOutput(_motor[h], _inverted[h] ? -out : out);
+  }
+
+  private static void driveOpenLoop(int h) {
+    if (_ctrlType[h] == kDutyCycle)
+      drive(h, _setpoint[h]);
+    else if (_ctrlType[h] == kVoltage)
+      drive(h, _setpoint[h] / _physics.getBusVoltage());
+  }
+
+  // The smart current limit at the present speed, capped by the secondary
+  // current limit.
+  private static double currentLimit(int h) {
+    double stall = _smartCurrentStallLimit[h];
+    double free = _smartCurrentFreeLimit[h] > 0 ? _smartCurrentFreeLimit[h] : stall;
+    double rpm = Math.abs(motorRPM(h));
+    double limit = rpm >= _smartCurrentLimitRPM[h] ? free : stall + (free - stall) * rpm / _smartCurrentLimitRPM[h];
+    if (_secondaryCurrentLimit[h] > 0)
+      limit = Math.min(limit, _secondaryCurrentLimit[h]);
+    return limit;
+  }
+
+  private static double limitCurrent(int h, double out) {
+    if (out == 0)
+      return out;
+    double limit = currentLimit(h);
+    if (_inverted[h])
+      return -_physics.limitCurrent(_motor[h], -out, limit);
+    return _physics.limitCurrent(_motor[h], out, limit);
   }
 
   public static int c_SparkMax_SetpointCommand(long handle, float value, int ctrlType,
                                     int pidSlot, float arbFeedforward, int arbFFUnits)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      if (isClosedLoop(ctrlType) != isClosedLoop(_ctrlType[h]))
+        _closedLoopCount += isClosedLoop(ctrlType) ? 1 : -1;
+      if (ctrlType != _ctrlType[h] || pidSlot != _pidSlot[h]) {
+        _iAccum[h] = 0;
+        _profileRestart[h] = true;
+      }
+      _ctrlType[h] = ctrlType;
+      _setpoint[h] = value;
+      _pidSlot[h] = Math.max(0, Math.min(kSlots - 1, pidSlot));
+      _arbFF[h] = arbFeedforward;
+      _arbFFUnits[h] = arbFFUnits;
+      driveOpenLoop(h);
+      // Closed loops update their output on their next run.
       return 0;
+    }
+  }
+
+  /* Closed loop */
+
+  // Position of the motor in rotations, in the direction of the output.
+  private static double motorRotations(int h) {
+    double rotations = _physics.getPosition(_motor[h]) / _physics.getCountsPerRev(_motor[h]);
+    return _inverted[h] ? -rotations : rotations;
+  }
+
+  private static double motorRPM(int h) {
+    double rpm = _physics.getVelocity(_motor[h]) * 60 / _physics.getCountsPerRev(_motor[h]);
+    return _inverted[h] ? -rpm : rpm;
+  }
+
+  // Advance the Smart Motion or Smart Velocity profile by one tick and
+  // return its velocity in RPM.
+  private static double profileVelocity(int h, int s) {
+    double maxVelocity = Math.abs(_smartMotionMaxVelocity[s] / _velocityFactor[h]);
+    double maxAccel = Math.abs(_smartMotionMaxAccel[s] / _velocityFactor[h]);
+    if (_profileRestart[h]) {
+      _profilePosition[h] = motorRotations(h) + _positionOffset[h];
+      _profileVelocity[h] = motorRPM(h);
+      _profileRestart[h] = false;
+    }
+    double dv = maxAccel * kDt;
+    double desired;
+    if (_ctrlType[h] == kSmartVelocity) {
+      desired = _setpoint[h] / _velocityFactor[h];
+      if (maxVelocity != 0)
+        desired = Math.max(-maxVelocity, Math.min(maxVelocity, desired));
+    } else {
+      // The fastest velocity from which we can still stop on the target.
+      double remaining = _setpoint[h] / _positionFactor[h] - _profilePosition[h];
+      if (Math.abs(remaining) <= Math.abs(_profileVelocity[h]) / 60 * kDt && Math.abs(_profileVelocity[h]) <= dv) {
+        _profilePosition[h] += remaining;
+        _profileVelocity[h] = 0;
+        return 0;
+      }
+      desired = Math.signum(remaining) * Math.min(maxVelocity, Math.sqrt(2 * 60 * maxAccel * Math.abs(remaining)));
+    }
+    if (maxAccel == 0)
+      _profileVelocity[h] = desired;
+    else
+      _profileVelocity[h] += Math.max(-dv, Math.min(dv, desired - _profileVelocity[h]));
+    _profilePosition[h] += _profileVelocity[h] / 60 * kDt;
+    return _profileVelocity[h];
+  }
+
+  private static void runClosedLoop(int h) {
+    int s = h * kSlots + _pidSlot[h];
+    if (!_physics.isEnabled()) {
+      // The loop state is cleared while disabled.
+      _iAccum[h] = 0;
+      _derivative[h] = 0;
+      _profileRestart[h] = true;
+      return;
+    }
+    double setpoint = _setpoint[h];
+    double measurement;
+    switch (_ctrlType[h]) {
+    case kPosition:
+      measurement = (motorRotations(h) + _positionOffset[h]) * _positionFactor[h];
+      break;
+    case kCurrent:
+      measurement = _physics.getSignedCurrent(_motor[h]) * (_inverted[h] ? -1 : 1);
+      break;
+    case kSmartMotion: {
+      setpoint = profileVelocity(h, s) * _velocityFactor[h];
+      if (Math.abs(setpoint) < _smartMotionMinOutputVelocity[s])
+        setpoint = 0;
+      double position = (motorRotations(h) + _positionOffset[h]) * _positionFactor[h];
+      if (setpoint == 0 && Math.abs(_setpoint[h] - position) <= _smartMotionAllowedError[s]) {
+        _iAccum[h] = 0;
+        drive(h, 0);
+        return;
+      }
+      measurement = motorRPM(h) * _velocityFactor[h];
+      break;
+    }
+    case kSmartVelocity:
+      setpoint = profileVelocity(h, s) * _velocityFactor[h];
+      measurement = motorRPM(h) * _velocityFactor[h];
+      break;
+    default:
+      measurement = motorRPM(h) * _velocityFactor[h];
+      break;
+    }
+    double error = setpoint - measurement;
+    if (_iZone[s] != 0 && Math.abs(error) > _iZone[s]) {
+      _iAccum[h] = 0;
+    } else {
+      _iAccum[h] += error;
+      if (_iMaxAccum[s] != 0)
+        _iAccum[h] = Math.max(-_iMaxAccum[s], Math.min(_iMaxAccum[s], _iAccum[h]));
+    }
+    _derivative[h] = _kDFilter[s] * _derivative[h] + (1 - _kDFilter[s]) * (error - _lastError[h]);
+    _lastError[h] = error;
+    double out = _kP[s] * error + _kI[s] * _iAccum[h] + _kD[s] * _derivative[h] + _kFF[s] * setpoint;
+    drive(h, Math.max(_outputMin[s], Math.min(_outputMax[s], out)));
   }
 
 //CANSparkMax
   public static int c_SparkMax_SetInverted(long handle, boolean inverted)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      // The position follows the output direction.
+      _positionOffset[h] += motorRotations(h);
+      _inverted[h] = inverted;
+      _positionOffset[h] -= motorRotations(h);
+      _physics.setInverted(_motor[h], inverted);
+      _physics.setOutput(_motor[h], inverted ? -_appliedOutput[h] : _appliedOutput[h]);
       return 0;
+    }
   }
   public static boolean c_SparkMax_GetInverted(long handle)
   {
-      return false;
+    synchronized (_physics) {
+      return _inverted[(int) handle];
+    }
   }
   public static int c_SparkMax_SetSmartCurrentLimit(long handle, int stallLimit, int freeLimit, int limitRPM)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      _smartCurrentStallLimit[h] = Math.max(0, stallLimit);
+      _smartCurrentFreeLimit[h] = Math.max(0, freeLimit);
+      _smartCurrentLimitRPM[h] = Math.max(1, limitRPM);
       return 0;
+    }
   }
   public static int c_SparkMax_GetSmartCurrentStallLimit(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return _smartCurrentStallLimit[(int) handle];
+    }
   }
   public static int c_SparkMax_GetSmartCurrentFreeLimit(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return _smartCurrentFreeLimit[(int) handle];
+    }
   }
   public static int c_SparkMax_GetSmartCurrentLimitRPM(long handle)
   {
-      return 1000;
+    synchronized (_physics) {
+      return _smartCurrentLimitRPM[(int) handle];
+    }
   }
   public static int c_SparkMax_SetSecondaryCurrentLimit(long handle, float limit, int chopCycles)
   {
+    synchronized (_physics) {
+      int h = (int) handle;
+      _secondaryCurrentLimit[h] = Math.max(0, limit);
+      _secondaryCurrentLimitCycles[h] = Math.max(0, chopCycles);
       return 0;
+    }
   }
   public static float c_SparkMax_GetSecondaryCurrentLimit(long handle)
   {
-      return 40;
+    synchronized (_physics) {
+      return (float) _secondaryCurrentLimit[(int) handle];
+    }
   }
   public static int c_SparkMax_GetSecondaryCurrentLimitCycles(long handle)
   {
-      return 4;
+    synchronized (_physics) {
+      return _secondaryCurrentLimitCycles[(int) handle];
+    }
   }
   public static int c_SparkMax_SetIdleMode(long handle, int idlemode)
   {
@@ -151,35 +681,55 @@ public class CANSparkMaxJNI  {
   }
   public static int c_SparkMax_EnableVoltageCompensation(long handle, float nominalVoltage)
   {
+    synchronized (_physics) {
+      _voltageCompNominal[(int) handle] = Math.max(0, nominalVoltage);
       return 0;
+    }
   }
   public static float c_SparkMax_GetVoltageCompensationNominalVoltage(long handle)
   {
-      return 12.4f;
+    synchronized (_physics) {
+      return (float) _voltageCompNominal[(int) handle];
+    }
   }
   public static int c_SparkMax_DisableVoltageCompensation(long handle)
   {
+    synchronized (_physics) {
+      _voltageCompNominal[(int) handle] = 0;
       return 0;
+    }
   }
   public static int c_SparkMax_SetOpenLoopRampRate(long handle, float rate)
   {
+    synchronized (_physics) {
+      _openLoopRampRate[(int) handle] = Math.max(0, rate);
       return 0;
+    }
   }
   public static float c_SparkMax_GetOpenLoopRampRate(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return (float) _openLoopRampRate[(int) handle];
+    }
   }
   public static int c_SparkMax_SetClosedLoopRampRate(long handle, float rate)
   {
+    synchronized (_physics) {
+      _closedLoopRampRate[(int) handle] = Math.max(0, rate);
       return 0;
+    }
   }
   public static float c_SparkMax_GetClosedLoopRampRate(long handle)
   {
-      return 5;
+    synchronized (_physics) {
+      return (float) _closedLoopRampRate[(int) handle];
+    }
   }
   public static boolean c_SparkMax_IsFollower(long handle)
   {
-      return false;
+    synchronized (_physics) {
+      return _physics.isFollower(_motor[(int) handle]);
+    }
   }
   public static int c_SparkMax_GetFaults(long handle)
   {
@@ -199,19 +749,36 @@ public class CANSparkMaxJNI  {
   }
   public static float c_SparkMax_GetBusVoltage(long handle)
   {
-      return 12.5f;
+    synchronized (_physics) {
+      _physics.update();
+      return (float) _sentBusVoltage[(int) handle];
+    }
+  }
+  private static double appliedOutput(int h)
+  {
+    double out = _physics.getOutput(_motor[h]);
+    return _inverted[h] ? -out : out;
   }
   public static float c_SparkMax_GetAppliedOutput(long handle)
   {
-      return 1;
+    synchronized (_physics) {
+      _physics.update();
+      return (float) _sentOutput[(int) handle];
+    }
   }
   public static float c_SparkMax_GetOutputCurrent(long handle)
   {
-      return 10;
+    synchronized (_physics) {
+      _physics.update();
+      return (float) _sentCurrent[(int) handle];
+    }
   }
   public static float c_SparkMax_GetMotorTemperature(long handle)
   {
-      return 50;
+    synchronized (_physics) {
+      _physics.update();
+      return (float) _sentTemperature[(int) handle];
+    }
   }
   public static int c_SparkMax_ClearFaults(long handle)
   {
@@ -334,27 +901,45 @@ public class CANSparkMaxJNI  {
 //CANEncoder
   public static float c_SparkMax_GetEncoderPosition(long handle)
   {
-      return 5;
+    synchronized (_physics) {
+      _physics.update();
+      int h = (int) handle;
+      return (float) (_sentRotations[h] * _positionFactor[h]);
+    }
   }
   public static float c_SparkMax_GetEncoderVelocity(long handle)
   {
-      return 10;
+    synchronized (_physics) {
+      _physics.update();
+      int h = (int) handle;
+      return (float) (_sentRPM[h] * _velocityFactor[h]);
+    }
   }
   public static int c_SparkMax_SetPositionConversionFactor(long handle, float conversion)
   {
+    synchronized (_physics) {
+      _positionFactor[(int) handle] = conversion;
       return 0;
+    }
   }
   public static int c_SparkMax_SetVelocityConversionFactor(long handle, float conversion)
   {
+    synchronized (_physics) {
+      _velocityFactor[(int) handle] = conversion;
       return 0;
+    }
   }
   public static float c_SparkMax_GetPositionConversionFactor(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return (float) _positionFactor[(int) handle];
+    }
   }
   public static float c_SparkMax_GetVelocityConversionFactor(long handle)
   {
-      return 0;
+    synchronized (_physics) {
+      return (float) _velocityFactor[(int) handle];
+    }
   }
   public static int c_SparkMax_SetAverageDepth(long handle, int depth)
   {
@@ -390,124 +975,258 @@ public class CANSparkMaxJNI  {
   }
 
 //CANPIDController
+  // The index of a slot in the slot arrays, -1 for a slot that does not
+  // exist.
+  private static int slotIndex(long handle, int slotID)
+  {
+    return slotID >= 0 && slotID < kSlots ? (int) handle * kSlots + slotID : -1;
+  }
   public static int c_SparkMax_SetP(long handle, int slotID, float gain)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _kP[s] = gain;
       return 0;
+    }
   }
   public static int c_SparkMax_SetI(long handle, int slotID, float gain)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _kI[s] = gain;
       return 0;
+    }
   }
   public static int c_SparkMax_SetD(long handle, int slotID, float gain)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _kD[s] = gain;
       return 0;
+    }
   }
   public static int c_SparkMax_SetDFilter(long handle, int slotID, float gain)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _kDFilter[s] = Math.max(0, Math.min(1, gain));
       return 0;
+    }
   }
   public static int c_SparkMax_SetFF(long handle, int slotID, float gain)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _kFF[s] = gain;
       return 0;
+    }
   }
   public static int c_SparkMax_SetIZone(long handle, int slotID, float IZone)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _iZone[s] = IZone;
       return 0;
+    }
   }
   public static int c_SparkMax_SetOutputRange(long handle, int slotID, float min, float max)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _outputMin[s] = min;
+      _outputMax[s] = max;
       return 0;
+    }
   }
   public static float c_SparkMax_GetP(long handle, int slotID)
   {
-      return 3;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _kP[s];
+    }
   }
   public static float c_SparkMax_GetI(long handle, int slotID)
   {
-      return 4;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _kI[s];
+    }
   }
   public static float c_SparkMax_GetD(long handle, int slotID)
   {
-      return 5;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _kD[s];
+    }
   }
   public static float c_SparkMax_GetDFilter(long handle, int slotID)
   {
-      return 6;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _kDFilter[s];
+    }
   }
   public static float c_SparkMax_GetFF(long handle, int slotID)
   {
-      return 7;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _kFF[s];
+    }
   }
   public static float c_SparkMax_GetIZone(long handle, int slotID)
   {
-      return 8;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _iZone[s];
+    }
   }
   public static float c_SparkMax_GetOutputMin(long handle, int slotID)
   {
-      return 9;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _outputMin[s];
+    }
   }
   public static float c_SparkMax_GetOutputMax(long handle, int slotID)
   {
-      return 10;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _outputMax[s];
+    }
   }
 
   public static int c_SparkMax_SetSmartMotionMaxVelocity(long handle, int slotID, float maxVel)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _smartMotionMaxVelocity[s] = maxVel;
       return 0;
+    }
   }
   public static int c_SparkMax_SetSmartMotionMaxAccel(long handle, int slotID, float maxAccel)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _smartMotionMaxAccel[s] = maxAccel;
       return 0;
+    }
   }
   public static int c_SparkMax_SetSmartMotionMinOutputVelocity(long handle, int slotID, float minVel)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _smartMotionMinOutputVelocity[s] = minVel;
       return 0;
+    }
   }
   public static int c_SparkMax_SetSmartMotionAccelStrategy(long handle, int slotID, int accelStrategy)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _smartMotionAccelStrategy[s] = accelStrategy;
       return 0;
+    }
   }
   public static int c_SparkMax_SetSmartMotionAllowedClosedLoopError(long handle, int slotID, float allowedError)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _smartMotionAllowedError[s] = allowedError;
       return 0;
+    }
   }
   public static float c_SparkMax_GetSmartMotionMaxVelocity(long handle, int slotID)
   {
-      return 11;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _smartMotionMaxVelocity[s];
+    }
   }
   public static float c_SparkMax_GetSmartMotionMaxAccel(long handle, int slotID)
   {
-      return 12;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _smartMotionMaxAccel[s];
+    }
   }
   public static float c_SparkMax_GetSmartMotionMinOutputVelocity(long handle, int slotID)
   {
-      return 13;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _smartMotionMinOutputVelocity[s];
+    }
   }
   public static int c_SparkMax_GetSmartMotionAccelStrategy(long handle, int slotID)
   {
-      return 3;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : _smartMotionAccelStrategy[s];
+    }
   }
   public static float c_SparkMax_GetSmartMotionAllowedClosedLoopError(long handle, int slotID)
   {
-      return 14;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _smartMotionAllowedError[s];
+    }
   }
 
   public static int c_SparkMax_SetIMaxAccum(long handle, int slotID, float iMaxAccum)
   {
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      if (s < 0)
+        return kParamInvalid;
+      _iMaxAccum[s] = iMaxAccum;
       return 0;
+    }
   }
   
   public static float c_SparkMax_GetIMaxAccum(long handle, int slotID)
   {
-      return 99;
+    synchronized (_physics) {
+      int s = slotIndex(handle, slotID);
+      return s < 0 ? 0 : (float) _iMaxAccum[s];
+    }
   }
   public static int c_SparkMax_SetIAccum(long handle, float iAccum)
   {
+    synchronized (_physics) {
+      _iAccum[(int) handle] = iAccum;
       return 0;
+    }
   }
   public static float c_SparkMax_GetIAccum(long handle)
   {
-      return 3;
+    synchronized (_physics) {
+      int h = (int) handle;
+      _physics.getPosition(_motor[h]);
+      return (float) _iAccum[h];
+    }
   }
 
   public static int c_SparkMax_SetFeedbackDevice(long handle, int sensorID)
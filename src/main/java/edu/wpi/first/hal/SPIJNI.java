@@ -0,0 +1,213 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) 2016-2018 FIRST. All Rights Reserved.                        */
+/* Open Source Software - may be modified and shared by FRC teams. The code   */
+/* must be accompanied by the FIRST BSD license file in the root directory of */
+/* the project.                                                               */
+/*----------------------------------------------------------------------------*/
+
+package edu.wpi.first.hal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
+import edu.wpi.first.wpilibj.emulator.SPIDevice;
+
+/**
+ * Emulation of the SPI auto-transfer engine of the FPGA.
+ *
+ * <p>While started, the engine transfers the auto transmit data to the
+ * {@link SPIDevice} attached to the port every period of emulated time, and
+ * appends the FPGA timestamp and the received bytes, one word each, to the
+ * receive buffer.  Transfers run from the physics ticks, so the devices
+ * see the simulation as of the transfer.  When the buffer is full new
+ * transfers are dropped and counted, as the DMA engine does.
+ *
+ * <p>Only the auto-transfer part of the HAL is emulated.
+ */
+public class SPIJNI {
+  private static final int kPorts = 5;
+
+  private static final SPIDevice[] s_device = new SPIDevice[kPorts];
+  private static final int[][] s_buffer = new int[kPorts][];
+  private static final int[] s_head = new int[kPorts];
+  private static final int[] s_size = new int[kPorts];
+  private static final byte[][] s_dataToSend = new byte[kPorts][];
+  private static final byte[][] s_dataReceived = new byte[kPorts][];
+  private static final long[] s_period = new long[kPorts];
+  private static final long[] s_nextTransfer = new long[kPorts];
+  private static final int[] s_dropped = new int[kPorts];
+
+  private static final MotorPhysics.Controller s_engine = new MotorPhysics.Controller() {
+    @Override
+    public boolean isActive() {
+      synchronized (SPIJNI.class) {
+        for (int port = 0; port < kPorts; port++) {
+          if (s_period[port] > 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+
+    @Override
+    public void update(long now) {
+      synchronized (SPIJNI.class) {
+        for (int port = 0; port < kPorts; port++) {
+          while (s_period[port] > 0 && s_nextTransfer[port] <= now) {
+            transfer(port, s_nextTransfer[port]);
+            s_nextTransfer[port] += s_period[port];
+          }
+        }
+      }
+    }
+  };
+
+  static {
+    MotorPhysics.getInstance().addController(s_engine);
+  }
+
+  private static void transfer(int port, long time) {
+    int[] buffer = s_buffer[port];
+    byte[] received = s_dataReceived[port];
+    if (s_size[port] + received.length + 1 > buffer.length) {
+      s_dropped[port]++;
+      return;
+    }
+    SPIDevice device = s_device[port];
+    if (device != null) {
+      device.transfer(time, s_dataToSend[port], received);
+    }
+    push(port, (int) time);
+    for (byte b : received) {
+      push(port, b & 0xff);
+    }
+  }
+
+  private static void push(int port, int word) {
+    int[] buffer = s_buffer[port];
+    int i = s_head[port] + s_size[port];
+    buffer[i < buffer.length ? i : i - buffer.length] = word;
+    s_size[port]++;
+  }
+
+  private static int pop(int port) {
+    int word = s_buffer[port][s_head[port]];
+    s_head[port] = (s_head[port] + 1) % s_buffer[port].length;
+    s_size[port]--;
+    return word;
+  }
+
+  /**
+   * Attach the emulation of the device on a port.  This is not part of
+   * the HAL.
+   */
+  public static synchronized void spiSetDevice(int port, SPIDevice device) {
+    s_device[port] = device;
+  }
+
+  /**
+   * @param bufferSize Size of the receive buffer, in words.
+   */
+  public static synchronized void spiInitAuto(int port, int bufferSize) {
+    s_buffer[port] = new int[bufferSize];
+    s_head[port] = 0;
+    s_size[port] = 0;
+    s_dropped[port] = 0;
+    s_dataToSend[port] = new byte[0];
+    s_dataReceived[port] = new byte[0];
+  }
+
+  public static synchronized void spiFreeAuto(int port) {
+    s_period[port] = 0;
+    s_buffer[port] = null;
+  }
+
+  public static void spiStartAutoRate(int port, double period) {
+    MotorPhysics.getInstance().update();
+    synchronized (SPIJNI.class) {
+      if (s_buffer[port] == null) {
+        return;
+      }
+      s_period[port] = Math.max(1, Math.round(period * 1e6));
+      s_nextTransfer[port] = RobotController.getFPGATime() + s_period[port];
+    }
+  }
+
+  public static synchronized void spiStopAuto(int port) {
+    s_period[port] = 0;
+  }
+
+  public static synchronized void spiSetAutoTransmitData(int port, byte[] dataToSend,
+                                                         int zeroSize) {
+    byte[] data = new byte[dataToSend.length + zeroSize];
+    System.arraycopy(dataToSend, 0, data, 0, dataToSend.length);
+    s_dataToSend[port] = data;
+    s_dataReceived[port] = new byte[data.length];
+  }
+
+  public static void spiForceAutoRead(int port) {
+    MotorPhysics physics = MotorPhysics.getInstance();
+    // The device reads the simulation during the transfer, so take the
+    // physics lock first, in the order of the physics ticks.
+    synchronized (physics) {
+      physics.update();
+      synchronized (SPIJNI.class) {
+        if (s_buffer[port] != null) {
+          transfer(port, RobotController.getFPGATime());
+        }
+      }
+    }
+  }
+
+  /**
+   * Read words from the receive buffer.
+   *
+   * @param numToRead Number of words to read, 0 to only get the number of
+   *                  words available.
+   * @param timeout   Ignored, the words are read as of now.
+   * @return The number of words left in the buffer.
+   */
+  public static int spiReadAutoReceivedData(int port, ByteBuffer buffer, int numToRead,
+                                            double timeout) {
+    MotorPhysics.getInstance().update();
+    synchronized (SPIJNI.class) {
+      if (s_buffer[port] == null) {
+        return 0;
+      }
+      boolean swap = buffer.order() != ByteOrder.nativeOrder();
+      int n = Math.min(numToRead, s_size[port]);
+      for (int i = 0; i < n; i++) {
+        int word = pop(port);
+        buffer.putInt(i * 4, swap ? Integer.reverseBytes(word) : word);
+      }
+      return s_size[port];
+    }
+  }
+
+  /**
+   * Read words from the receive buffer.
+   *
+   * @see #spiReadAutoReceivedData(int, ByteBuffer, int, double)
+   */
+  public static int spiReadAutoReceivedData(int port, int[] buffer, int numToRead,
+                                            double timeout) {
+    MotorPhysics.getInstance().update();
+    synchronized (SPIJNI.class) {
+      if (s_buffer[port] == null) {
+        return 0;
+      }
+      int n = Math.min(numToRead, s_size[port]);
+      for (int i = 0; i < n; i++) {
+        buffer[i] = pop(port);
+      }
+      return s_size[port];
+    }
+  }
+
+  public static synchronized int spiGetAutoDroppedCount(int port) {
+    return s_dropped[port];
+  }
+}
@@ -10,6 +10,9 @@ package edu.wpi.first.wpilibj;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import edu.wpi.first.hal.SPIJNI;
+import edu.wpi.first.wpilibj.emulator.ADXRS450Sensor;
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
 import edu.wpi.first.wpilibj.interfaces.Gyro;
 
 /**
@@ -52,6 +55,7 @@ public class ADXRS450_Gyro extends GyroBase implements Gyro, PIDSource, Sendable
    * @param port The SPI port that the gyro is connected to
    */
   public ADXRS450_Gyro(SPI.Port port) {
+    SPIJNI.spiSetDevice(port.value, new ADXRS450Sensor());
     m_spi = new SPI(port);
 
     m_spi.setClockRate(3000000);
@@ -152,7 +156,8 @@ public class ADXRS450_Gyro extends GyroBase implements Gyro, PIDSource, Sendable
     if (m_spi == null) {
       return 0.0;
     }
-    return m_spi.getAccumulatorIntegratedValue() * kDegreePerSecondPerLSB;
+    return DataLogReplay.getInstance().getDouble("gyro/angle",
+        m_spi.getAccumulatorIntegratedValue() * kDegreePerSecondPerLSB);
   }
 
   @Override
@@ -160,6 +165,7 @@ public class ADXRS450_Gyro extends GyroBase implements Gyro, PIDSource, Sendable
     if (m_spi == null) {
       return 0.0;
     }
-    return m_spi.getAccumulatorLastValue() * kDegreePerSecondPerLSB;
+    return DataLogReplay.getInstance().getDouble("gyro/rate",
+        m_spi.getAccumulatorLastValue() * kDegreePerSecondPerLSB);
   }
 }
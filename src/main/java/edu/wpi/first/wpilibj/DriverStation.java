@@ -23,6 +23,7 @@ import java.util.regex.Pattern;
 
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
 
 /**
  * Provide access to the network communication data to / from the Driver Station.
@@ -206,6 +207,68 @@ public class DriverStation {
 	  long now = RobotController.getFPGATime();
 	  while (now > fpgaTimeForNextCommand)
 	      processOneCommand();
+	  replayDriverStation();
+	  RobotEmulator.getInstance().periodic(now);
+      }
+  }
+
+  private static final String[] kReplayAxes = new String[kJoystickPorts];
+  private static final String[] kReplayButtons = new String[kJoystickPorts];
+  private static final String[] kReplayPOVs = new String[kJoystickPorts];
+  static {
+      for (int i = 0; i < kJoystickPorts; i++) {
+	  kReplayAxes[i] = "ds/joystick" + i + "/axes";
+	  kReplayButtons[i] = "ds/joystick" + i + "/buttons";
+	  kReplayPOVs[i] = "ds/joystick" + i + "/povs";
+      }
+  }
+  private double[] m_replayValues = new double[32];
+
+  // Override the scripted mode and joystick state with replayed data.
+  private void replayDriverStation()
+  {
+      DataLogReplay replay = DataLogReplay.getInstance();
+      if (!replay.isStarted())
+	  return;
+      boolean enabled = replay.getBoolean("ds/enabled", m_robotEnabled);
+      boolean autonomous = replay.getBoolean("ds/autonomous", m_robotAutonomous);
+      if (enabled != m_robotEnabled || autonomous != m_robotAutonomous) {
+	  m_robotEnabled = enabled;
+	  m_robotAutonomous = autonomous;
+	  RobotEmulator.getInstance().logMode(m_robotEnabled, m_robotAutonomous);
+      }
+      for (int i = 0; i < kJoystickPorts; i++) {
+	  int n = replay.getArray(kReplayAxes[i], m_replayValues);
+	  if (n >= 0) {
+	      n = Math.min(n, m_replayValues.length);
+	      if (m_joystickAxes[i].m_axes.length < n)
+		  m_joystickAxes[i] = new HALJoystickAxes(n);
+	      m_joystickAxes[i].m_count = (short)n;
+	      for (int j = 0; j < n; j++)
+		  m_joystickAxes[i].m_axes[j] = (float)m_replayValues[j];
+	  }
+	  n = replay.getArray(kReplayButtons[i], m_replayValues);
+	  if (n >= 0) {
+	      n = Math.min(n, m_replayValues.length);
+	      int buttons = 0;
+	      for (int j = 0; j < n; j++)
+		  if (m_replayValues[j] != 0)
+		      buttons |= 1 << j;
+	      int old = m_joystickButtons[i].m_buttons;
+	      m_joystickButtonsPressed[i] |= buttons & ~old;
+	      m_joystickButtonsReleased[i] |= old & ~buttons;
+	      m_joystickButtons[i].m_buttons = buttons;
+	      m_joystickButtons[i].m_count = (byte)n;
+	  }
+	  n = replay.getArray(kReplayPOVs[i], m_replayValues);
+	  if (n >= 0) {
+	      n = Math.min(n, m_replayValues.length);
+	      if (m_joystickPOVs[i].m_povs.length < n)
+		  m_joystickPOVs[i] = new HALJoystickPOVs(n);
+	      m_joystickPOVs[i].m_count = (short)n;
+	      for (int j = 0; j < n; j++)
+		  m_joystickPOVs[i].m_povs[j] = (short)m_replayValues[j];
+	  }
       }
   }
 
@@ -348,25 +411,33 @@ public class DriverStation {
 	  if (cmd_components[0].equalsIgnoreCase("autonomous")) {
 	      int v = Integer.decode(cmd_components[1]);
 	      m_robotAutonomous = (v != 0);
+	      RobotEmulator.getInstance().logMode(m_robotEnabled, m_robotAutonomous);
 	      return;
 	  }
 	  if (cmd_components[0].equalsIgnoreCase("disable")) {
 	      m_robotEnabled = false;
+	      RobotEmulator.getInstance().logMode(m_robotEnabled, m_robotAutonomous);
 	      return;
 	  }
 	  if (cmd_components[0].equalsIgnoreCase("enable")) {
 	      m_robotEnabled = true;
+	      RobotEmulator.getInstance().logMode(m_robotEnabled, m_robotAutonomous);
 	      return;
 	  }
 	  if (cmd_components[0].equalsIgnoreCase("powerdown")) {
 	      m_powerdown = true;
 	      return;
 	  }
+	  if (RobotEmulator.getInstance().processCommand(cmd_components)) {
+	      return;
+	  }
 	  System.err.println("Error: Unrecognized command: " + cmdReader.getLineNumber() + " <" + cmd + '>');
       } catch (IOException ioe) {
 	  ioe.printStackTrace();
       } catch (NumberFormatException nfe) {
 	  System.err.println("Error: Bad command line: " + cmdReader.getLineNumber() + " <" + cmd + '>');
+      } catch (IllegalArgumentException iae) {
+	  System.err.println("Error: " + iae.getMessage() + ".  Line: " + cmdReader.getLineNumber() + " <" + cmd + '>');
       }
       System.exit(1);
   }
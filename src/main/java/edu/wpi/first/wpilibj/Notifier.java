@@ -22,8 +22,9 @@ public class Notifier implements AutoCloseable {
   // just passed to the JNI bindings.
   private final AtomicInteger m_notifier = new AtomicInteger();
   // The time, in microseconds, at which the corresponding handler should be
-  // called. Has the same zero as Utility.getFPGATime().
-  private long m_expirationTime;
+  // called. Has the same zero as Utility.getFPGATime().  Not called until
+  // started.
+  private long m_expirationTime = Long.MAX_VALUE / 1000;
   // The handler passed in by the user which should be called at the
   // appropriate interval.
   private Runnable m_handler;
@@ -100,7 +101,7 @@ outer:	  while (!Thread.interrupted()) {
 		  long wait_micros = m_expirationTime - now;
 		  if (wait_micros > Long.MAX_VALUE/1000)
 		      throw new InternalError();
-		  long wait_nanos = 1000 * wait_micros;
+		  long wait_nanos = RobotController.emulatorWallNanos(wait_micros);
 		  while (wait_nanos > 0) {
 		      m_condition.awaitNanos(wait_nanos);
 		      if (Thread.interrupted())
@@ -109,7 +110,7 @@ outer:	  while (!Thread.interrupted()) {
 		      wait_micros = m_expirationTime - now;
 			  if (wait_micros > Long.MAX_VALUE/1000)
 			      throw new InternalError();
-		      wait_nanos = 1000 * wait_micros;
+		      wait_nanos = RobotController.emulatorWallNanos(wait_micros);
 		  }
 		  handler = m_handler;
 		  if (m_periodic) {
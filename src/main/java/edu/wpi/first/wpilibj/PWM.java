@@ -7,6 +7,8 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -42,6 +44,9 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
 
   private final int m_channel;
   private int m_handle;
+  private final int m_busDevice;
+  // Read by the drivetrain simulation.
+  private volatile double m_speed;
 
   private final SendableImpl m_sendableImpl;
 
@@ -57,6 +62,7 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
     m_channel = channel;
 
     m_handle = 0; //PWMJNI.initializePWMPort(HAL.getPort((byte) channel));
+    m_busDevice = RobotEmulator.getInstance().manage(this);
 
     setDisabled();
 
@@ -199,6 +205,7 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
    */
   public void setPosition(double pos) {
     //PWMJNI.setPWMPosition(m_handle, pos);
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kPWMPosition, 0, 0, pos, 0);
   }
 
   /**
@@ -228,6 +235,10 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
    */
   public void setSpeed(double speed) {
     //PWMJNI.setPWMSpeed(m_handle, speed);
+    // The previous speed applies up to now.
+    MotorPhysics.getInstance().update();
+    m_speed = speed;
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kPWMSpeed, 0, 0, speed, 0);
   }
 
   /**
@@ -242,7 +253,7 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
    * @pre SetMinNegativePwm() called.
    */
   public double getSpeed() {
-    return 0.5; //return PWMJNI.getPWMSpeed(m_handle);
+    return m_speed; //return PWMJNI.getPWMSpeed(m_handle);
   }
 
   /**
@@ -254,6 +265,7 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
    */
   public void setRaw(int value) {
     //PWMJNI.setPWMRaw(m_handle, (short) value);
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kPWMRaw, value, 0, 0, 0);
   }
 
   /**
@@ -273,6 +285,9 @@ public class PWM extends MotorSafety implements Sendable, AutoCloseable {
    */
   public void setDisabled() {
     //PWMJNI.setPWMDisabled(m_handle);
+    MotorPhysics.getInstance().update();
+    m_speed = 0;
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kPWMDisabled, 0, 0, 0, 0);
   }
 
   /**
@@ -7,6 +7,7 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -14,6 +15,9 @@ import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
  */
 public abstract class PWMSpeedController extends PWM implements SpeedController {
   private boolean m_isInverted;
+  // The simulated motor, null while the PWM constructor disables the output.
+  private MotorPhysics m_physics;
+  private int m_motor;
 
   /**
    * Constructor.
@@ -23,6 +27,8 @@ public abstract class PWMSpeedController extends PWM implements SpeedController
    */
   protected PWMSpeedController(int channel) {
     super(channel);
+    m_motor = MotorPhysics.getInstance().add("pwm:" + channel);
+    m_physics = MotorPhysics.getInstance();
   }
 
   @Override
@@ -44,6 +50,22 @@ public abstract class PWMSpeedController extends PWM implements SpeedController
     feed();
   }
 
+  @Override
+  public void setSpeed(double speed) {
+    super.setSpeed(speed);
+    if (m_physics != null) {
+      m_physics.setOutput(m_motor, speed);
+    }
+  }
+
+  @Override
+  public void setDisabled() {
+    super.setDisabled();
+    if (m_physics != null) {
+      m_physics.setOutput(m_motor, 0);
+    }
+  }
+
   /**
    * Get the recently set value of the PWM.
    *
@@ -7,6 +7,9 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
+import edu.wpi.first.wpilibj.emulator.PowerDistributionModel;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -16,6 +19,15 @@ import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 public class PowerDistributionPanel extends SendableBase  {
   private final int m_handle;
 
+  // Targets for replaying channel currents, see DataLogReplay.
+  private static final String[] kReplayCurrent = new String[SensorUtil.kPDPChannels];
+
+  static {
+    for (int i = 0; i < kReplayCurrent.length; i++) {
+      kReplayCurrent[i] = "pdp/current/" + i;
+    }
+  }
+
   /**
    * Constructor.
    *
@@ -42,7 +54,8 @@ public class PowerDistributionPanel extends SendableBase  {
    * @return The voltage of the PDP in volts
    */
   public double getVoltage() {
-    return 12.5; //PDPJNI.getPDPVoltage(m_handle);
+    return DataLogReplay.getInstance().getDouble("pdp/voltage",
+        MotorPhysics.getInstance().getBusVoltage()); //PDPJNI.getPDPVoltage(m_handle);
   }
 
   /**
@@ -60,10 +73,15 @@ public class PowerDistributionPanel extends SendableBase  {
    * @return The current of one of the PDP channels (channels 0-15) in Amperes
    */
   public double getCurrent(int channel) {
-    double current = 1; //PDPJNI.getPDPChannelCurrent((byte) channel, m_handle);
+    double current = 0; //PDPJNI.getPDPChannelCurrent((byte) channel, m_handle);
 
     SensorUtil.checkPDPChannel(channel);
 
+    if (channel >= 0 && channel < kReplayCurrent.length) {
+      current = PowerDistributionModel.getInstance().getCurrent(channel);
+      current = DataLogReplay.getInstance().getDouble(kReplayCurrent[channel], current);
+    }
+
     return current;
   }
 
@@ -73,7 +91,8 @@ public class PowerDistributionPanel extends SendableBase  {
    * @return The current of all the channels in Amperes
    */
   public double getTotalCurrent() {
-    return 12; //PDPJNI.getPDPTotalCurrent(m_handle);
+    return DataLogReplay.getInstance().getDouble("pdp/totalCurrent",
+        PowerDistributionModel.getInstance().getTotalCurrent()); //PDPJNI.getPDPTotalCurrent(m_handle);
   }
 
   /**
@@ -82,7 +101,7 @@ public class PowerDistributionPanel extends SendableBase  {
    * @return the total power in Watts
    */
   public double getTotalPower() {
-    return 40; //PDPJNI.getPDPTotalPower(m_handle);
+    return PowerDistributionModel.getInstance().getTotalPower(); //PDPJNI.getPDPTotalPower(m_handle);
   }
 
   /**
@@ -91,14 +110,14 @@ public class PowerDistributionPanel extends SendableBase  {
    * @return the total energy in Joules
    */
   public double getTotalEnergy() {
-    return 50; //PDPJNI.getPDPTotalEnergy(m_handle);
+    return PowerDistributionModel.getInstance().getTotalEnergy(); //PDPJNI.getPDPTotalEnergy(m_handle);
   }
 
   /**
    * Reset the total energy to 0.
    */
   public void resetTotalEnergy() {
-    //PDPJNI.resetPDPTotalEnergy(m_handle);
+    PowerDistributionModel.getInstance().resetTotalEnergy(); //PDPJNI.resetPDPTotalEnergy(m_handle);
   }
 
   /**
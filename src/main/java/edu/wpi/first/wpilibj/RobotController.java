@@ -7,6 +7,7 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
 
 /**
  * Contains functions for roboRIO functionality.
@@ -40,13 +41,52 @@ public final class RobotController {
   }
 
   private static long baseFPGATime = System.nanoTime();
+  // Emulated seconds per wall clock second, from ROBOT_EMU_TIME_SCALE.
+  private static final double timeScale = initTimeScale();
+
+  private static double initTimeScale() {
+    String scale = System.getenv().get("ROBOT_EMU_TIME_SCALE");
+    if (scale == null) {
+      return 1;
+    }
+    try {
+      double v = Double.parseDouble(scale);
+      if (v > 0) {
+        return v;
+      }
+    } catch (NumberFormatException nfe) {
+      // Fall through to the error.
+    }
+    System.err.println("Error: ROBOT_EMU_TIME_SCALE must be a positive number: " + scale);
+    System.exit(1);
+    return 1;
+  }
+
   /**
    * Read the microsecond timer from the FPGA.
    *
    * @return The current time in microseconds according to the FPGA.
    */
   public static long getFPGATime() {
-    return (System.nanoTime() - baseFPGATime) / 1000; //HALUtil.getFPGATime();
+    long elapsed = System.nanoTime() - baseFPGATime;
+    if (timeScale != 1) {
+      elapsed = (long) (elapsed * timeScale);
+    }
+    return elapsed / 1000; //HALUtil.getFPGATime();
+  }
+
+  /**
+   * Convert an interval of emulated time to the wall clock time to sleep
+   * for it.
+   *
+   * @param micros Emulated interval in microseconds.
+   * @return Wall clock interval in nanoseconds.
+   */
+  public static long emulatorWallNanos(long micros) {
+    if (timeScale == 1) {
+      return micros * 1000;
+    }
+    return (long) (micros * 1000 / timeScale);
   }
 
   /**
@@ -64,7 +104,7 @@ public final class RobotController {
    * @return The battery voltage in Volts.
    */
   public static double getBatteryVoltage() {
-    return 12; //PowerJNI.getVinVoltage();
+    return MotorPhysics.getInstance().getBusVoltage(); //PowerJNI.getVinVoltage();
   }
 
   /**
@@ -83,7 +123,7 @@ public final class RobotController {
    * @return True if the system is browned out
    */
   public static boolean isBrownedOut() {
-    return false; //HAL.getBrownedOut();
+    return MotorPhysics.getInstance().isBrownedOut(); //HAL.getBrownedOut();
   }
 
   /**
@@ -92,7 +132,7 @@ public final class RobotController {
    * @return The controller input voltage value in Volts
    */
   public static double getInputVoltage() {
-    return 12.0; //PowerJNI.getVinVoltage();
+    return MotorPhysics.getInstance().getBusVoltage(); //PowerJNI.getVinVoltage();
   }
 
   /**
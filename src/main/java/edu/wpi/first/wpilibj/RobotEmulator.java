@@ -1,113 +1,474 @@
 package edu.wpi.first.wpilibj;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.ServiceConfigurationError;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.revrobotics.CANSparkMaxLowLevel;
+
+import edu.wpi.first.wpilibj.emulator.ADXRS450Sensor;
+import edu.wpi.first.wpilibj.emulator.ActuatorMetrics;
+import edu.wpi.first.wpilibj.emulator.CANBusModel;
+import edu.wpi.first.wpilibj.emulator.ColumnarLogWriter;
+import edu.wpi.first.wpilibj.emulator.DataLogReplay;
+import edu.wpi.first.wpilibj.emulator.DataLogWriter;
+import edu.wpi.first.wpilibj.emulator.DeviceEventBatch;
+import edu.wpi.first.wpilibj.emulator.DeviceEventBus;
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
+import edu.wpi.first.wpilibj.emulator.DeviceEventListener;
+import edu.wpi.first.wpilibj.emulator.DrivetrainSimulator;
+import edu.wpi.first.wpilibj.emulator.MotorPhysics;
+import edu.wpi.first.wpilibj.emulator.PneumaticsModel;
+import edu.wpi.first.wpilibj.emulator.PowerDistributionModel;
 
 public class RobotEmulator {
-    private Object m_logLock = new Object();
-    
-    private void emitLogTimestamp()
+    private static final ControlMode[] kControlModes = ControlMode.values();
+    private static final DemandType[] kDemandTypes = DemandType.values();
+
+    private final DeviceEventBus m_bus = new DeviceEventBus();
+    private final ActuatorMetrics m_metrics = new ActuatorMetrics(m_bus);
+    private PrintStream m_metricsOut;
+    private long m_metricsPeriod = 1_000_000;
+    private long m_nextMetrics;
+
+    // Writes the text action log.
+    private class ActionLogSubscriber implements DeviceEventListener
     {
-	long now = RobotController.getFPGATime();
-	long s = now / 1_000_000;
-	long f = now % 1_000_000;
-	m_logWriter.printf("%d.%06d: ", s, f);
+	private final PrintWriter m_logWriter;
+
+	ActionLogSubscriber(PrintWriter w) {
+	    m_logWriter = w;
+	}
+
+	private void emitLogTimestamp(long now)
+	{
+	    long s = now / 1_000_000;
+	    long f = now % 1_000_000;
+	    m_logWriter.printf("%d.%06d: ", s, f);
+	}
+
+	@Override
+	public void onEvents(DeviceEventBatch b) {
+	    for (int i = 0; i < b.size(); i++) {
+		emitLogTimestamp(b.getTime(i));
+		String thread = m_bus.getThreadName(b.getThread(i));
+		int dev = b.getDevice(i);
+		switch (b.getKind(i)) {
+		case kMotorSet:
+		    m_logWriter.printf("Thread(%s) Motor: %x: (%s) %f, (%s) %f\n",
+			    thread, m_bus.getDeviceId(dev), kControlModes[b.getInt0(i)].toString(), b.getDouble0(i),
+			    kDemandTypes[b.getInt1(i)].toString(), b.getDouble1(i));
+		    break;
+		case kSolenoidSet:
+		    m_logWriter.printf("Thread(%s)  Solenoid: %s: %s\n",
+			    thread, m_bus.getDeviceName(dev), (b.getInt0(i) != 0 ? "on" : "off"));
+		    break;
+		case kPWMSpeed:
+		    m_logWriter.printf("Thread(%s) PWM: %d: speed %f\n", thread, m_bus.getDeviceId(dev), b.getDouble0(i));
+		    break;
+		case kPWMPosition:
+		    m_logWriter.printf("Thread(%s) PWM: %d: position %f\n", thread, m_bus.getDeviceId(dev), b.getDouble0(i));
+		    break;
+		case kPWMRaw:
+		    m_logWriter.printf("Thread(%s) PWM: %d: raw %d\n", thread, m_bus.getDeviceId(dev), b.getInt0(i));
+		    break;
+		case kPWMDisabled:
+		    m_logWriter.printf("Thread(%s) PWM: %d: disabled\n", thread, m_bus.getDeviceId(dev));
+		    break;
+		case kGroupSet:
+		    m_logWriter.printf("Thread(%s) SpeedControllerGroup: %s: %f\n",
+			    thread, m_bus.getDeviceName(dev), b.getDouble0(i));
+		    break;
+		case kSparkMaxSetpoint:
+		    m_logWriter.printf("Thread(%s) SparkMax: %d: (%d) %f, %f\n",
+			    thread, m_bus.getDeviceId(dev), b.getInt0(i), b.getDouble0(i), b.getDouble1(i));
+		    break;
+		case kMode:
+		    m_logWriter.printf("Mode: %s%s\n", (b.getInt0(i) != 0 ? "enabled" : "disabled"),
+			    (b.getInt1(i) != 0 ? " autonomous" : ""));
+		    break;
+		case kCommand:
+		    m_logWriter.println("Command <" + b.getObject(i) + ">");
+		    break;
+		case kNotifier:
+		    m_logWriter.printf("Thread(%s) Notifier: %s\n", thread, b.getObject(i));
+		    break;
+		}
+	    }
+	}
+
+	@Override
+	public void onClose() {
+	    m_logWriter.flush();
+	    m_logWriter.close();
+	}
     }
-    
-    private class LoggingSolenoidObserver implements RobotSolenoidObserver
+
+    // Writes motor and solenoid outputs to the columnar export.
+    private class ColumnarSubscriber implements DeviceEventListener
     {
+	private final ColumnarLogWriter m_writer;
+	private int[] m_columns = new int[16]; // bus device -> column + 1
+
+	ColumnarSubscriber(ColumnarLogWriter w) {
+	    m_writer = w;
+	}
+
+	private int column(int dev, byte kind) {
+	    if (dev >= m_columns.length)
+		m_columns = Arrays.copyOf(m_columns, Math.max(dev + 1, m_columns.length * 2));
+	    if (m_columns[dev] == 0)
+		m_columns[dev] = m_writer.addDevice(m_bus.getDeviceType(dev) + ":" + m_bus.getDeviceName(dev), kind) + 1;
+	    return m_columns[dev] - 1;
+	}
+
 	@Override
-	public void didSet(Solenoid s, boolean v) {
-	    synchronized (m_logLock) {
-		if (m_logWriter == null)
-		    return;
-		emitLogTimestamp();
-		m_logWriter.printf("Thread(%s)  Solenoid: %s: %s\n",
-			Thread.currentThread().getName(), s.getName(),
-			(v ? "on" : "off"));
+	public void onEvents(DeviceEventBatch b) {
+	    for (int i = 0; i < b.size(); i++) {
+		switch (b.getKind(i)) {
+		case kMotorSet:
+		    m_writer.addMotorSample(column(b.getDevice(i), ColumnarLogWriter.kKindMotor), b.getTime(i),
+			    b.getInt0(i), b.getDouble0(i), b.getInt1(i), b.getDouble1(i));
+		    break;
+		case kSolenoidSet:
+		    m_writer.addSolenoidSample(column(b.getDevice(i), ColumnarLogWriter.kKindSolenoid), b.getTime(i),
+			    b.getInt0(i) != 0);
+		    break;
+		default:
+		    break;
+		}
 	    }
-
 	}
 
+	@Override
+	public void onClose() {
+	    try {
+		m_writer.close();
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+	    }
+	}
     }
-    
-    private class LoggingMotorObserver implements RobotMotorObserver
+
+    // Writes every event to the WPILib DataLog.
+    private class DataLogSubscriber implements DeviceEventListener
     {
+	private static final int kFields = 4;
+	private final DataLogWriter m_dataLog;
+	private int[] m_entries = new int[16 * kFields]; // device * kFields + field -> entry
+	private int[] m_lastInt0 = new int[16];
+	private int[] m_lastInt1 = new int[16];
+	private int m_commandEntry;
+	private int m_enabledEntry;
+	private int m_autonomousEntry;
+
+	DataLogSubscriber(DataLogWriter w) {
+	    m_dataLog = w;
+	    long now = RobotController.getFPGATime();
+	    m_commandEntry = m_dataLog.start("/emulator/command", DataLogWriter.kTypeString, now);
+	    m_enabledEntry = m_dataLog.start("DS:enabled", DataLogWriter.kTypeBoolean, now);
+	    m_autonomousEntry = m_dataLog.start("DS:autonomous", DataLogWriter.kTypeBoolean, now);
+	}
+
+	private int entry(int dev, int field, String name, String type, long now) {
+	    int idx = dev * kFields + field;
+	    if (idx >= m_entries.length) {
+		m_entries = Arrays.copyOf(m_entries, Math.max(idx + 1, m_entries.length * 2));
+		m_lastInt0 = Arrays.copyOf(m_lastInt0, m_entries.length / kFields + 1);
+		m_lastInt1 = Arrays.copyOf(m_lastInt1, m_entries.length / kFields + 1);
+	    }
+	    if (m_entries[idx] == 0) {
+		String path = "/emulator/" + m_bus.getDeviceType(dev) + "/" + m_bus.getDeviceName(dev);
+		if (name != null)
+		    path += "/" + name;
+		m_entries[idx] = m_dataLog.start(path, type, now);
+		if (field == 0) {
+		    m_lastInt0[dev] = -1;
+		    m_lastInt1[dev] = -1;
+		}
+	    }
+	    return m_entries[idx];
+	}
+
 	@Override
-	public void didSet(BaseMotorController c, ControlMode cm, double dmd, DemandType dt, double dmd1) {
-	    synchronized (m_logLock) {
-		if (m_logWriter == null)
-		    return;
-		emitLogTimestamp();
-		m_logWriter.printf("Thread(%s) Motor: %x: (%s) %f, (%s) %f\n",
-			Thread.currentThread().getName(), c.getBaseID(), cm.toString(), dmd, dt.toString(), dmd1);
+	public void onEvents(DeviceEventBatch b) {
+	    for (int i = 0; i < b.size(); i++) {
+		long now = b.getTime(i);
+		int dev = b.getDevice(i);
+		switch (b.getKind(i)) {
+		case kMotorSet: {
+		    int mode = entry(dev, 0, "controlMode", DataLogWriter.kTypeString, now);
+		    int d0 = entry(dev, 1, "demand0", DataLogWriter.kTypeDouble, now);
+		    int type = entry(dev, 2, "demandType", DataLogWriter.kTypeString, now);
+		    int d1 = entry(dev, 3, "demand1", DataLogWriter.kTypeDouble, now);
+		    // The mode strings rarely change, only log transitions.
+		    if (b.getInt0(i) != m_lastInt0[dev]) {
+			m_dataLog.appendString(mode, kControlModes[b.getInt0(i)].toString(), now);
+			m_lastInt0[dev] = b.getInt0(i);
+		    }
+		    if (b.getInt1(i) != m_lastInt1[dev]) {
+			m_dataLog.appendString(type, kDemandTypes[b.getInt1(i)].toString(), now);
+			m_lastInt1[dev] = b.getInt1(i);
+		    }
+		    m_dataLog.appendDouble(d0, b.getDouble0(i), now);
+		    m_dataLog.appendDouble(d1, b.getDouble1(i), now);
+		    break;
+		}
+		case kSolenoidSet:
+		    m_dataLog.appendBoolean(entry(dev, 0, null, DataLogWriter.kTypeBoolean, now), b.getInt0(i) != 0, now);
+		    break;
+		case kPWMSpeed:
+		    m_dataLog.appendDouble(entry(dev, 0, "speed", DataLogWriter.kTypeDouble, now), b.getDouble0(i), now);
+		    break;
+		case kPWMPosition:
+		    m_dataLog.appendDouble(entry(dev, 1, "position", DataLogWriter.kTypeDouble, now), b.getDouble0(i), now);
+		    break;
+		case kPWMRaw:
+		    m_dataLog.appendInteger(entry(dev, 2, "raw", DataLogWriter.kTypeInt64, now), b.getInt0(i), now);
+		    break;
+		case kPWMDisabled:
+		    m_dataLog.appendBoolean(entry(dev, 3, "disabled", DataLogWriter.kTypeBoolean, now), true, now);
+		    break;
+		case kGroupSet:
+		    m_dataLog.appendDouble(entry(dev, 0, "speed", DataLogWriter.kTypeDouble, now), b.getDouble0(i), now);
+		    break;
+		case kSparkMaxSetpoint:
+		    m_dataLog.appendDouble(entry(dev, 0, "setpoint", DataLogWriter.kTypeDouble, now), b.getDouble0(i), now);
+		    m_dataLog.appendInteger(entry(dev, 1, "controlType", DataLogWriter.kTypeInt64, now), b.getInt0(i), now);
+		    m_dataLog.appendDouble(entry(dev, 2, "arbFeedforward", DataLogWriter.kTypeDouble, now), b.getDouble1(i), now);
+		    break;
+		case kMode:
+		    m_dataLog.appendBoolean(m_enabledEntry, b.getInt0(i) != 0, now);
+		    m_dataLog.appendBoolean(m_autonomousEntry, b.getInt1(i) != 0, now);
+		    break;
+		case kCommand:
+		    if (b.getObject(i) != null)
+			m_dataLog.appendString(m_commandEntry, (String)b.getObject(i), now);
+		    break;
+		case kNotifier:
+		    break;
+		}
 	    }
 	}
-	
-    }
-    
-    void logCommand(String cmd) {
-	synchronized (m_logLock) {
-	    if (m_logWriter == null)
-		return;
-	    emitLogTimestamp();
-	    m_logWriter.println("Command <" + cmd + ">");
+
+	@Override
+	public void onClose() {
+	    m_dataLog.close();
 	}
+    }
 
+    private static String[] enumNames(Enum<?>[] values) {
+	String[] names = new String[values.length];
+	for (int i = 0; i < values.length; i++)
+	    names[i] = values[i].name();
+	return names;
+    }
+
+    void logCommand(String cmd) {
+	m_bus.publish(-1, DeviceEventKind.kCommand, cmd);
     }
 
     void logNotifier(String note) {
-	synchronized (m_logLock) {
-	    if (m_logWriter == null)
-		return;
-	    emitLogTimestamp();
-	    m_logWriter.printf("Thread(%s) Notifier: %s\n", Thread.currentThread().getName(), note);
+	m_bus.publish(-1, DeviceEventKind.kNotifier, note);
+    }
+
+    void logMode(boolean enabled, boolean autonomous) {
+	MotorPhysics.getInstance().setEnabled(enabled);
+	m_bus.publish(-1, DeviceEventKind.kMode, enabled ? 1 : 0, autonomous ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * Handle a command file command that the DriverStation does not know.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    boolean processCommand(String[] cmd) {
+	if (DataLogReplay.getInstance().processCommand(cmd))
+	    return true;
+	if (MotorPhysics.getInstance().processCommand(cmd))
+	    return true;
+	if (DrivetrainSimulator.getInstance().processCommand(cmd))
+	    return true;
+	if (ADXRS450Sensor.processCommand(cmd))
+	    return true;
+	if (PowerDistributionModel.getInstance().processCommand(cmd))
+	    return true;
+	if (PneumaticsModel.getInstance().processCommand(cmd))
+	    return true;
+	if (cmd[0].equalsIgnoreCase("metrics.max") || cmd[0].equalsIgnoreCase("metrics.min")) {
+	    // metrics.max|metrics.min <type:name>|* <metric> <value>
+	    if (cmd.length != 4)
+		throw new IllegalArgumentException("Invalid number of arguments to " + cmd[0]);
+	    double value;
+	    try {
+		value = Double.parseDouble(cmd[3]);
+	    } catch (NumberFormatException nfe) {
+		throw new IllegalArgumentException("Invalid limit '" + cmd[3] + "'");
+	    }
+	    m_metrics.addLimit(cmd[1], cmd[2], cmd[0].equalsIgnoreCase("metrics.max"), value);
+	    return true;
 	}
+	return false;
+    }
 
+    // Report the metrics and stop the robot if one is out of its limits.
+    private void evaluateMetrics() {
+	if (m_metricsOut != null)
+	    m_metrics.report(m_metricsOut);
+	String violation = m_metrics.check();
+	if (violation != null) {
+	    System.err.println("Metrics limit exceeded: " + violation);
+	    System.exit(1);
+	}
     }
 
-    PrintWriter m_logWriter;
+    /**
+     * Called by the DriverStation as emulated time goes by, evaluates the
+     * actuator metrics once per period.
+     */
+    void periodic(long now) {
+	if (now < m_nextMetrics || (m_metricsOut == null && !m_metrics.hasLimits()))
+	    return;
+	m_nextMetrics = now + m_metricsPeriod;
+	evaluateMetrics();
+    }
+
+    /**
+     * Called when the robot program powers down: evaluates the actuator
+     * metrics one last time, including all outputs up to now, and reports
+     * the cost of the physics and the load of the CAN bus.
+     */
+    public void powerdown() {
+	m_bus.flush();
+	evaluateMetrics();
+	MotorPhysics.getInstance().reportCost(System.out);
+	CANBusModel.getInstance().report(System.out);
+    }
+
+    /**
+     * @return The actuator metrics computed during the run.
+     */
+    public ActuatorMetrics getMetrics() {
+	return m_metrics;
+    }
 
     private RobotEmulator() {
 	String log_file_name = System.getenv().get("ROBOT_ACTION_LOG");
 	if (log_file_name == null)
 	    log_file_name = "robot_action.log";
 	try {
-	    m_logWriter = new PrintWriter(new FileWriter(log_file_name));
+	    PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(log_file_name), 1 << 16));
+	    m_bus.subscribe("ActionLog", new ActionLogSubscriber(w));
 	} catch (IOException ioe) {
 	    ioe.printStackTrace();
 	    System.exit(1);
 	}
-	Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	String columnar_file_name = System.getenv().get("ROBOT_COLUMNAR_LOG");
+	if (columnar_file_name != null) {
+	    try {
+		ColumnarLogWriter w = new ColumnarLogWriter(Paths.get(columnar_file_name),
+			enumNames(ControlMode.values()), enumNames(DemandType.values()));
+		m_bus.subscribe("Columnar", new ColumnarSubscriber(w));
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+		System.exit(1);
+	    }
+	}
+	String datalog_file_name = System.getenv().get("ROBOT_DATALOG");
+	if (datalog_file_name != null) {
+	    try {
+		DataLogWriter w = new DataLogWriter(Paths.get(datalog_file_name), "WPILibJ-Emulator");
+		m_bus.subscribe("DataLog", new DataLogSubscriber(w));
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+		System.exit(1);
+	    }
+	}
+	m_bus.subscribe("Metrics", m_metrics);
+	String metrics_file_name = System.getenv().get("ROBOT_METRICS");
+	if (metrics_file_name != null) {
+	    try {
+		m_metricsOut = metrics_file_name.equals("-") ? System.out : new PrintStream(metrics_file_name);
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+		System.exit(1);
+	    }
+	}
+	String metrics_period = System.getenv().get("ROBOT_METRICS_PERIOD");
+	if (metrics_period != null) {
+	    try {
+		m_metricsPeriod = Math.max(1, Math.round(Double.parseDouble(metrics_period) * 1e6));
+	    } catch (NumberFormatException nfe) {
+		System.err.println("Invalid ROBOT_METRICS_PERIOD '" + metrics_period + "'");
+		System.exit(1);
+	    }
+	}
+	String pose_file_name = System.getenv().get("ROBOT_POSE_LOG");
+	if (pose_file_name != null) {
 	    try {
-		m_logWriter.flush();
-		m_logWriter.close();
-	    } catch (Exception ex) {
-		// Ignore.
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(pose_file_name), 1 << 16));
+		DrivetrainSimulator.getInstance().setPoseLog(w);
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+		System.exit(1);
 	    }
+	}
+	try {
+	    MotorPhysics.getInstance().loadMechanisms();
+	} catch (ServiceConfigurationError | IllegalArgumentException e) {
+	    System.err.println("Invalid mechanism: " + e.getMessage());
+	    System.exit(1);
+	}
+	Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    m_bus.close();
+	    DrivetrainSimulator.getInstance().close();
 	}));
 
     }
 
     private static RobotEmulator instance = new RobotEmulator();
-    
+
     public static RobotEmulator getInstance()
     {
 	return instance;
     }
-    
-    public void manage(Solenoid s) {
-	s.addObserver(new LoggingSolenoidObserver());
+
+    /**
+     * @return The bus all actuator events are published on.  Add a
+     *         subscriber to it to observe the robot outputs.
+     */
+    public DeviceEventBus getEventBus()
+    {
+	return m_bus;
+    }
+
+    public int manage(Solenoid s, int module, int channel) {
+	return m_bus.registerDevice("solenoid", s.getName(), (module << 8) | channel);
     }
-    
-    public void manage (BaseMotorController bmc)
+
+    public int manage (BaseMotorController bmc)
     {
-	bmc.addObserver(new LoggingMotorObserver());
+	return m_bus.registerDevice("motor", Integer.toHexString(bmc.getBaseID()), bmc.getBaseID());
+    }
+
+    public int manage(PWM pwm) {
+	return m_bus.registerDevice("pwm", Integer.toString(pwm.getChannel()), pwm.getChannel());
+    }
+
+    public int manage(SpeedControllerGroup group) {
+	return m_bus.registerDevice("group", group.getName(), -1);
+    }
+
+    public int manage(CANSparkMaxLowLevel spark) {
+	return m_bus.registerDevice("sparkmax", Integer.toString(spark.getDeviceId()), spark.getDeviceId());
     }
 }
-    
@@ -1,5 +0,0 @@
-package edu.wpi.first.wpilibj;
-
-public interface RobotSolenoidObserver {
-    void didSet(Solenoid s, boolean v);
-}
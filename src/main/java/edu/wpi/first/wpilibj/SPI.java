@@ -11,6 +11,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 
+import edu.wpi.first.hal.SPIJNI;
+
 /**
  * Represents a SPI bus port.
  */
@@ -298,14 +300,14 @@ public class SPI implements AutoCloseable {
    * @param bufferSize buffer size in bytes
    */
   public void initAuto(int bufferSize) {
-    //SPIJNI.spiInitAuto(m_port, bufferSize);
+    SPIJNI.spiInitAuto(m_port, bufferSize);
   }
 
   /**
    * Frees the automatic SPI transfer engine.
    */
   public void freeAuto() {
-    //SPIJNI.spiFreeAuto(m_port);
+    SPIJNI.spiFreeAuto(m_port);
   }
 
   /**
@@ -318,7 +320,7 @@ public class SPI implements AutoCloseable {
    * @param zeroSize number of zeros to send after the data
    */
   public void setAutoTransmitData(byte[] dataToSend, int zeroSize) {
-    //SPIJNI.spiSetAutoTransmitData(m_port, dataToSend, zeroSize);
+    SPIJNI.spiSetAutoTransmitData(m_port, dataToSend, zeroSize);
   }
 
   /**
@@ -330,7 +332,7 @@ public class SPI implements AutoCloseable {
    * @param period period between transfers, in seconds (us resolution)
    */
   public void startAutoRate(double period) {
-    //SPIJNI.spiStartAutoRate(m_port, period);
+    SPIJNI.spiStartAutoRate(m_port, period);
   }
 
   /**
@@ -352,14 +354,14 @@ public class SPI implements AutoCloseable {
    * Stop running the automatic SPI transfer engine.
    */
   public void stopAuto() {
-    //SPIJNI.spiStopAuto(m_port);
+    SPIJNI.spiStopAuto(m_port);
   }
 
   /**
    * Force the engine to make a single transfer.
    */
   public void forceAutoRead() {
-    //SPIJNI.spiForceAutoRead(m_port);
+    SPIJNI.spiForceAutoRead(m_port);
   }
 
   /**
@@ -389,7 +391,7 @@ public class SPI implements AutoCloseable {
       throw new IllegalArgumentException("buffer is too small, must be at least "
           + (numToRead * 4));
     }
-    return 0; //SPIJNI.spiReadAutoReceivedData(m_port, buffer, numToRead, timeout);
+    return SPIJNI.spiReadAutoReceivedData(m_port, buffer, numToRead, timeout);
   }
 
   /**
@@ -415,7 +417,7 @@ public class SPI implements AutoCloseable {
     if (buffer.length < numToRead) {
       throw new IllegalArgumentException("buffer is too small, must be at least " + numToRead);
     }
-    return 0; //SPIJNI.spiReadAutoReceivedData(m_port, buffer, numToRead, timeout);
+    return SPIJNI.spiReadAutoReceivedData(m_port, buffer, numToRead, timeout);
   }
 
   /**
@@ -425,7 +427,7 @@ public class SPI implements AutoCloseable {
    * @return Number of bytes dropped
    */
   public int getAutoDroppedCount() {
-    return 0; //SPIJNI.spiGetAutoDroppedCount(m_port);
+    return SPIJNI.spiGetAutoDroppedCount(m_port);
   }
 
   private static final int kAccumulateDepth = 2048;
@@ -434,7 +436,7 @@ public class SPI implements AutoCloseable {
   private static class Accumulator implements AutoCloseable {
     Accumulator(int port, int xferSize, int validMask, int validValue, int dataShift,
                 int dataSize, boolean isSigned, boolean bigEndian) {
-      //m_notifier = new Notifier(this::update);
+      m_notifier = new Notifier(this::update);
       m_buf = ByteBuffer.allocateDirect((xferSize + 1) * kAccumulateDepth * 4)
           .order(ByteOrder.nativeOrder());
       m_intBuf = m_buf.asIntBuffer();
@@ -451,10 +453,10 @@ public class SPI implements AutoCloseable {
 
     @Override
     public void close() {
-      //m_notifier.close();
+      m_notifier.close();
     }
 
-    //final Notifier m_notifier;
+    final Notifier m_notifier;
     final ByteBuffer m_buf;
     final IntBuffer m_intBuf;
     final Object m_mutex = new Object();
@@ -487,7 +489,7 @@ public class SPI implements AutoCloseable {
           done = true;
 
           // get amount of data available
-          int numToRead = 0; //SPIJNI.spiReadAutoReceivedData(m_port, m_buf, 0, 0);
+          int numToRead = SPIJNI.spiReadAutoReceivedData(m_port, m_buf, 0, 0);
 
           // only get whole responses
           numToRead -= numToRead % m_xferSize;
@@ -500,7 +502,7 @@ public class SPI implements AutoCloseable {
           }
 
           // read buffered data
-          //SPIJNI.spiReadAutoReceivedData(m_port, m_buf, numToRead, 0);
+          SPIJNI.spiReadAutoReceivedData(m_port, m_buf, numToRead, 0);
 
           // loop over all responses
           for (int off = 0; off < numToRead; off += m_xferSize) {
@@ -600,7 +602,7 @@ public class SPI implements AutoCloseable {
 
     m_accum = new Accumulator(m_port, xferSize, validMask, validValue, dataShift, dataSize,
                               isSigned, bigEndian);
-    //m_accum.m_notifier.startPeriodic(period * 1024);
+    m_accum.m_notifier.startPeriodic(period * 1024);
   }
 
   /**
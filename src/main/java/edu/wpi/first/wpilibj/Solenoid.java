@@ -7,9 +7,8 @@
 
 package edu.wpi.first.wpilibj;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
+import edu.wpi.first.wpilibj.emulator.PneumaticsModel;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -46,12 +45,9 @@ public class Solenoid extends SolenoidBase {
 
     //HAL.report(tResourceType.kResourceType_Solenoid, m_channel, m_moduleNumber);
     setName("Solenoid", m_moduleNumber, m_channel);
-    RobotEmulator.getInstance().manage(this);
-  }
-  private List<RobotSolenoidObserver> observers = new ArrayList<RobotSolenoidObserver>();
-  void addObserver(RobotSolenoidObserver o) {
-      observers.add(o);
+    m_busDevice = RobotEmulator.getInstance().manage(this, m_moduleNumber, m_channel);
   }
+  private final int m_busDevice;
 
   @Override
   public void close() {
@@ -64,10 +60,9 @@ public class Solenoid extends SolenoidBase {
    * @param on True will turn the solenoid output on. False will turn the solenoid output off.
    */
   public void set(boolean on) {
-    //SolenoidJNI.setSolenoid(m_solenoidHandle, on);
-      for (RobotSolenoidObserver o : observers) {
-	  o.didSet(this, on);
-      }
+    PneumaticsModel.getInstance().set(m_moduleNumber, m_channel, on); //SolenoidJNI.setSolenoid(m_solenoidHandle, on);
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kSolenoidSet,
+        on ? 1 : 0, 0, 0, 0);
   }
 
   /**
@@ -76,7 +71,7 @@ public class Solenoid extends SolenoidBase {
    * @return True if the solenoid output is on or false if the solenoid output is off.
    */
   public boolean get() {
-    return false; //SolenoidJNI.getSolenoid(m_solenoidHandle);
+    return (getAll() & (1 << m_channel)) != 0; //SolenoidJNI.getSolenoid(m_solenoidHandle);
   }
 
   /**
@@ -102,6 +97,7 @@ public class Solenoid extends SolenoidBase {
    */
   public void setPulseDuration(double durationSeconds) {
     long durationMS = (long) (durationSeconds * 1000);
+    PneumaticsModel.getInstance().setPulseDuration(m_moduleNumber, m_channel, durationMS);
     //SolenoidJNI.setOneShotDuration(m_solenoidHandle, durationMS);
   }
 
@@ -112,7 +108,7 @@ public class Solenoid extends SolenoidBase {
    * @see #setPulseDuration(double)
    */
   public void startPulse() {
-    //SolenoidJNI.fireOneShot(m_solenoidHandle);
+    PneumaticsModel.getInstance().startPulse(m_moduleNumber, m_channel); //SolenoidJNI.fireOneShot(m_solenoidHandle);
   }
 
   @Override
@@ -7,6 +7,7 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.PneumaticsModel;
 
 /**
  * SolenoidBase class is the common base class for the {@link Solenoid} and {@link DoubleSolenoid}
@@ -31,7 +32,7 @@ public abstract class SolenoidBase extends SendableBase {
    * @return The current value of all 8 solenoids on the module.
    */
   public static int getAll(int moduleNumber) {
-    return 0; //SolenoidJNI.getAllSolenoids(moduleNumber);
+    return PneumaticsModel.getInstance().getAll(moduleNumber); //SolenoidJNI.getAllSolenoids(moduleNumber);
   }
 
   /**
@@ -7,6 +7,7 @@
 
 package edu.wpi.first.wpilibj;
 
+import edu.wpi.first.wpilibj.emulator.DeviceEventKind;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -16,6 +17,7 @@ public class SpeedControllerGroup extends SendableBase implements SpeedControlle
   private boolean m_isInverted;
   private final SpeedController[] m_speedControllers;
   private static int instances;
+  private final int m_busDevice;
 
   /**
    * Create a new SpeedControllerGroup with the provided SpeedControllers.
@@ -34,10 +36,12 @@ public class SpeedControllerGroup extends SendableBase implements SpeedControlle
     }
     instances++;
     setName("SpeedControllerGroup", instances);
+    m_busDevice = RobotEmulator.getInstance().manage(this);
   }
 
   @Override
   public void set(double speed) {
+    RobotEmulator.getInstance().getEventBus().publish(m_busDevice, DeviceEventKind.kGroupSet, 0, 0, speed, 0);
     for (SpeedController speedController : m_speedControllers) {
       speedController.set(m_isInverted ? -speed : speed);
     }
@@ -51,6 +55,13 @@ public class SpeedControllerGroup extends SendableBase implements SpeedControlle
     return 0.0;
   }
 
+  /**
+   * Get the grouped speed controllers, for the drivetrain simulation.
+   */
+  public SpeedController[] getSpeedControllers() {
+    return m_speedControllers.clone();
+  }
+
   @Override
   public void setInverted(boolean isInverted) {
     m_isInverted = isInverted;
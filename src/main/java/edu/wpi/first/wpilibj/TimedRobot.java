@@ -61,8 +61,9 @@ public class TimedRobot extends IterativeRobotBase {
 	  long now = RobotController.getFPGATime();
 	  long wait_micros = expirationTime - now;
 	  if (wait_micros > 0) {
-	      long millis = wait_micros / 1_000;
-	      int nanos = (int)((wait_micros % 1_000) * 1_000);
+	      long wait_nanos = RobotController.emulatorWallNanos(wait_micros);
+	      long millis = wait_nanos / 1_000_000;
+	      int nanos = (int)(wait_nanos % 1_000_000);
 	      try {
 		  Thread.sleep(millis, nanos);
 	      } catch (InterruptedException ie) {
@@ -92,6 +93,7 @@ public class TimedRobot extends IterativeRobotBase {
 	  iteration++;
       }
       // We are powering down.  Don't return as that would produce an error message, just successfully exit.
+      RobotEmulator.getInstance().powerdown();
       System.exit(0);
   }
 
@@ -42,7 +42,8 @@ public class Timer {
    */
   public static void delay(final double seconds) {
     try {
-      Thread.sleep((long) (seconds * 1e3));
+      long nanos = RobotController.emulatorWallNanos((long) (seconds * 1e6));
+      Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
     } catch (final InterruptedException ex) {
       Thread.currentThread().interrupt();
     }
@@ -11,6 +11,7 @@ import java.util.StringJoiner;
 
 import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.SpeedControllerGroup;
+import edu.wpi.first.wpilibj.emulator.DrivetrainSimulator;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -119,6 +120,7 @@ public class DifferentialDrive extends RobotDriveBase {
     addChild(m_rightMotor);
     instances++;
     setName("DifferentialDrive", instances);
+    DrivetrainSimulator.getInstance().setDifferentialDrive(leftMotor, rightMotor);
   }
 
   /**
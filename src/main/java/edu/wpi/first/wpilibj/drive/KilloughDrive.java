@@ -10,6 +10,7 @@ package edu.wpi.first.wpilibj.drive;
 import java.util.StringJoiner;
 
 import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.emulator.DrivetrainSimulator;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -101,6 +102,8 @@ public class KilloughDrive extends RobotDriveBase {
     addChild(m_backMotor);
     instances++;
     setName("KilloughDrive", instances);
+    DrivetrainSimulator.getInstance().setKilloughDrive(leftMotor, rightMotor, backMotor,
+        leftMotorAngle, rightMotorAngle, backMotorAngle);
   }
 
   /**
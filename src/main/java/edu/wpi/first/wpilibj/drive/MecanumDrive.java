@@ -10,6 +10,7 @@ package edu.wpi.first.wpilibj.drive;
 import java.util.StringJoiner;
 
 import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.emulator.DrivetrainSimulator;
 import edu.wpi.first.wpilibj.smartdashboard.SendableBuilder;
 
 /**
@@ -84,6 +85,8 @@ public class MecanumDrive extends RobotDriveBase {
     addChild(m_rearRightMotor);
     instances++;
     setName("MecanumDrive", instances);
+    DrivetrainSimulator.getInstance().setMecanumDrive(frontLeftMotor, rearLeftMotor, frontRightMotor,
+        rearRightMotor);
   }
 
   /**
@@ -0,0 +1,102 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Emulation of the ADXRS450 gyro sensor: answers the sensor data requests
+ * of the SPI auto-transfer engine with the yaw rate of the simulated
+ * drivetrain, in the response format of the real sensor.
+ *
+ * <p>The rate is measured with white noise and a bias that drifts as a
+ * random walk, set by the command file
+ * <pre>
+ *   gyro.model &lt;noise&gt; [&lt;bias&gt; [&lt;bias drift&gt;]]
+ * </pre>
+ * in degrees per second rms, degrees per second and degrees per second
+ * per square root of a second.  The noise is seeded, so that runs are
+ * repeatable.  The sensor is perfect by default.
+ */
+public class ADXRS450Sensor implements SPIDevice {
+    public static final double kDegreePerSecondPerLSB = 0.0125;
+
+    private static final int kSensorData = 0x20;
+    private static final int kStatusValid = 0x04000000;
+
+    private static double s_noise;
+    private static double s_bias;
+    private static double s_drift;
+
+    private final Random m_random = new Random(0);
+    private double m_bias = Double.NaN;
+    private long m_lastTransfer = -1;
+
+    /**
+     * Handle the gyro.model command.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public static boolean processCommand(String[] cmd) {
+	if (!cmd[0].equalsIgnoreCase("gyro.model"))
+	    return false;
+	if (cmd.length < 2 || cmd.length > 4)
+	    throw new IllegalArgumentException("Invalid number of arguments to gyro.model");
+	double noise, bias = 0, drift = 0;
+	try {
+	    noise = Double.parseDouble(cmd[1]);
+	    if (cmd.length > 2)
+		bias = Double.parseDouble(cmd[2]);
+	    if (cmd.length > 3)
+		drift = Double.parseDouble(cmd[3]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	if (!(noise >= 0) || !(drift >= 0))
+	    throw new IllegalArgumentException("gyro.model noise and drift must not be negative");
+	synchronized (ADXRS450Sensor.class) {
+	    s_noise = noise;
+	    s_bias = bias;
+	    s_drift = drift;
+	}
+	return true;
+    }
+
+    // The measured rate, degrees per second clockwise.
+    private double measure(long time) {
+	double noise, drift;
+	synchronized (ADXRS450Sensor.class) {
+	    noise = s_noise;
+	    drift = s_drift;
+	    if (Double.isNaN(m_bias))
+		m_bias = s_bias;
+	}
+	if (m_lastTransfer >= 0 && drift > 0)
+	    m_bias += drift * Math.sqrt((time - m_lastTransfer) / 1e6) * m_random.nextGaussian();
+	m_lastTransfer = time;
+	double rate = -DrivetrainSimulator.getInstance().getYawRate() + m_bias;
+	if (noise > 0)
+	    rate += noise * m_random.nextGaussian();
+	return rate;
+    }
+
+    @Override
+    public void transfer(long time, byte[] dataToSend, byte[] dataReceived) {
+	if (dataToSend.length < 4 || (dataToSend[0] & 0xff) != kSensorData) {
+	    Arrays.fill(dataReceived, (byte)0);
+	    return;
+	}
+	long lsb = Math.round(measure(time) / kDegreePerSecondPerLSB);
+	int data = (int)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, lsb)) & 0xffff;
+	int resp = kStatusValid | (data << 10);
+	// P0 makes bits 31:16 odd parity, P1 the whole response.
+	if ((Integer.bitCount(resp >>> 16) & 1) == 0)
+	    resp |= 1 << 28;
+	if ((Integer.bitCount(resp) & 1) == 0)
+	    resp |= 1;
+	for (int i = 0; i < 4; i++)
+	    dataReceived[i] = (byte)(resp >>> (24 - 8 * i));
+	for (int i = 4; i < dataReceived.length; i++)
+	    dataReceived[i] = 0;
+    }
+}
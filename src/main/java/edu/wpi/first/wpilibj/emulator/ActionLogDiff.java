@@ -0,0 +1,353 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare the actuator timelines of two action logs, allowing for timing
+ * jitter.
+ *
+ * <p>Both logs are streamed in time order.  For every motor and solenoid
+ * only the changes of output are compared: repeated sets of the same
+ * value are ignored.  An output within the value tolerance of the last
+ * change is not a change, so a slow ramp is compared in steps of the
+ * value tolerance.  A change in one log matches a change to the same
+ * value (within the value tolerance) in the other log, on the same
+ * device, no more than the time tolerance apart.  A change that finds no
+ * match within the time window is the divergence of its device; later
+ * records of that device are not compared.  Only the changes that are
+ * still inside the time window are held in memory, so the size of the
+ * logs does not matter.
+ *
+ * <pre>
+ * java -cp robot_sim.jar edu.wpi.first.wpilibj.emulator.ActionLogDiff [options] &lt;expected&gt; &lt;actual&gt;
+ *   -t &lt;ms&gt;      time tolerance, default 20
+ *   -v &lt;value&gt;   value tolerance for demands, default 1e-3
+ *   -d &lt;dev&gt;     only compare this device (may be repeated)
+ * </pre>
+ * The exit status is 0 when the logs match, 1 when they diverge.
+ */
+public class ActionLogDiff {
+    public static final long kDefaultTimeTolerance = 20_000;
+    public static final double kDefaultValueTolerance = 1e-3;
+
+    private static final int kExpected = 0;
+    private static final int kActual = 1;
+
+    /**
+     * The first difference found on a device.
+     */
+    public static class Divergence {
+	private final String m_device;
+	private final long m_timeMicros;
+	private final String m_expected;
+	private final long m_expectedTime;
+	private final String m_actual;
+	private final long m_actualTime;
+
+	Divergence(String device, long timeMicros, String expected, long expectedTime, String actual,
+		long actualTime) {
+	    m_device = device;
+	    m_timeMicros = timeMicros;
+	    m_expected = expected;
+	    m_expectedTime = expectedTime;
+	    m_actual = actual;
+	    m_actualTime = actualTime;
+	}
+
+	public String getDevice() {
+	    return m_device;
+	}
+
+	public long getTimeMicros() {
+	    return m_timeMicros;
+	}
+
+	/** The expected output, or null if the device did not change there. */
+	public String getExpected() {
+	    return m_expected;
+	}
+
+	/** The actual output, or null if the device did not change there. */
+	public String getActual() {
+	    return m_actual;
+	}
+
+	private static String describe(String output, long time) {
+	    if (output == null)
+		return "no change";
+	    return String.format("%s at %d.%06d", output, time / 1_000_000, time % 1_000_000);
+	}
+
+	@Override
+	public String toString() {
+	    return String.format("%s: %d.%06d: expected %s, actual %s", m_device,
+		    m_timeMicros / 1_000_000, m_timeMicros % 1_000_000,
+		    describe(m_expected, m_expectedTime), describe(m_actual, m_actualTime));
+	}
+    }
+
+    // One output of a device, as logged.
+    private static class Output {
+	long m_time;
+	ActionLogRecord.Kind m_kind;
+	String m_mode;
+	double m_demand0;
+	String m_demandType;
+	double m_demand1;
+	boolean m_on;
+	String m_text;
+
+	Output(ActionLogRecord r) {
+	    m_time = r.getTimeMicros();
+	    m_kind = r.getKind();
+	    m_mode = r.getControlMode();
+	    m_demand0 = r.getDemand0();
+	    m_demandType = r.getDemandType();
+	    m_demand1 = r.getDemand1();
+	    m_on = r.isOn();
+	    m_text = r.getText();
+	}
+    }
+
+    // Per device state: the last change of each log and the changes not
+    // matched yet.  Only one side can have unmatched changes at a time.
+    private class DeviceState {
+	final String m_device;
+	final Output[] m_last = new Output[2];
+	final List<Output> m_pending = new ArrayList<>();
+	int m_pendingSide;
+	boolean m_diverged;
+
+	DeviceState(String device) {
+	    m_device = device;
+	}
+    }
+
+    private final long m_timeTolerance;
+    private final double m_valueTolerance;
+    private final List<String> m_devices;
+    private final Map<String, DeviceState> m_states = new HashMap<>();
+    private final Map<String, Divergence> m_divergences = new TreeMap<>();
+    private long m_compared;
+
+    /**
+     * @param timeTolerance Maximum time between matching changes, in
+     *        microseconds.
+     * @param valueTolerance Maximum difference between matching demands.
+     * @param devices Device keys to compare, see
+     *        {@link ActionLogRecord#getDevice}, or null for all devices.
+     */
+    public ActionLogDiff(long timeTolerance, double valueTolerance, List<String> devices) {
+	m_timeTolerance = timeTolerance;
+	m_valueTolerance = valueTolerance;
+	m_devices = devices;
+    }
+
+    public ActionLogDiff() {
+	this(kDefaultTimeTolerance, kDefaultValueTolerance, null);
+    }
+
+    private boolean same(Output a, Output b) {
+	if (a.m_kind != b.m_kind)
+	    return false;
+	if (a.m_kind == ActionLogRecord.Kind.kSolenoid)
+	    return a.m_on == b.m_on;
+	return a.m_mode.equals(b.m_mode) && a.m_demandType.equals(b.m_demandType)
+		&& Math.abs(a.m_demand0 - b.m_demand0) <= m_valueTolerance
+		&& Math.abs(a.m_demand1 - b.m_demand1) <= m_valueTolerance;
+    }
+
+    private boolean wanted(String device) {
+	if (m_devices == null)
+	    return true;
+	for (String d : m_devices) {
+	    if (device.equals(d) || device.endsWith(":" + d))
+		return true;
+	}
+	return false;
+    }
+
+    private void diverge(DeviceState ds, long time, Output expected, Output actual) {
+	ds.m_diverged = true;
+	ds.m_pending.clear();
+	m_divergences.put(ds.m_device, new Divergence(ds.m_device, time,
+		expected == null ? null : expected.m_text, expected == null ? 0 : expected.m_time,
+		actual == null ? null : actual.m_text, actual == null ? 0 : actual.m_time));
+    }
+
+    // Report the oldest unmatched change of a device as a divergence.
+    private void divergePending(DeviceState ds) {
+	Output o = ds.m_pending.get(0);
+	int other = 1 - ds.m_pendingSide;
+	// Show what the other log did nearest to that time, if anything.
+	Output near = ds.m_pending.size() > 1 ? null : ds.m_last[other];
+	if (near != null && Math.abs(near.m_time - o.m_time) > m_timeTolerance)
+	    near = null;
+	if (ds.m_pendingSide == kExpected)
+	    diverge(ds, o.m_time, o, near);
+	else
+	    diverge(ds, o.m_time, near, o);
+    }
+
+    private void add(int side, ActionLogRecord r) {
+	String device = r.getDevice();
+	if (device == null || !wanted(device))
+	    return;
+	DeviceState ds = m_states.get(device);
+	if (ds == null) {
+	    ds = new DeviceState(device);
+	    m_states.put(device, ds);
+	}
+	if (ds.m_diverged)
+	    return;
+	Output o = new Output(r);
+	// Compare with the last change, not the last record, so that a slow
+	// ramp still counts as a change once it has moved by the value
+	// tolerance.
+	Output last = ds.m_last[side];
+	boolean changed = last == null || !same(last, o);
+	Output p = null;
+	if (!ds.m_pending.isEmpty() && ds.m_pendingSide != side)
+	    p = ds.m_pending.get(0);
+	// An output matching a change of the other log is a change too, so
+	// that two ramps a little apart step at the same values.
+	if (p != null && same(p, o) && o.m_time - p.m_time <= m_timeTolerance) {
+	    ds.m_last[side] = o;
+	    m_compared++;
+	    ds.m_pending.remove(0);
+	    return;
+	}
+	if (!changed)
+	    return;
+	ds.m_last[side] = o;
+	m_compared++;
+	if (p == null) {
+	    ds.m_pendingSide = side;
+	    ds.m_pending.add(o);
+	    return;
+	}
+	if (side == kExpected)
+	    diverge(ds, Math.min(o.m_time, p.m_time), o, p);
+	else
+	    diverge(ds, Math.min(o.m_time, p.m_time), p, o);
+    }
+
+    // Changes older than the time window can no longer be matched.
+    private void expire(long now) {
+	for (DeviceState ds : m_states.values()) {
+	    if (!ds.m_pending.isEmpty() && now - ds.m_pending.get(0).m_time > m_timeTolerance)
+		divergePending(ds);
+	}
+    }
+
+    /**
+     * Compare two logs.
+     *
+     * @return The first divergence of each device that diverged, by
+     *         device key.
+     */
+    public Map<String, Divergence> compare(Path expected, Path actual) throws IOException {
+	try (BufferedReader er = Files.newBufferedReader(expected, StandardCharsets.ISO_8859_1);
+		BufferedReader ar = Files.newBufferedReader(actual, StandardCharsets.ISO_8859_1)) {
+	    BufferedReader[] readers = { er, ar };
+	    ActionLogRecord[] recs = { new ActionLogRecord(), new ActionLogRecord() };
+	    boolean[] valid = new boolean[2];
+	    for (int side = 0; side < 2; side++)
+		valid[side] = next(readers[side], recs[side]);
+	    long lastExpire = Long.MIN_VALUE;
+	    while (valid[kExpected] || valid[kActual]) {
+		int side;
+		if (!valid[kActual])
+		    side = kExpected;
+		else if (!valid[kExpected])
+		    side = kActual;
+		else
+		    side = recs[kExpected].getTimeMicros() <= recs[kActual].getTimeMicros() ? kExpected : kActual;
+		long now = recs[side].getTimeMicros();
+		// Checking every device on each line would be quadratic, so
+		// only expire once the clock has moved on by a fraction of the
+		// window.
+		if (now - lastExpire > m_timeTolerance / 4) {
+		    expire(now);
+		    lastExpire = now;
+		}
+		add(side, recs[side]);
+		valid[side] = next(readers[side], recs[side]);
+	    }
+	}
+	expire(Long.MAX_VALUE);
+	return m_divergences;
+    }
+
+    private static boolean next(BufferedReader reader, ActionLogRecord rec) throws IOException {
+	String line;
+	while ((line = reader.readLine()) != null) {
+	    if (rec.parse(line))
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * @return The number of output changes compared.
+     */
+    public long getCompared() {
+	return m_compared;
+    }
+
+    private static void usage() {
+	System.err.println("Usage: ActionLogDiff [-t <ms>] [-v <value>] [-d <device>]... <expected> <actual>");
+	System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+	long timeTolerance = kDefaultTimeTolerance;
+	double valueTolerance = kDefaultValueTolerance;
+	List<String> devices = null;
+	int i = 0;
+	try {
+	    for (; i < args.length && args[i].startsWith("-"); i += 2) {
+		if (i + 1 >= args.length)
+		    usage();
+		switch (args[i]) {
+		case "-t":
+		    timeTolerance = ActionLogRecord.toMicros(Double.parseDouble(args[i + 1]) / 1000);
+		    break;
+		case "-v":
+		    valueTolerance = Double.parseDouble(args[i + 1]);
+		    break;
+		case "-d":
+		    if (devices == null)
+			devices = new ArrayList<>();
+		    devices.add(args[i + 1]);
+		    break;
+		default:
+		    usage();
+		}
+	    }
+	} catch (NumberFormatException nfe) {
+	    System.err.println("Invalid number: " + nfe.getMessage());
+	    System.exit(2);
+	}
+	if (args.length - i != 2)
+	    usage();
+
+	long start = System.nanoTime();
+	ActionLogDiff diff = new ActionLogDiff(timeTolerance, valueTolerance, devices);
+	Map<String, Divergence> result = diff.compare(Paths.get(args[i]), Paths.get(args[i + 1]));
+	for (Divergence d : result.values())
+	    System.out.println(d);
+	System.err.printf("compared %d changes in %.1f ms%n", diff.getCompared(), (System.nanoTime() - start) / 1e6);
+	System.exit(result.isEmpty() ? 0 : 1);
+    }
+}
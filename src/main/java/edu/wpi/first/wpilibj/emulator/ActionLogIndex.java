@@ -0,0 +1,433 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * A companion index for an emulator action log.
+ *
+ * <p>The index is stored next to the log as &lt;log&gt;.idx and holds two
+ * tables:
+ * <ul>
+ * <li>A sparse time index: one checkpoint every {@link #kBlockLines}
+ *     lines giving the byte offset of the block, the largest timestamp
+ *     seen before the block and the smallest timestamp at or after it.
+ *     Log lines written from different threads are not strictly time
+ *     ordered, the running max/min make range lookups correct anyway.
+ * <li>A per-device table with the timestamp and byte offset of every
+ *     output record of that device.
+ * </ul>
+ * Queries seek directly to the records they need, so they do not scale
+ * with the size of the log.  The index is rebuilt automatically when the
+ * log changes size or modification time.
+ */
+public class ActionLogIndex implements AutoCloseable {
+    public static final String kIndexSuffix = ".idx";
+    static final int kBlockLines = 1024;
+    private static final int kMagic = 0x52414c49; // "RALI"
+    private static final int kVersion = 1;
+
+    private static class DeviceIndex {
+	long[] m_times = new long[16];
+	long[] m_offsets = new long[16];
+	int m_count;
+
+	void add(long time, long offset) {
+	    if (m_count == m_times.length) {
+		m_times = Arrays.copyOf(m_times, m_count * 2);
+		m_offsets = Arrays.copyOf(m_offsets, m_count * 2);
+	    }
+	    m_times[m_count] = time;
+	    m_offsets[m_count] = offset;
+	    m_count++;
+	}
+
+	// First entry with time >= t.
+	int lowerBound(long t) {
+	    int lo = 0;
+	    int hi = m_count;
+	    while (lo < hi) {
+		int mid = (lo + hi) >>> 1;
+		if (m_times[mid] < t)
+		    lo = mid + 1;
+		else
+		    hi = mid;
+	    }
+	    return lo;
+	}
+    }
+
+    private final Path m_log;
+    private final FileChannel m_channel;
+    private long m_logLength;
+    private long m_logModified;
+
+    private long[] m_blockOffset = new long[16];
+    private long[] m_blockMaxBefore = new long[16];
+    private long[] m_blockMin = new long[16];
+    private long[] m_blockSuffixMin;
+    private int m_blockCount;
+
+    private final Map<String, DeviceIndex> m_devices = new TreeMap<>();
+
+    private ActionLogIndex(Path log) throws IOException {
+	m_log = log;
+	m_channel = FileChannel.open(log, StandardOpenOption.READ);
+    }
+
+    /**
+     * Open the index for a log, building or rebuilding the index file
+     * if it is missing or stale.
+     */
+    public static ActionLogIndex open(Path log) throws IOException {
+	ActionLogIndex index = new ActionLogIndex(log);
+	Path idx = indexPath(log);
+	if (!index.load(idx)) {
+	    index.build();
+	    index.save(idx);
+	}
+	index.finish();
+	return index;
+    }
+
+    /**
+     * Build the index file for a log unconditionally.
+     */
+    public static void rebuild(Path log) throws IOException {
+	try (ActionLogIndex index = new ActionLogIndex(log)) {
+	    index.build();
+	    index.save(indexPath(log));
+	}
+    }
+
+    public static Path indexPath(Path log) {
+	return log.resolveSibling(log.getFileName().toString() + kIndexSuffix);
+    }
+
+    @Override
+    public void close() throws IOException {
+	m_channel.close();
+    }
+
+    private void build() throws IOException {
+	m_logLength = Files.size(m_log);
+	m_logModified = Files.getLastModifiedTime(m_log).toMillis();
+	m_blockCount = 0;
+	m_devices.clear();
+
+	ActionLogRecord rec = new ActionLogRecord();
+	byte[] line = new byte[256];
+	int len = 0;
+	long offset = 0;
+	long lineStart = 0;
+	long lineNo = 0;
+	long maxTime = Long.MIN_VALUE;
+	try (InputStream in = new BufferedInputStream(Files.newInputStream(m_log), 1 << 16)) {
+	    byte[] buf = new byte[1 << 16];
+	    int n;
+	    while ((n = in.read(buf)) > 0) {
+		for (int i = 0; i < n; i++, offset++) {
+		    byte b = buf[i];
+		    if (b != '\n') {
+			if (len == line.length)
+			    line = Arrays.copyOf(line, len * 2);
+			line[len++] = b;
+			continue;
+		    }
+		    maxTime = indexLine(rec, new String(line, 0, len, StandardCharsets.UTF_8), lineNo,
+			    lineStart, maxTime);
+		    lineNo++;
+		    len = 0;
+		    lineStart = offset + 1;
+		}
+	    }
+	}
+	// The last line of a log cut off without its newline.
+	if (len > 0)
+	    indexLine(rec, new String(line, 0, len, StandardCharsets.UTF_8), lineNo, lineStart, maxTime);
+    }
+
+    // Index one line, return the latest time seen so far.
+    private long indexLine(ActionLogRecord rec, String line, long lineNo, long lineStart, long maxTime) {
+	if (lineNo % kBlockLines == 0)
+	    addBlock(lineStart, maxTime);
+	if (rec.parse(line)) {
+	    long t = rec.getTimeMicros();
+	    if (t > maxTime)
+		maxTime = t;
+	    if (t < m_blockMin[m_blockCount - 1])
+		m_blockMin[m_blockCount - 1] = t;
+	    if (rec.getDevice() != null)
+		m_devices.computeIfAbsent(rec.getDevice(), k -> new DeviceIndex()).add(t, lineStart);
+	}
+	return maxTime;
+    }
+
+    private void addBlock(long offset, long maxBefore) {
+	if (m_blockCount == m_blockOffset.length) {
+	    m_blockOffset = Arrays.copyOf(m_blockOffset, m_blockCount * 2);
+	    m_blockMaxBefore = Arrays.copyOf(m_blockMaxBefore, m_blockCount * 2);
+	    m_blockMin = Arrays.copyOf(m_blockMin, m_blockCount * 2);
+	}
+	m_blockOffset[m_blockCount] = offset;
+	m_blockMaxBefore[m_blockCount] = maxBefore;
+	m_blockMin[m_blockCount] = Long.MAX_VALUE;
+	m_blockCount++;
+    }
+
+    private void finish() {
+	m_blockSuffixMin = new long[m_blockCount + 1];
+	m_blockSuffixMin[m_blockCount] = Long.MAX_VALUE;
+	for (int i = m_blockCount - 1; i >= 0; i--)
+	    m_blockSuffixMin[i] = Math.min(m_blockMin[i], m_blockSuffixMin[i + 1]);
+    }
+
+    private void save(Path idx) throws IOException {
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(idx)))) {
+	    out.writeInt(kMagic);
+	    out.writeInt(kVersion);
+	    out.writeLong(m_logLength);
+	    out.writeLong(m_logModified);
+	    out.writeInt(m_blockCount);
+	    for (int i = 0; i < m_blockCount; i++) {
+		out.writeLong(m_blockOffset[i]);
+		out.writeLong(m_blockMaxBefore[i]);
+		out.writeLong(m_blockMin[i]);
+	    }
+	    out.writeInt(m_devices.size());
+	    for (Map.Entry<String, DeviceIndex> e : m_devices.entrySet()) {
+		DeviceIndex d = e.getValue();
+		out.writeUTF(e.getKey());
+		out.writeInt(d.m_count);
+		for (int i = 0; i < d.m_count; i++) {
+		    out.writeLong(d.m_times[i]);
+		    out.writeLong(d.m_offsets[i]);
+		}
+	    }
+	}
+    }
+
+    private boolean load(Path idx) throws IOException {
+	if (!Files.exists(idx))
+	    return false;
+	long length = Files.size(m_log);
+	long modified = Files.getLastModifiedTime(m_log).toMillis();
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(idx), 1 << 16))) {
+	    if (in.readInt() != kMagic || in.readInt() != kVersion)
+		return false;
+	    if (in.readLong() != length || in.readLong() != modified)
+		return false;
+	    m_logLength = length;
+	    m_logModified = modified;
+	    m_blockCount = in.readInt();
+	    m_blockOffset = new long[Math.max(m_blockCount, 1)];
+	    m_blockMaxBefore = new long[Math.max(m_blockCount, 1)];
+	    m_blockMin = new long[Math.max(m_blockCount, 1)];
+	    for (int i = 0; i < m_blockCount; i++) {
+		m_blockOffset[i] = in.readLong();
+		m_blockMaxBefore[i] = in.readLong();
+		m_blockMin[i] = in.readLong();
+	    }
+	    int devices = in.readInt();
+	    for (int i = 0; i < devices; i++) {
+		String name = in.readUTF();
+		DeviceIndex d = new DeviceIndex();
+		d.m_count = in.readInt();
+		d.m_times = new long[Math.max(d.m_count, 1)];
+		d.m_offsets = new long[Math.max(d.m_count, 1)];
+		for (int j = 0; j < d.m_count; j++) {
+		    d.m_times[j] = in.readLong();
+		    d.m_offsets[j] = in.readLong();
+		}
+		m_devices.put(name, d);
+	    }
+	} catch (IOException ioe) {
+	    m_devices.clear();
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * @return The keys of all devices with output records in the log.
+     */
+    public List<String> getDevices() {
+	return new ArrayList<>(m_devices.keySet());
+    }
+
+    /**
+     * Resolve a user supplied device name to index keys.  Accepts full
+     * keys ("motor:2040004", "solenoid:Solenoid[0,1]"), bare solenoid
+     * names, motor base ids ("0x2040004") and CAN device numbers ("0x4",
+     * "4"), which match every motor controller with that device number.
+     */
+    public List<String> resolveDevices(String name) {
+	List<String> result = new ArrayList<>();
+	if (m_devices.containsKey(name)) {
+	    result.add(name);
+	    return result;
+	}
+	String bare = name;
+	if (bare.startsWith(ActionLogRecord.kMotorPrefix))
+	    bare = bare.substring(ActionLogRecord.kMotorPrefix.length());
+	else if (bare.startsWith(ActionLogRecord.kSolenoidPrefix))
+	    bare = bare.substring(ActionLogRecord.kSolenoidPrefix.length());
+	long id = -1;
+	try {
+	    id = bare.startsWith("0x") || bare.startsWith("0X") ? Long.parseLong(bare.substring(2), 16)
+		    : Long.parseLong(bare, name.startsWith(ActionLogRecord.kMotorPrefix) ? 16 : 10);
+	} catch (NumberFormatException nfe) {
+	    // Not numeric, match by name.
+	}
+	for (String key : m_devices.keySet()) {
+	    if (key.startsWith(ActionLogRecord.kMotorPrefix)) {
+		if (id < 0)
+		    continue;
+		long baseId = Long.parseLong(key.substring(ActionLogRecord.kMotorPrefix.length()), 16);
+		if (baseId == id || (id < 0x40 && (baseId & 0x3f) == id))
+		    result.add(key);
+	    } else if (key.substring(ActionLogRecord.kSolenoidPrefix.length()).equals(bare)) {
+		result.add(key);
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * All output records of a device with t0 &lt;= time &lt;= t1 (seconds).
+     */
+    public List<String> deviceRecords(String device, double t0, double t1) throws IOException {
+	List<String> result = new ArrayList<>();
+	long lo = ActionLogRecord.toMicros(t0);
+	long hi = ActionLogRecord.toMicros(t1);
+	for (String key : resolveDevices(device)) {
+	    DeviceIndex d = m_devices.get(key);
+	    for (int i = d.lowerBound(lo); i < d.m_count && d.m_times[i] <= hi; i++)
+		result.add(readLine(d.m_offsets[i]));
+	}
+	return result;
+    }
+
+    /**
+     * The first output record of a device at or after fromTime (seconds)
+     * that satisfies the predicate, or null.
+     */
+    public String findFirst(String device, double fromTime, Predicate<ActionLogRecord> p) throws IOException {
+	ActionLogRecord rec = new ActionLogRecord();
+	String best = null;
+	long bestTime = Long.MAX_VALUE;
+	for (String key : resolveDevices(device)) {
+	    DeviceIndex d = m_devices.get(key);
+	    for (int i = d.lowerBound(ActionLogRecord.toMicros(fromTime)); i < d.m_count && d.m_times[i] < bestTime; i++) {
+		String line = readLine(d.m_offsets[i]);
+		if (rec.parse(line) && p.test(rec)) {
+		    best = line;
+		    bestTime = d.m_times[i];
+		    break;
+		}
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * All records, of any kind, with t0 &lt;= time &lt;= t1 (seconds).
+     */
+    public List<String> records(double t0, double t1) throws IOException {
+	List<String> result = new ArrayList<>();
+	long lo = ActionLogRecord.toMicros(t0);
+	long hi = ActionLogRecord.toMicros(t1);
+	// Last block before which every record is earlier than t0.
+	int first = 0;
+	int a = 0;
+	int b = m_blockCount - 1;
+	while (a <= b) {
+	    int mid = (a + b) >>> 1;
+	    if (m_blockMaxBefore[mid] < lo) {
+		first = mid;
+		a = mid + 1;
+	    } else {
+		b = mid - 1;
+	    }
+	}
+	if (m_blockCount == 0)
+	    return result;
+	ActionLogRecord rec = new ActionLogRecord();
+	ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+	byte[] line = new byte[256];
+	int len = 0;
+	long pos = m_blockOffset[first];
+	int block = first;
+	long lineNo = 0;
+	while (pos < m_logLength) {
+	    buf.clear();
+	    int n = m_channel.read(buf, pos);
+	    if (n <= 0)
+		break;
+	    for (int i = 0; i < n; i++) {
+		byte c = buf.get(i);
+		if (c != '\n') {
+		    if (len == line.length)
+			line = Arrays.copyOf(line, len * 2);
+		    line[len++] = c;
+		    continue;
+		}
+		if (lineNo % kBlockLines == 0) {
+		    // Nothing from this block on can be in range.
+		    if (m_blockSuffixMin[block] > hi)
+			return result;
+		    block++;
+		}
+		lineNo++;
+		String s = new String(line, 0, len, StandardCharsets.UTF_8);
+		len = 0;
+		if (rec.parse(s) && rec.getTimeMicros() >= lo && rec.getTimeMicros() <= hi)
+		    result.add(s);
+	    }
+	    pos += n;
+	}
+	String s = new String(line, 0, len, StandardCharsets.UTF_8);
+	if (len > 0 && rec.parse(s) && rec.getTimeMicros() >= lo && rec.getTimeMicros() <= hi)
+	    result.add(s);
+	return result;
+    }
+
+    private String readLine(long offset) throws IOException {
+	ByteBuffer buf = ByteBuffer.allocate(256);
+	byte[] line = new byte[256];
+	int len = 0;
+	long pos = offset;
+	while (true) {
+	    buf.clear();
+	    int n = m_channel.read(buf, pos);
+	    if (n <= 0)
+		break;
+	    for (int i = 0; i < n; i++) {
+		byte c = buf.get(i);
+		if (c == '\n')
+		    return new String(line, 0, len, StandardCharsets.UTF_8);
+		if (len == line.length)
+		    line = Arrays.copyOf(line, len * 2);
+		line[len++] = c;
+	    }
+	    pos += n;
+	}
+	return new String(line, 0, len, StandardCharsets.UTF_8);
+    }
+}
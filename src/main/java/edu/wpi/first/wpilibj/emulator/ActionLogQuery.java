@@ -0,0 +1,98 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Command line query tool for emulator action logs.
+ *
+ * <pre>
+ * java -cp robot_sim.jar edu.wpi.first.wpilibj.emulator.ActionLogQuery &lt;log&gt; &lt;command&gt;
+ *   devices                   list the devices in the log
+ *   range &lt;t0&gt; &lt;t1&gt;           every record in [t0,t1] seconds
+ *   device &lt;dev&gt; &lt;t0&gt; &lt;t1&gt;    records of one device in [t0,t1]
+ *   first &lt;dev&gt; &lt;value&gt; [t]   first record of dev at or after t with
+ *                             demand0 == value, or on/off for solenoids
+ *   reindex                   rebuild the index file
+ * </pre>
+ */
+public class ActionLogQuery {
+    private static void usage() {
+	System.err.println("Usage: ActionLogQuery <log> devices");
+	System.err.println("       ActionLogQuery <log> range <t0> <t1>");
+	System.err.println("       ActionLogQuery <log> device <dev> <t0> <t1>");
+	System.err.println("       ActionLogQuery <log> first <dev> <value> [<from>]");
+	System.err.println("       ActionLogQuery <log> reindex");
+	System.exit(1);
+    }
+
+    private static Predicate<ActionLogRecord> valueMatcher(String value) {
+	if (value.equals("on") || value.equals("off")) {
+	    boolean on = value.equals("on");
+	    return r -> r.getKind() == ActionLogRecord.Kind.kSolenoid && r.isOn() == on;
+	}
+	double v = Double.parseDouble(value);
+	return r -> r.getKind() == ActionLogRecord.Kind.kMotor && Math.abs(r.getDemand0() - v) < 1e-6;
+    }
+
+    public static void main(String[] args) throws IOException {
+	if (args.length < 2)
+	    usage();
+	Path log = Paths.get(args[0]);
+	String cmd = args[1];
+	long start = System.nanoTime();
+
+	if (cmd.equals("reindex")) {
+	    ActionLogIndex.rebuild(log);
+	    System.err.printf("indexed in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+	    return;
+	}
+
+	try (ActionLogIndex index = ActionLogIndex.open(log)) {
+	    List<String> lines = null;
+	    try {
+		switch (cmd) {
+		case "devices":
+		    lines = index.getDevices();
+		    break;
+		case "range":
+		    if (args.length != 4)
+			usage();
+		    lines = index.records(Double.parseDouble(args[2]), Double.parseDouble(args[3]));
+		    break;
+		case "device":
+		    if (args.length != 5)
+			usage();
+		    if (index.resolveDevices(args[2]).isEmpty()) {
+			System.err.println("No such device: " + args[2]);
+			System.exit(1);
+		    }
+		    lines = index.deviceRecords(args[2], Double.parseDouble(args[3]), Double.parseDouble(args[4]));
+		    break;
+		case "first":
+		    if (args.length != 4 && args.length != 5)
+			usage();
+		    double from = args.length == 5 ? Double.parseDouble(args[4]) : 0;
+		    String line = index.findFirst(args[2], from, valueMatcher(args[3]));
+		    if (line == null) {
+			System.err.println("Not found");
+			System.exit(1);
+		    }
+		    lines = List.of(line);
+		    break;
+		default:
+		    usage();
+		}
+	    } catch (NumberFormatException nfe) {
+		System.err.println("Invalid number: " + nfe.getMessage());
+		System.exit(1);
+	    }
+	    for (String l : lines)
+		System.out.println(l);
+	}
+	System.err.printf("query took %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,172 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * One parsed line of the emulator action log (robot_action.log).
+ *
+ * <p>The record is mutable so that log scanners can reuse a single
+ * instance for every line instead of allocating one per line.
+ */
+public class ActionLogRecord {
+    public enum Kind {
+	kMotor, kSolenoid, kCommand, kNotifier, kOther
+    }
+
+    public static final String kMotorPrefix = "motor:";
+    public static final String kSolenoidPrefix = "solenoid:";
+
+    private long m_timeMicros;
+    private Kind m_kind = Kind.kOther;
+    private String m_line;
+    private String m_device;
+    private int m_baseId;
+    private String m_controlMode;
+    private double m_demand0;
+    private String m_demandType;
+    private double m_demand1;
+    private boolean m_on;
+    private String m_text;
+
+    /**
+     * Parse one log line into this record.
+     *
+     * @return false if the line does not start with a timestamp.
+     */
+    public boolean parse(String line) {
+	m_line = line;
+	m_kind = Kind.kOther;
+	m_device = null;
+	m_text = null;
+	int colon = line.indexOf(": ");
+	if (colon <= 0)
+	    return false;
+	int dot = line.indexOf('.');
+	if (dot <= 0 || dot > colon)
+	    return false;
+	try {
+	    long s = Long.parseLong(line, 0, dot, 10);
+	    long f = Long.parseLong(line, dot + 1, colon, 10);
+	    m_timeMicros = s * 1_000_000 + f;
+	} catch (NumberFormatException nfe) {
+	    return false;
+	}
+	int body = colon + 2;
+	if (line.startsWith("Command <", body)) {
+	    m_kind = Kind.kCommand;
+	    m_text = line.substring(body + 9, Math.max(body + 9, line.length() - 1));
+	    return true;
+	}
+	int idx;
+	if ((idx = line.indexOf(") Motor: ", body)) >= 0) {
+	    return parseMotor(line, idx + 9);
+	}
+	if ((idx = line.indexOf(")  Solenoid: ", body)) >= 0) {
+	    return parseSolenoid(line, idx + 13);
+	}
+	if ((idx = line.indexOf(") Notifier: ", body)) >= 0) {
+	    m_kind = Kind.kNotifier;
+	    m_text = line.substring(idx + 12);
+	    return true;
+	}
+	m_text = line.substring(body);
+	return true;
+    }
+
+    // Format: "<hexid>: (<mode>) <demand0>, (<type>) <demand1>"
+    private boolean parseMotor(String line, int start) {
+	try {
+	    int c = line.indexOf(": (", start);
+	    m_baseId = Integer.parseUnsignedInt(line, start, c, 16);
+	    int p = line.indexOf(") ", c + 3);
+	    m_controlMode = line.substring(c + 3, p);
+	    int comma = line.indexOf(", (", p + 2);
+	    m_demand0 = Double.parseDouble(line.substring(p + 2, comma));
+	    int p2 = line.indexOf(") ", comma + 3);
+	    m_demandType = line.substring(comma + 3, p2);
+	    m_demand1 = Double.parseDouble(line.substring(p2 + 2));
+	} catch (RuntimeException re) {
+	    m_text = line;
+	    return true;
+	}
+	m_kind = Kind.kMotor;
+	m_device = kMotorPrefix + Integer.toHexString(m_baseId);
+	m_text = line.substring(line.indexOf(": (", start) + 2);
+	return true;
+    }
+
+    // Format: "<name>: on|off"
+    private boolean parseSolenoid(String line, int start) {
+	int c = line.lastIndexOf(": ");
+	if (c < start) {
+	    m_text = line;
+	    return true;
+	}
+	m_kind = Kind.kSolenoid;
+	m_device = kSolenoidPrefix + line.substring(start, c);
+	m_text = line.substring(c + 2);
+	m_on = m_text.equals("on");
+	return true;
+    }
+
+    public long getTimeMicros() {
+	return m_timeMicros;
+    }
+
+    public double getTime() {
+	return m_timeMicros / 1e6;
+    }
+
+    public Kind getKind() {
+	return m_kind;
+    }
+
+    /**
+     * The device key: "motor:&lt;hex base id&gt;" or "solenoid:&lt;name&gt;",
+     * null for records that are not device outputs.
+     */
+    public String getDevice() {
+	return m_device;
+    }
+
+    public int getBaseId() {
+	return m_baseId;
+    }
+
+    public String getControlMode() {
+	return m_controlMode;
+    }
+
+    public double getDemand0() {
+	return m_demand0;
+    }
+
+    public String getDemandType() {
+	return m_demandType;
+    }
+
+    public double getDemand1() {
+	return m_demand1;
+    }
+
+    public boolean isOn() {
+	return m_on;
+    }
+
+    /**
+     * The value portion of the record: "on"/"off" for solenoids, the
+     * demand text for motors, the command text for commands.
+     */
+    public String getText() {
+	return m_text;
+    }
+
+    public String getLine() {
+	return m_line;
+    }
+
+    /**
+     * Convert a time in seconds, as printed in the log, to microseconds.
+     */
+    public static long toMicros(double seconds) {
+	return Math.round(seconds * 1e6);
+    }
+}
@@ -0,0 +1,314 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rolling metrics over the actuator outputs, computed as the events
+ * arrive on the {@link DeviceEventBus}.
+ *
+ * <p>For each device a fixed set of accumulators is kept, so memory does
+ * not grow with the length of the run:
+ * <ul>
+ * <li>rms: time weighted RMS of the duty cycle (motors in percent output,
+ * SPARK MAX in duty cycle, PWM speed controllers and groups).
+ * <li>reversals: direction reversals of the duty cycle per second.
+ * <li>saturated: seconds spent at a duty cycle of +/-1.0.
+ * <li>toggles: number of solenoid state changes.
+ * <li>latency: seconds from the last enable until the device first
+ * became active (non-zero duty cycle, solenoid change).
+ * </ul>
+ *
+ * <p>Limits on the metrics are checked by {@link #check} and the first
+ * violation is returned, so that a scenario can fail as soon as it goes
+ * out of bounds.
+ */
+public class ActuatorMetrics implements DeviceEventListener {
+    public static final String[] kMetrics = { "rms", "reversals", "saturated", "toggles", "latency" };
+    public static final int kRMS = 0;
+    public static final int kReversals = 1;
+    public static final int kSaturated = 2;
+    public static final int kToggles = 3;
+    public static final int kLatency = 4;
+
+    // Below this the duty cycle counts as idle, and does not have a
+    // direction.
+    static final double kIdle = 1e-3;
+    static final double kSaturation = 1.0 - 1e-6;
+
+    private static final byte kNone = 0;
+    private static final byte kDuty = 1;
+    private static final byte kSolenoid = 2;
+
+    // A limit on one metric of a device, or of every device ("*").
+    private static class Limit {
+	final String m_device;
+	final int m_metric;
+	final boolean m_max;
+	final double m_value;
+
+	Limit(String device, int metric, boolean max, double value) {
+	    m_device = device;
+	    m_metric = metric;
+	    m_max = max;
+	    m_value = value;
+	}
+    }
+
+    private final DeviceEventBus m_bus;
+    private final List<Limit> m_limits = new ArrayList<>();
+
+    // Per bus device accumulators.
+    private int m_count;
+    private byte[] m_type = new byte[16];
+    private long[] m_first = new long[16];
+    private long[] m_last = new long[16];
+    private double[] m_duty = new double[16];
+    private long[] m_dutyTime = new long[16];
+    private double[] m_sumSquares = new double[16];
+    private long[] m_saturated = new long[16];
+    private byte[] m_direction = new byte[16];
+    private long[] m_reversals = new long[16];
+    private boolean[] m_on = new boolean[16];
+    private long[] m_toggles = new long[16];
+    private long[] m_activeAt = new long[16];
+
+    private boolean m_enabled;
+    private long m_enabledAt = -1;
+    private long m_now;
+
+    public ActuatorMetrics(DeviceEventBus bus) {
+	m_bus = bus;
+    }
+
+    /**
+     * Add a limit.
+     *
+     * @param device "type:name" of the device as registered on the bus
+     *        (e.g. "motor:2040003", "solenoid:Solenoid[0,1]"),
+     *        "talonsrx:n" or "victorspx:n" for the CTRE motor controller
+     *        with CAN device number n, or "*".
+     * @param metric One of {@link #kMetrics}.
+     * @param max true for an upper limit, false for a lower one.
+     * @throws IllegalArgumentException for an unknown metric.
+     */
+    public synchronized void addLimit(String device, String metric, boolean max, double value) {
+	int m = Arrays.asList(kMetrics).indexOf(metric);
+	if (m < 0)
+	    throw new IllegalArgumentException("Unknown metric '" + metric + "'");
+	m_limits.add(new Limit(device, m, max, value));
+    }
+
+    public synchronized boolean hasLimits() {
+	return !m_limits.isEmpty();
+    }
+
+    private void grow(int dev) {
+	if (dev < m_type.length)
+	    return;
+	int n = Math.max(dev + 1, m_type.length * 2);
+	m_type = Arrays.copyOf(m_type, n);
+	m_first = Arrays.copyOf(m_first, n);
+	m_last = Arrays.copyOf(m_last, n);
+	m_duty = Arrays.copyOf(m_duty, n);
+	m_dutyTime = Arrays.copyOf(m_dutyTime, n);
+	m_sumSquares = Arrays.copyOf(m_sumSquares, n);
+	m_saturated = Arrays.copyOf(m_saturated, n);
+	m_direction = Arrays.copyOf(m_direction, n);
+	m_reversals = Arrays.copyOf(m_reversals, n);
+	m_on = Arrays.copyOf(m_on, n);
+	m_toggles = Arrays.copyOf(m_toggles, n);
+	m_activeAt = Arrays.copyOf(m_activeAt, n);
+    }
+
+    private void start(int dev, byte type, long now) {
+	grow(dev);
+	if (m_type[dev] != kNone)
+	    return;
+	m_type[dev] = type;
+	m_first[dev] = now;
+	m_last[dev] = now;
+	m_duty[dev] = Double.NaN;
+	m_activeAt[dev] = -1;
+	m_count = Math.max(m_count, dev + 1);
+    }
+
+    // Account for the time the current duty cycle was held, up to now.
+    private void accumulate(int dev, long now) {
+	long dt = now - m_last[dev];
+	double duty = m_duty[dev];
+	if (dt > 0 && !Double.isNaN(duty)) {
+	    m_dutyTime[dev] += dt;
+	    m_sumSquares[dev] += duty * duty * dt;
+	    if (Math.abs(duty) >= kSaturation)
+		m_saturated[dev] += dt;
+	}
+	m_last[dev] = now;
+    }
+
+    private void active(int dev, long now) {
+	if (m_enabled && m_activeAt[dev] < 0)
+	    m_activeAt[dev] = now;
+    }
+
+    /**
+     * A new duty cycle, NaN if the device is not in a duty cycle mode.
+     */
+    private void duty(int dev, long now, double duty) {
+	start(dev, kDuty, now);
+	accumulate(dev, now);
+	m_duty[dev] = duty;
+	if (Double.isNaN(duty))
+	    return;
+	if (Math.abs(duty) > kIdle) {
+	    byte direction = (byte) (duty > 0 ? 1 : -1);
+	    if (m_direction[dev] != 0 && m_direction[dev] != direction)
+		m_reversals[dev]++;
+	    m_direction[dev] = direction;
+	    active(dev, now);
+	}
+    }
+
+    private void solenoid(int dev, long now, boolean on) {
+	if (dev < m_type.length && m_type[dev] == kSolenoid) {
+	    if (m_on[dev] == on)
+		return;
+	    m_toggles[dev]++;
+	    active(dev, now);
+	} else {
+	    start(dev, kSolenoid, now);
+	}
+	m_on[dev] = on;
+    }
+
+    private void mode(long now, boolean enabled) {
+	if (enabled && !m_enabled) {
+	    m_enabledAt = now;
+	    for (int dev = 0; dev < m_count; dev++)
+		m_activeAt[dev] = -1;
+	}
+	m_enabled = enabled;
+    }
+
+    @Override
+    public synchronized void onEvents(DeviceEventBatch b) {
+	for (int i = 0; i < b.size(); i++) {
+	    long now = b.getTime(i);
+	    int dev = b.getDevice(i);
+	    m_now = now;
+	    switch (b.getKind(i)) {
+	    case kMotorSet:
+		// Only percent output (ordinal 0) demands are duty cycles.
+		duty(dev, now, b.getInt0(i) == 0 ? b.getDouble0(i) : Double.NaN);
+		break;
+	    case kSparkMaxSetpoint:
+		// Control type 0 is kDutyCycle.
+		duty(dev, now, b.getInt0(i) == 0 ? b.getDouble0(i) : Double.NaN);
+		break;
+	    case kPWMSpeed:
+	    case kGroupSet:
+		duty(dev, now, b.getDouble0(i));
+		break;
+	    case kPWMDisabled:
+		duty(dev, now, 0);
+		break;
+	    case kPWMPosition:
+	    case kPWMRaw:
+		duty(dev, now, Double.NaN);
+		break;
+	    case kSolenoidSet:
+		solenoid(dev, now, b.getInt0(i) != 0);
+		break;
+	    case kMode:
+		mode(now, b.getInt0(i) != 0);
+		break;
+	    default:
+		break;
+	    }
+	}
+    }
+
+    // Compute one metric of a device, as of the last event seen.
+    private double metric(int dev, int metric) {
+	if (m_type[dev] == kDuty)
+	    accumulate(dev, m_now);
+	switch (metric) {
+	case kRMS:
+	    return m_dutyTime[dev] == 0 ? 0 : Math.sqrt(m_sumSquares[dev] / m_dutyTime[dev]);
+	case kReversals: {
+	    long t = m_now - m_first[dev];
+	    return t == 0 ? 0 : m_reversals[dev] * 1e6 / t;
+	}
+	case kSaturated:
+	    return m_saturated[dev] / 1e6;
+	case kToggles:
+	    return m_toggles[dev];
+	case kLatency:
+	    return m_activeAt[dev] < 0 || m_enabledAt < 0 ? Double.NaN : (m_activeAt[dev] - m_enabledAt) / 1e6;
+	default:
+	    return Double.NaN;
+	}
+    }
+
+    private String deviceKey(int dev) {
+	return m_bus.getDeviceType(dev) + ":" + m_bus.getDeviceName(dev);
+    }
+
+    private boolean matches(Limit l, int dev, String key) {
+	if (l.m_device.equals("*") || l.m_device.equals(key))
+	    return true;
+	// CTRE devices are registered by base id, also accept the
+	// controller type and CAN device number.
+	if (!m_bus.getDeviceType(dev).equals("motor"))
+	    return false;
+	int baseId = m_bus.getDeviceId(dev);
+	String type = (baseId & ~0x3f) == 0x01040000 ? "victorspx" : "talonsrx";
+	return l.m_device.equals(type + ":" + (baseId & 0x3f));
+    }
+
+    /**
+     * Check the limits.
+     *
+     * @return A description of the first limit exceeded, null if none.
+     */
+    public synchronized String check() {
+	for (Limit l : m_limits) {
+	    for (int dev = 0; dev < m_count; dev++) {
+		if (m_type[dev] == kNone)
+		    continue;
+		String key = deviceKey(dev);
+		if (!matches(l, dev, key))
+		    continue;
+		if (m_type[dev] == kSolenoid ? l.m_metric != kToggles && l.m_metric != kLatency
+			: l.m_metric == kToggles)
+		    continue;
+		double v = metric(dev, l.m_metric);
+		if (Double.isNaN(v))
+		    continue;
+		if (l.m_max ? v > l.m_value : v < l.m_value)
+		    return String.format("%s %s %g is %s the limit %g", key, kMetrics[l.m_metric], v,
+			    l.m_max ? "above" : "below", l.m_value);
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Print the current metrics, one line per device.
+     */
+    public synchronized void report(PrintStream out) {
+	String time = String.format("%d.%06d", m_now / 1_000_000, m_now % 1_000_000);
+	for (int dev = 0; dev < m_count; dev++) {
+	    if (m_type[dev] == kDuty) {
+		out.printf("%s: %s rms %.4f reversals %.3f/s saturated %.3fs latency %.3fs%n", time, deviceKey(dev),
+			metric(dev, kRMS), metric(dev, kReversals), metric(dev, kSaturated), metric(dev, kLatency));
+	    } else if (m_type[dev] == kSolenoid) {
+		out.printf("%s: %s toggles %d latency %.3fs%n", time, deviceKey(dev), m_toggles[dev],
+			metric(dev, kLatency));
+	    }
+	}
+	out.flush();
+    }
+}
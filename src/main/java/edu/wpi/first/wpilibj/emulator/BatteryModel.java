@@ -0,0 +1,86 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * The robot battery: an open circuit voltage that falls with the state of
+ * charge, behind an internal resistance that includes the main breaker
+ * and wiring.
+ *
+ * <p>The model is set by the command file
+ * <pre>
+ *   battery.model &lt;voltage&gt; &lt;resistance&gt; [&lt;capacity&gt; [&lt;charge&gt;]]
+ * </pre>
+ * with the open circuit voltage when full in volts, the resistance in
+ * ohms, the capacity in amp hours and the initial state of charge from 0
+ * to 1.  The open circuit voltage falls linearly by 10% from full to
+ * empty.
+ */
+class BatteryModel {
+    static final double kDefaultVoltage = 12.7;
+    static final double kDefaultResistance = 0.02;
+    static final double kDefaultCapacity = 18;
+
+    private double m_voltage = kDefaultVoltage;
+    private double m_resistance = kDefaultResistance;
+    private double m_capacity = kDefaultCapacity * 3600;
+    private double m_charge = 1;
+
+    /**
+     * @return The open circuit voltage.
+     */
+    double getOpenCircuitVoltage() {
+	return m_voltage * (0.9 + 0.1 * m_charge);
+    }
+
+    /**
+     * @return The state of charge, from 0 to 1.
+     */
+    double getCharge() {
+	return m_charge;
+    }
+
+    /**
+     * Solve for the terminal voltage under a load that draws
+     * conductance * V - backCurrent amps at terminal voltage V.
+     */
+    double getVoltage(double conductance, double backCurrent) {
+	return (getOpenCircuitVoltage() + m_resistance * backCurrent) / (1 + m_resistance * conductance);
+    }
+
+    /**
+     * Draw a current for some time, negative to charge.
+     */
+    void discharge(double amps, double seconds) {
+	m_charge = Math.max(0, Math.min(1, m_charge - amps * seconds / m_capacity));
+    }
+
+    /**
+     * Handle the battery.model command.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    boolean processCommand(String[] cmd) {
+	if (!cmd[0].equalsIgnoreCase("battery.model"))
+	    return false;
+	if (cmd.length < 3 || cmd.length > 5)
+	    throw new IllegalArgumentException("Invalid number of arguments to battery.model");
+	double voltage, resistance, capacity = kDefaultCapacity, charge = m_charge;
+	try {
+	    voltage = Double.parseDouble(cmd[1]);
+	    resistance = Double.parseDouble(cmd[2]);
+	    if (cmd.length > 3)
+		capacity = Double.parseDouble(cmd[3]);
+	    if (cmd.length > 4)
+		charge = Double.parseDouble(cmd[4]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	if (!(voltage > 0) || !(resistance >= 0) || !(capacity > 0) || !(charge >= 0 && charge <= 1))
+	    throw new IllegalArgumentException("Invalid battery.model values");
+	m_voltage = voltage;
+	m_resistance = resistance;
+	m_capacity = capacity * 3600;
+	m_charge = charge;
+	return true;
+    }
+}
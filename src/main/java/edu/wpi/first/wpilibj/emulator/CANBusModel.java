@@ -0,0 +1,213 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * The CAN bus of the robot, at {@link #kBitRate} bits per second.
+ *
+ * <p>The motor controllers add their periodic frames to the bus: the
+ * status frames the devices send, and the control frames the roboRIO
+ * sends them, each with its payload and period.  On every
+ * {@link MotorPhysics#kTickMicros} tick the frames that are due are sent,
+ * and a status frame calls the {@link Sender} of its device to copy the
+ * values it carries.  The getters of the devices return these copies, so
+ * a sensor is only as fresh as its last status frame.
+ *
+ * <p>A frame takes 67 bits of extended frame format and interframe space,
+ * the bits of its payload, and the stuff bits of the worst case, 160 bits
+ * in all for 8 bytes.  The utilization of the bus is the time its frames
+ * take per second.  Over 100% the bus cannot carry every frame in time,
+ * and all the periods are stretched by the utilization.  The utilization
+ * and the frames sent are reported at powerdown, see {@link #report}.
+ *
+ * <p>The bus is never idle once a frame exists, so the physics then runs
+ * every tick.
+ */
+public class CANBusModel implements MotorPhysics.Controller {
+    public static final int kBitRate = 1000000;
+
+    /**
+     * A device that sends status frames.
+     */
+    public interface Sender {
+	/**
+	 * Copy the values carried by a status frame, on the tick it is sent.
+	 * Called with the physics lock held.
+	 *
+	 * @param handle The handle given to {@link CANBusModel#addFrame}.
+	 * @param frame The frame given to {@link CANBusModel#addFrame}.
+	 */
+	void send(int handle, int frame);
+    }
+
+    private static final CANBusModel instance = new CANBusModel();
+
+    private final MotorPhysics m_physics = MotorPhysics.getInstance();
+
+    // Per frame.
+    private int m_count;
+    private Sender[] m_sender = new Sender[16];
+    private int[] m_handle = new int[16];
+    private int[] m_frame = new int[16];
+    private int[] m_bits = new int[16];
+    private int[] m_periodMs = new int[16];
+    private long[] m_next = new long[16];
+
+    private double m_utilization;
+    private double m_peakUtilization;
+    private long m_sent;
+    private long m_first = -1;
+    private long m_last;
+
+    public static CANBusModel getInstance() {
+	return instance;
+    }
+
+    private CANBusModel() {
+	m_physics.addController(this);
+    }
+
+    /**
+     * @return The length of a frame on the bus, bits.
+     */
+    public static int frameBits(int bytes) {
+	// The stuffing covers the 39 bits from the start of frame to the
+	// data length code, the data and the 15 bit CRC.
+	int stuffed = 39 + 8 * bytes + 15;
+	return 67 + 8 * bytes + (stuffed - 1) / 4;
+    }
+
+    /**
+     * Add a periodic frame to the bus.  A status frame is sent right away.
+     *
+     * @param sender The device that sends a status frame, null for a
+     *        control frame.
+     * @param handle Handle of the device, given back to the sender.
+     * @param frame Frame of the device, given back to the sender.
+     * @param bytes Length of the payload, 0 to 8.
+     * @param periodMs Period of the frame, 0 for a frame not sent.
+     * @return The index of the frame.
+     */
+    public int addFrame(Sender sender, int handle, int frame, int bytes, int periodMs) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    int f = m_count;
+	    if (f == m_sender.length) {
+		int n = f * 2;
+		m_sender = Arrays.copyOf(m_sender, n);
+		m_handle = Arrays.copyOf(m_handle, n);
+		m_frame = Arrays.copyOf(m_frame, n);
+		m_bits = Arrays.copyOf(m_bits, n);
+		m_periodMs = Arrays.copyOf(m_periodMs, n);
+		m_next = Arrays.copyOf(m_next, n);
+	    }
+	    m_count = f + 1;
+	    m_sender[f] = sender;
+	    m_handle[f] = handle;
+	    m_frame[f] = frame;
+	    m_bits[f] = frameBits(bytes);
+	    m_periodMs[f] = Math.max(0, periodMs);
+	    long now = RobotController.getFPGATime();
+	    if (m_first < 0)
+		m_first = now;
+	    updateUtilization();
+	    if (m_periodMs[f] > 0)
+		send(f, now);
+	    m_next[f] = now + stretchedPeriod(f);
+	    return f;
+	}
+    }
+
+    /**
+     * Change the period of a frame.  A frame made faster is sent no later
+     * than one new period from now.
+     *
+     * @param periodMs 0 for a frame not sent.
+     */
+    public void setPeriod(int f, int periodMs) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    long now = RobotController.getFPGATime();
+	    if (m_periodMs[f] == 0)
+		m_next[f] = now;
+	    m_periodMs[f] = Math.max(0, periodMs);
+	    m_next[f] = Math.min(m_next[f], now + stretchedPeriod(f));
+	    updateUtilization();
+	}
+    }
+
+    /**
+     * @return The period of a frame, ms.
+     */
+    public int getPeriod(int f) {
+	synchronized (m_physics) {
+	    return m_periodMs[f];
+	}
+    }
+
+    /**
+     * @return The utilization of the bus by the periodic frames, 1 at
+     *         100%.
+     */
+    public double getUtilization() {
+	synchronized (m_physics) {
+	    return m_utilization;
+	}
+    }
+
+    private void updateUtilization() {
+	double bits = 0;
+	for (int f = 0; f < m_count; f++) {
+	    if (m_periodMs[f] > 0)
+		bits += m_bits[f] * 1000. / m_periodMs[f];
+	}
+	double utilization = bits / kBitRate;
+	if (utilization > 1 && m_utilization <= 1)
+	    System.err.printf("CAN bus saturated at %.0f%% utilization, the frames are late%n", utilization * 100);
+	m_utilization = utilization;
+	m_peakUtilization = Math.max(m_peakUtilization, utilization);
+    }
+
+    // The period of a frame, micros, on a saturated bus.
+    private long stretchedPeriod(int f) {
+	return Math.round(m_periodMs[f] * 1000. * Math.max(1, m_utilization));
+    }
+
+    private void send(int f, long now) {
+	if (m_sender[f] != null)
+	    m_sender[f].send(m_handle[f], m_frame[f]);
+	m_sent++;
+	m_last = now;
+    }
+
+    @Override
+    public boolean isActive() {
+	return m_count > 0;
+    }
+
+    @Override
+    public void update(long now) {
+	for (int f = 0; f < m_count; f++) {
+	    if (m_periodMs[f] == 0 || now < m_next[f])
+		continue;
+	    send(f, now);
+	    m_next[f] = Math.max(m_next[f] + stretchedPeriod(f), now + 1);
+	}
+    }
+
+    /**
+     * Print the utilization of the bus and the rate of the frames sent.
+     */
+    public void report(PrintStream out) {
+	synchronized (m_physics) {
+	    if (m_count == 0)
+		return;
+	    double seconds = (m_last - m_first) / 1e6;
+	    out.printf("CAN bus: %.1f%% utilization, %.1f%% peak, %d frames, %.0f frames per second%n",
+		       m_utilization * 100, m_peakUtilization * 100, m_sent, seconds > 0 ? m_sent / seconds : 0);
+	}
+    }
+}
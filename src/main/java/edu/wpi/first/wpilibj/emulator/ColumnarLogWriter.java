@@ -0,0 +1,250 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes actuator timelines as a compact binary columnar file.
+ *
+ * <p>Samples are buffered per device and written out in row groups of
+ * at most {@link #kRowGroupRows} samples, so memory use stays bounded
+ * for long runs and a crashed run still leaves every completed row
+ * group readable.  All values are little-endian.
+ *
+ * <pre>
+ * file      := "RCOL" version:i32 rowgroup* footer footerLength:i32 "RCOL"
+ * rowgroup  := chunkCount:i32 chunk*
+ * chunk     := device:i32 rows:i32
+ *              time:i64[rows]        FPGA time, microseconds
+ *              demand0:f64[rows]     motor demand0, solenoid 0/1
+ *              demand1:f64[rows]
+ *              mode:u8[rows]         ControlMode ordinal
+ *              demandType:u8[rows]   DemandType ordinal
+ *              state:u8[rows]        solenoid state
+ * footer    := deviceCount:i32 (name:str kind:u8)*
+ *              modeCount:i32 str*  demandTypeCount:i32 str*
+ *              rowGroupCount:i32 offset:i64[rowGroupCount] totalRows:i64
+ * str       := length:u16 utf8-bytes
+ * </pre>
+ * Each column of a chunk is contiguous, so a reader can map it directly
+ * into an array (numpy.frombuffer, for instance).
+ */
+public class ColumnarLogWriter {
+    public static final int kVersion = 1;
+    public static final int kRowGroupRows = 65536;
+    public static final byte kKindMotor = 0;
+    public static final byte kKindSolenoid = 1;
+    private static final byte[] kMagic = "RCOL".getBytes(StandardCharsets.US_ASCII);
+
+    private static class Column {
+	long[] m_time = new long[64];
+	double[] m_demand0 = new double[64];
+	double[] m_demand1 = new double[64];
+	byte[] m_mode = new byte[64];
+	byte[] m_demandType = new byte[64];
+	byte[] m_state = new byte[64];
+	int m_rows;
+
+	void grow() {
+	    int n = m_time.length * 2;
+	    m_time = Arrays.copyOf(m_time, n);
+	    m_demand0 = Arrays.copyOf(m_demand0, n);
+	    m_demand1 = Arrays.copyOf(m_demand1, n);
+	    m_mode = Arrays.copyOf(m_mode, n);
+	    m_demandType = Arrays.copyOf(m_demandType, n);
+	    m_state = Arrays.copyOf(m_state, n);
+	}
+    }
+
+    private final FileChannel m_channel;
+    private final String[] m_modeNames;
+    private final String[] m_demandTypeNames;
+    private final List<String> m_deviceNames = new ArrayList<>();
+    private final List<Byte> m_deviceKinds = new ArrayList<>();
+    private final List<Column> m_columns = new ArrayList<>();
+    private long[] m_rowGroupOffsets = new long[16];
+    private int m_rowGroupCount;
+    private int m_bufferedRows;
+    private long m_totalRows;
+    private boolean m_closed;
+
+    /**
+     * @param file The file to create.
+     * @param modeNames Control mode names, indexed by the mode column.
+     * @param demandTypeNames Demand type names, indexed by the demandType column.
+     */
+    public ColumnarLogWriter(Path file, String[] modeNames, String[] demandTypeNames) throws IOException {
+	m_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING);
+	m_modeNames = modeNames.clone();
+	m_demandTypeNames = demandTypeNames.clone();
+	ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+	header.put(kMagic).putInt(kVersion).flip();
+	writeFully(header);
+    }
+
+    /**
+     * Register a device.
+     *
+     * @return The device number used by the add methods.
+     */
+    public synchronized int addDevice(String name, byte kind) {
+	m_deviceNames.add(name);
+	m_deviceKinds.add(kind);
+	m_columns.add(new Column());
+	return m_columns.size() - 1;
+    }
+
+    public synchronized void addMotorSample(int device, long time, int mode, double demand0,
+	    int demandType, double demand1) {
+	Column c = append(device, time);
+	if (c == null)
+	    return;
+	int i = c.m_rows++;
+	c.m_demand0[i] = demand0;
+	c.m_demand1[i] = demand1;
+	c.m_mode[i] = (byte) mode;
+	c.m_demandType[i] = (byte) demandType;
+	c.m_state[i] = 0;
+	rowAdded();
+    }
+
+    public synchronized void addSolenoidSample(int device, long time, boolean on) {
+	Column c = append(device, time);
+	if (c == null)
+	    return;
+	int i = c.m_rows++;
+	c.m_demand0[i] = on ? 1 : 0;
+	c.m_demand1[i] = 0;
+	c.m_mode[i] = 0;
+	c.m_demandType[i] = 0;
+	c.m_state[i] = (byte) (on ? 1 : 0);
+	rowAdded();
+    }
+
+    private Column append(int device, long time) {
+	if (m_closed)
+	    return null;
+	Column c = m_columns.get(device);
+	if (c.m_rows == c.m_time.length)
+	    c.grow();
+	c.m_time[c.m_rows] = time;
+	return c;
+    }
+
+    private void rowAdded() {
+	m_totalRows++;
+	if (++m_bufferedRows >= kRowGroupRows) {
+	    try {
+		writeRowGroup();
+	    } catch (IOException ioe) {
+		ioe.printStackTrace();
+		m_closed = true;
+	    }
+	}
+    }
+
+    private void writeRowGroup() throws IOException {
+	if (m_bufferedRows == 0)
+	    return;
+	int chunks = 0;
+	long size = 4;
+	for (Column c : m_columns) {
+	    if (c.m_rows == 0)
+		continue;
+	    chunks++;
+	    size += 8 + (long) c.m_rows * (8 + 8 + 8 + 1 + 1 + 1);
+	}
+	if (m_rowGroupCount == m_rowGroupOffsets.length)
+	    m_rowGroupOffsets = Arrays.copyOf(m_rowGroupOffsets, m_rowGroupCount * 2);
+	m_rowGroupOffsets[m_rowGroupCount++] = m_channel.position();
+
+	ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+	buf.putInt(chunks);
+	for (int d = 0; d < m_columns.size(); d++) {
+	    Column c = m_columns.get(d);
+	    int n = c.m_rows;
+	    if (n == 0)
+		continue;
+	    buf.putInt(d).putInt(n);
+	    buf.asLongBuffer().put(c.m_time, 0, n);
+	    buf.position(buf.position() + n * 8);
+	    buf.asDoubleBuffer().put(c.m_demand0, 0, n);
+	    buf.position(buf.position() + n * 8);
+	    buf.asDoubleBuffer().put(c.m_demand1, 0, n);
+	    buf.position(buf.position() + n * 8);
+	    buf.put(c.m_mode, 0, n);
+	    buf.put(c.m_demandType, 0, n);
+	    buf.put(c.m_state, 0, n);
+	    c.m_rows = 0;
+	}
+	buf.flip();
+	writeFully(buf);
+	m_bufferedRows = 0;
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+	byte[] b = s.getBytes(StandardCharsets.UTF_8);
+	buf.putShort((short) b.length).put(b);
+    }
+
+    private static int stringSize(String s) {
+	return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Flush the buffered samples and write the footer.  Samples added
+     * after close are dropped.
+     */
+    public synchronized void close() throws IOException {
+	if (m_closed && !m_channel.isOpen())
+	    return;
+	try {
+	    if (!m_closed)
+		writeRowGroup();
+	    m_closed = true;
+	    int size = 4 + 4 + 4 + 4 + m_rowGroupCount * 8 + 8;
+	    for (String s : m_deviceNames)
+		size += stringSize(s) + 1;
+	    for (String s : m_modeNames)
+		size += stringSize(s);
+	    for (String s : m_demandTypeNames)
+		size += stringSize(s);
+	    ByteBuffer buf = ByteBuffer.allocate(size + 8).order(ByteOrder.LITTLE_ENDIAN);
+	    buf.putInt(m_deviceNames.size());
+	    for (int i = 0; i < m_deviceNames.size(); i++) {
+		putString(buf, m_deviceNames.get(i));
+		buf.put(m_deviceKinds.get(i));
+	    }
+	    buf.putInt(m_modeNames.length);
+	    for (String s : m_modeNames)
+		putString(buf, s);
+	    buf.putInt(m_demandTypeNames.length);
+	    for (String s : m_demandTypeNames)
+		putString(buf, s);
+	    buf.putInt(m_rowGroupCount);
+	    for (int i = 0; i < m_rowGroupCount; i++)
+		buf.putLong(m_rowGroupOffsets[i]);
+	    buf.putLong(m_totalRows);
+	    buf.putInt(size);
+	    buf.put(kMagic);
+	    buf.flip();
+	    writeFully(buf);
+	} finally {
+	    m_channel.close();
+	}
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+	while (buf.hasRemaining())
+	    m_channel.write(buf);
+    }
+}
@@ -0,0 +1,78 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * Standard FRC DC motors, from the vendor data at 12V.
+ *
+ * <p>The model is the usual linear one: the current is (V - w / Kv) / R
+ * and the torque is Kt * I, where w is the motor speed.
+ *
+ * <p>The thermal model is a single lump: the heat capacity of the motor,
+ * heated by I^2 R and cooled to the ambient air through a thermal
+ * resistance.  The values are estimated from the motor masses and the
+ * published locked rotor tests.
+ */
+public enum DCMotor {
+    kCIM("cim", 2.42, 133, 2.7, 5310, 0.8, 600),
+    kMiniCIM("minicim", 1.41, 89, 3, 5840, 1, 440),
+    k775Pro("775pro", 0.71, 134, 0.7, 18730, 1.2, 160),
+    kNEO("neo", 2.6, 105, 1.8, 5676, 1, 190);
+
+    public static final double kNominalVoltage = 12;
+
+    private final String m_name;
+    public final double stallTorque;
+    public final double stallCurrent;
+    public final double freeCurrent;
+    public final double freeSpeed;
+    /** Winding resistance, ohms. */
+    public final double R;
+    /** Speed constant, rad/s per volt. */
+    public final double Kv;
+    /** Torque constant, Nm per amp. */
+    public final double Kt;
+    /** Thermal resistance to the ambient air, degrees C per watt. */
+    public final double thermalResistance;
+    /** Heat capacity, joules per degree C. */
+    public final double heatCapacity;
+
+    /**
+     * @param stallTorque Nm
+     * @param stallCurrent A
+     * @param freeCurrent A
+     * @param freeSpeedRPM RPM
+     * @param thermalResistance C/W
+     * @param heatCapacity J/C
+     */
+    DCMotor(String name, double stallTorque, double stallCurrent, double freeCurrent, double freeSpeedRPM,
+	    double thermalResistance, double heatCapacity) {
+	m_name = name;
+	this.stallTorque = stallTorque;
+	this.stallCurrent = stallCurrent;
+	this.freeCurrent = freeCurrent;
+	this.freeSpeed = freeSpeedRPM * 2 * Math.PI / 60;
+	this.R = kNominalVoltage / stallCurrent;
+	this.Kv = freeSpeed / (kNominalVoltage - R * freeCurrent);
+	this.Kt = stallTorque / stallCurrent;
+	this.thermalResistance = thermalResistance;
+	this.heatCapacity = heatCapacity;
+    }
+
+    /**
+     * The name used in command files, e.g. "775pro".
+     */
+    public String getName() {
+	return m_name;
+    }
+
+    /**
+     * @return The motor with the given command file name, ignoring case,
+     *         or null.
+     */
+    public static DCMotor fromName(String name) {
+	for (DCMotor m : values()) {
+	    if (m.m_name.equalsIgnoreCase(name))
+		return m;
+	}
+	return null;
+    }
+}
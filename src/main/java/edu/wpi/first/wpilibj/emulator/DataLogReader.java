@@ -0,0 +1,261 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a WPILib DataLog (.wpilog) file.
+ *
+ * <p>The file is memory mapped and scanned once to build, for every
+ * entry, arrays of record timestamps and payload offsets.  Values are
+ * decoded from the mapping on demand, so only the index lives on the
+ * Java heap.
+ */
+public class DataLogReader implements AutoCloseable {
+    /**
+     * One entry (named, typed timeline) of the log.
+     */
+    public static class Entry {
+	private final String m_name;
+	private final String m_type;
+	private final String m_metadata;
+	long[] m_times = new long[16];
+	int[] m_offsets = new int[16];
+	int[] m_sizes = new int[16];
+	int m_count;
+
+	Entry(String name, String type, String metadata) {
+	    m_name = name;
+	    m_type = type;
+	    m_metadata = metadata;
+	}
+
+	void add(long time, int offset, int size) {
+	    if (m_count == m_times.length) {
+		m_times = Arrays.copyOf(m_times, m_count * 2);
+		m_offsets = Arrays.copyOf(m_offsets, m_count * 2);
+		m_sizes = Arrays.copyOf(m_sizes, m_count * 2);
+	    }
+	    m_times[m_count] = time;
+	    m_offsets[m_count] = offset;
+	    m_sizes[m_count] = size;
+	    m_count++;
+	}
+
+	public String getName() {
+	    return m_name;
+	}
+
+	public String getType() {
+	    return m_type;
+	}
+
+	public String getMetadata() {
+	    return m_metadata;
+	}
+
+	/**
+	 * @return The number of data records of the entry.
+	 */
+	public int size() {
+	    return m_count;
+	}
+
+	/**
+	 * @return The timestamp of record i, in microseconds.
+	 */
+	public long getTime(int i) {
+	    return m_times[i];
+	}
+
+	/**
+	 * @return The index of the last record at or before time t, or -1 if
+	 *         every record is later.
+	 */
+	public int indexAtOrBefore(long t) {
+	    int lo = 0;
+	    int hi = m_count;
+	    while (lo < hi) {
+		int mid = (lo + hi) >>> 1;
+		if (m_times[mid] <= t)
+		    lo = mid + 1;
+		else
+		    hi = mid;
+	    }
+	    return lo - 1;
+	}
+    }
+
+    private final FileChannel m_channel;
+    private final MappedByteBuffer m_map;
+    private final Map<String, Entry> m_entries = new HashMap<>();
+
+    public DataLogReader(Path file) throws IOException {
+	m_channel = FileChannel.open(file, StandardOpenOption.READ);
+	long size = m_channel.size();
+	if (size > Integer.MAX_VALUE) {
+	    m_channel.close();
+	    throw new IOException(file + ": log files over 2GB are not supported");
+	}
+	m_map = m_channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	m_map.order(ByteOrder.LITTLE_ENDIAN);
+	try {
+	    scan(file);
+	} catch (IndexOutOfBoundsException ioobe) {
+	    // A truncated final record, e.g. from a robot that lost power.
+	}
+    }
+
+    private long getVarInt(int pos, int len) {
+	long v = 0;
+	for (int i = 0; i < len; i++)
+	    v |= (m_map.get(pos + i) & 0xffL) << (8 * i);
+	return v;
+    }
+
+    private String getString(int pos, int len) {
+	byte[] b = new byte[len];
+	for (int i = 0; i < len; i++)
+	    b[i] = m_map.get(pos + i);
+	return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private void scan(Path file) throws IOException {
+	int limit = m_map.limit();
+	if (limit < 12 || !getString(0, 6).equals("WPILOG") || m_map.getShort(6) < 0x0100)
+	    throw new IOException(file + ": not a WPILib data log");
+	int pos = 12 + m_map.getInt(8);
+	Map<Integer, Entry> byId = new HashMap<>();
+	while (pos < limit) {
+	    int bits = m_map.get(pos) & 0xff;
+	    int idLen = (bits & 0x3) + 1;
+	    int sizeLen = ((bits >> 2) & 0x3) + 1;
+	    int timeLen = ((bits >> 4) & 0x7) + 1;
+	    int p = pos + 1;
+	    int id = (int) getVarInt(p, idLen);
+	    p += idLen;
+	    int size = (int) getVarInt(p, sizeLen);
+	    p += sizeLen;
+	    long time = getVarInt(p, timeLen);
+	    p += timeLen;
+	    if (p + size > limit || size < 0)
+		break;
+	    if (id == 0) {
+		// Control record.
+		if (size >= 5 && m_map.get(p) == 0) {
+		    int entryId = m_map.getInt(p + 1);
+		    int q = p + 5;
+		    int nlen = m_map.getInt(q);
+		    String name = getString(q + 4, nlen);
+		    q += 4 + nlen;
+		    int tlen = m_map.getInt(q);
+		    String type = getString(q + 4, tlen);
+		    q += 4 + tlen;
+		    int mlen = m_map.getInt(q);
+		    String metadata = getString(q + 4, mlen);
+		    Entry e = new Entry(name, type, metadata);
+		    byId.put(entryId, e);
+		    m_entries.put(name, e);
+		} else if (size >= 5 && m_map.get(p) == 1) {
+		    byId.remove(m_map.getInt(p + 1));
+		}
+	    } else {
+		Entry e = byId.get(id);
+		if (e != null)
+		    e.add(time, p, size);
+	    }
+	    pos = p + size;
+	}
+    }
+
+    @Override
+    public void close() throws IOException {
+	m_channel.close();
+    }
+
+    /**
+     * @return The entry with the given name, or null.
+     */
+    public Entry getEntry(String name) {
+	return m_entries.get(name);
+    }
+
+    public Collection<Entry> getEntries() {
+	return Collections.unmodifiableCollection(m_entries.values());
+    }
+
+    /**
+     * Decode record i of a scalar numeric entry (double, float, int64 or
+     * boolean) as a double.
+     */
+    public double getDouble(Entry e, int i) {
+	int pos = e.m_offsets[i];
+	switch (e.m_type) {
+	case "double":
+	    return m_map.getDouble(pos);
+	case "float":
+	    return m_map.getFloat(pos);
+	case "int64":
+	    return m_map.getLong(pos);
+	case "boolean":
+	    return m_map.get(pos) != 0 ? 1 : 0;
+	default:
+	    throw new IllegalArgumentException(e.m_name + ": not a numeric entry (" + e.m_type + ")");
+	}
+    }
+
+    private static int elementSize(Entry e) {
+	switch (e.m_type) {
+	case "double[]":
+	case "int64[]":
+	    return 8;
+	case "float[]":
+	    return 4;
+	case "boolean[]":
+	    return 1;
+	default:
+	    throw new IllegalArgumentException(e.m_name + ": not an array entry (" + e.m_type + ")");
+	}
+    }
+
+    /**
+     * @return The number of elements in record i of an array entry.
+     */
+    public int getArrayLength(Entry e, int i) {
+	return e.m_sizes[i] / elementSize(e);
+    }
+
+    /**
+     * Decode element idx of record i of an array entry as a double.
+     */
+    public double getArrayElement(Entry e, int i, int idx) {
+	int pos = e.m_offsets[i] + idx * elementSize(e);
+	switch (e.m_type) {
+	case "double[]":
+	    return m_map.getDouble(pos);
+	case "int64[]":
+	    return m_map.getLong(pos);
+	case "float[]":
+	    return m_map.getFloat(pos);
+	default:
+	    return m_map.get(pos) != 0 ? 1 : 0;
+	}
+    }
+
+    /**
+     * Decode record i of a string entry.
+     */
+    public String getString(Entry e, int i) {
+	return getString(e.m_offsets[i], e.m_sizes[i]);
+    }
+}
@@ -0,0 +1,213 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Replays sensor and driver station data from a WPILib DataLog.
+ *
+ * <p>Emulated sensors ask the replay for their value by target name and
+ * fall back to their usual value when the target is not mapped.  The
+ * replay is configured from the command file:
+ *
+ * <pre>
+ * replay.log &lt;file.wpilog&gt;
+ * replay.map &lt;target&gt; &lt;entry&gt; [&lt;scale&gt; [&lt;offset&gt;]]
+ * replay.start [&lt;log time in seconds&gt;]
+ * </pre>
+ *
+ * Targets are:
+ * <pre>
+ * motor/&lt;hex base id&gt;/position|velocity|current   CTRE motor controllers
+ * sparkmax/&lt;device id&gt;/position|velocity         SPARK MAX encoders
+ * gyro/angle, gyro/rate                           ADXRS450 gyro
+ * pdp/current/&lt;channel&gt;, pdp/voltage, pdp/totalCurrent
+ * ds/enabled, ds/autonomous
+ * ds/joystick&lt;n&gt;                                 maps &lt;entry&gt;/axes, /buttons and /povs
+ * </pre>
+ * Numeric values are linearly interpolated between log records; booleans
+ * and joystick arrays hold the last value.  replay.start aligns the given
+ * log time (default: the first mapped record) with the current emulator
+ * time.
+ */
+public class DataLogReplay {
+    private static class Mapping {
+	final DataLogReader.Entry m_entry;
+	final double m_scale;
+	final double m_offset;
+	final boolean m_interpolate;
+	int m_lastIndex;
+
+	Mapping(DataLogReader.Entry entry, double scale, double offset) {
+	    m_entry = entry;
+	    m_scale = scale;
+	    m_offset = offset;
+	    m_interpolate = entry.getType().equals("double") || entry.getType().equals("float")
+		    || entry.getType().equals("int64");
+	}
+
+	// Index of the last record at or before t.  Replay time moves
+	// forward, so step on from the previous answer before searching.
+	int index(long t) {
+	    int i = m_lastIndex;
+	    int n = m_entry.size();
+	    if (i >= 0 && i < n && m_entry.getTime(i) <= t) {
+		for (int k = 0; k < 4 && i + 1 < n && m_entry.getTime(i + 1) <= t; k++)
+		    i++;
+		if (i + 1 >= n || m_entry.getTime(i + 1) > t) {
+		    m_lastIndex = i;
+		    return i;
+		}
+	    }
+	    i = m_entry.indexAtOrBefore(t);
+	    m_lastIndex = i;
+	    return i;
+	}
+    }
+
+    private static final DataLogReplay instance = new DataLogReplay();
+
+    private DataLogReader m_reader;
+    private final Map<String, Mapping> m_mappings = new ConcurrentHashMap<>();
+    private volatile boolean m_started;
+    private volatile long m_timeOffset;
+
+    private DataLogReplay() {
+    }
+
+    public static DataLogReplay getInstance() {
+	return instance;
+    }
+
+    /**
+     * @return true once replay.start has been processed.
+     */
+    public boolean isStarted() {
+	return m_started;
+    }
+
+    private long logTime() {
+	return RobotController.getFPGATime() + m_timeOffset;
+    }
+
+    /**
+     * Handle a replay.* command.
+     *
+     * @return false if the command is not a replay command.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public boolean processCommand(String[] cmd) {
+	if (cmd[0].equalsIgnoreCase("replay.log")) {
+	    if (cmd.length != 2)
+		throw new IllegalArgumentException("replay.log <file>");
+	    try {
+		m_reader = new DataLogReader(Paths.get(cmd[1]));
+	    } catch (IOException ioe) {
+		throw new IllegalArgumentException(ioe.getMessage());
+	    }
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("replay.map")) {
+	    if (cmd.length < 3 || cmd.length > 5)
+		throw new IllegalArgumentException("replay.map <target> <entry> [<scale> [<offset>]]");
+	    if (m_reader == null)
+		throw new IllegalArgumentException("replay.map before replay.log");
+	    double scale = cmd.length > 3 ? Double.parseDouble(cmd[3]) : 1;
+	    double offset = cmd.length > 4 ? Double.parseDouble(cmd[4]) : 0;
+	    if (cmd[1].startsWith("ds/joystick")) {
+		map(cmd[1] + "/axes", cmd[2] + "/axes", scale, offset);
+		map(cmd[1] + "/buttons", cmd[2] + "/buttons", 1, 0);
+		map(cmd[1] + "/povs", cmd[2] + "/povs", 1, 0);
+	    } else {
+		map(cmd[1], cmd[2], scale, offset);
+	    }
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("replay.start")) {
+	    long start;
+	    if (cmd.length > 1) {
+		start = Math.round(Double.parseDouble(cmd[1]) * 1e6);
+	    } else {
+		start = Long.MAX_VALUE;
+		for (Mapping m : m_mappings.values())
+		    if (m.m_entry.size() > 0)
+			start = Math.min(start, m.m_entry.getTime(0));
+		if (start == Long.MAX_VALUE)
+		    start = 0;
+	    }
+	    m_timeOffset = start - RobotController.getFPGATime();
+	    m_started = true;
+	    return true;
+	}
+	return false;
+    }
+
+    private void map(String target, String name, double scale, double offset) {
+	DataLogReader.Entry e = m_reader.getEntry(name);
+	if (e == null)
+	    throw new IllegalArgumentException("No entry '" + name + "' in replay log");
+	m_mappings.put(target, new Mapping(e, scale, offset));
+    }
+
+    /**
+     * @return The replayed value of target at the current time, or
+     *         fallback if the target is not mapped or the log has no value
+     *         yet.
+     */
+    public double getDouble(String target, double fallback) {
+	if (!m_started)
+	    return fallback;
+	Mapping m = m_mappings.get(target);
+	if (m == null)
+	    return fallback;
+	long t = logTime();
+	int i = m.index(t);
+	if (i < 0)
+	    return fallback;
+	double v = m_reader.getDouble(m.m_entry, i);
+	if (m.m_interpolate && i + 1 < m.m_entry.size()) {
+	    long t0 = m.m_entry.getTime(i);
+	    long t1 = m.m_entry.getTime(i + 1);
+	    if (t1 > t0)
+		v += (m_reader.getDouble(m.m_entry, i + 1) - v) * (t - t0) / (t1 - t0);
+	}
+	return v * m.m_scale + m.m_offset;
+    }
+
+    public boolean getBoolean(String target, boolean fallback) {
+	if (!m_started)
+	    return fallback;
+	Mapping m = m_mappings.get(target);
+	if (m == null)
+	    return fallback;
+	int i = m.index(logTime());
+	if (i < 0)
+	    return fallback;
+	return m_reader.getDouble(m.m_entry, i) != 0;
+    }
+
+    /**
+     * Copy the current value of an array target into values.
+     *
+     * @return The length of the value, which may exceed values.length, or
+     *         -1 if the target is not mapped or has no value yet.
+     */
+    public int getArray(String target, double[] values) {
+	if (!m_started)
+	    return -1;
+	Mapping m = m_mappings.get(target);
+	if (m == null)
+	    return -1;
+	int i = m.index(logTime());
+	if (i < 0)
+	    return -1;
+	int n = m_reader.getArrayLength(m.m_entry, i);
+	for (int j = 0; j < n && j < values.length; j++)
+	    values[j] = m_reader.getArrayElement(m.m_entry, i, j) * m.m_scale + m.m_offset;
+	return n;
+    }
+}
@@ -0,0 +1,233 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a WPILib DataLog (.wpilog) file.
+ *
+ * <p>Records are encoded into in-memory buffers by the calling thread;
+ * full buffers, and the partially filled one every
+ * {@link #kFlushPeriodMs}, are handed to a background thread that writes
+ * them to disk.  The robot threads never wait for file I/O.  Once a
+ * write fails, e.g. on a full disk, the failure is reported and the
+ * records that follow are dropped.
+ *
+ * <p>The file layout follows the DataLog specification: the "WPILOG"
+ * header with version 1.0 and an extra header string, followed by
+ * records.  Each record starts with a length bitfield byte, then the
+ * entry id, payload size and timestamp using only as many little-endian
+ * bytes as needed.  Entry id 0 carries control records (start, finish,
+ * set metadata).
+ */
+public class DataLogWriter {
+    public static final String kTypeDouble = "double";
+    public static final String kTypeBoolean = "boolean";
+    public static final String kTypeString = "string";
+    public static final String kTypeInt64 = "int64";
+
+    static final int kBufferSize = 64 * 1024;
+    static final long kFlushPeriodMs = 250;
+    private static final int kControlStart = 0;
+    private static final int kControlFinish = 1;
+
+    private final FileChannel m_channel;
+    private final Thread m_flushThread;
+    private ByteBuffer m_active;
+    private final ArrayDeque<ByteBuffer> m_full = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> m_free = new ArrayDeque<>();
+    private int m_lastEntry;
+    private boolean m_closing;
+    private boolean m_failed;
+
+    public DataLogWriter(Path file, String extraHeader) throws IOException {
+	m_channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING);
+	byte[] extra = extraHeader.getBytes(StandardCharsets.UTF_8);
+	ByteBuffer header = ByteBuffer.allocate(12 + extra.length).order(ByteOrder.LITTLE_ENDIAN);
+	header.put("WPILOG".getBytes(StandardCharsets.US_ASCII));
+	header.putShort((short) 0x0100);
+	header.putInt(extra.length);
+	header.put(extra);
+	header.flip();
+	while (header.hasRemaining())
+	    m_channel.write(header);
+	m_active = newBuffer(kBufferSize);
+	m_flushThread = new Thread(this::flushLoop, "DataLog");
+	m_flushThread.setDaemon(true);
+	m_flushThread.start();
+    }
+
+    /**
+     * Start a new entry.
+     *
+     * @param name Entry name, e.g. "/emulator/motor/2040003/demand0".
+     * @param type Entry data type, e.g. {@link #kTypeDouble}.
+     * @param timestamp Time in microseconds.
+     * @return The entry id to use with the append methods.
+     */
+    public int start(String name, String type, long timestamp) {
+	return start(name, type, "", timestamp);
+    }
+
+    public synchronized int start(String name, String type, String metadata, long timestamp) {
+	int entry = ++m_lastEntry;
+	byte[] n = name.getBytes(StandardCharsets.UTF_8);
+	byte[] t = type.getBytes(StandardCharsets.UTF_8);
+	byte[] m = metadata.getBytes(StandardCharsets.UTF_8);
+	ByteBuffer buf = beginRecord(0, 1 + 4 + 4 + n.length + 4 + t.length + 4 + m.length, timestamp);
+	buf.put((byte) kControlStart);
+	buf.putInt(entry);
+	buf.putInt(n.length).put(n);
+	buf.putInt(t.length).put(t);
+	buf.putInt(m.length).put(m);
+	return entry;
+    }
+
+    public synchronized void finish(int entry, long timestamp) {
+	ByteBuffer buf = beginRecord(0, 5, timestamp);
+	buf.put((byte) kControlFinish);
+	buf.putInt(entry);
+    }
+
+    public synchronized void appendDouble(int entry, double value, long timestamp) {
+	beginRecord(entry, 8, timestamp).putDouble(value);
+    }
+
+    public synchronized void appendBoolean(int entry, boolean value, long timestamp) {
+	beginRecord(entry, 1, timestamp).put((byte) (value ? 1 : 0));
+    }
+
+    public synchronized void appendInteger(int entry, long value, long timestamp) {
+	beginRecord(entry, 8, timestamp).putLong(value);
+    }
+
+    public synchronized void appendString(int entry, String value, long timestamp) {
+	byte[] b = value.getBytes(StandardCharsets.UTF_8);
+	beginRecord(entry, b.length, timestamp).put(b);
+    }
+
+    private static int byteCount(long v) {
+	int n = 1;
+	while (n < 8 && (v >>> (8 * n)) != 0)
+	    n++;
+	return n;
+    }
+
+    private static void putBytes(ByteBuffer buf, long v, int n) {
+	for (int i = 0; i < n; i++)
+	    buf.put((byte) (v >>> (8 * i)));
+    }
+
+    // Write a record header and return a buffer with room for the payload.
+    private ByteBuffer beginRecord(int entry, int payloadSize, long timestamp) {
+	int idLen = byteCount(entry & 0xffffffffL);
+	int sizeLen = byteCount(payloadSize & 0xffffffffL);
+	int timeLen = byteCount(timestamp);
+	ByteBuffer buf = reserve(1 + idLen + sizeLen + timeLen + payloadSize);
+	buf.put((byte) ((idLen - 1) | ((sizeLen - 1) << 2) | ((timeLen - 1) << 4)));
+	putBytes(buf, entry, idLen);
+	putBytes(buf, payloadSize, sizeLen);
+	putBytes(buf, timestamp, timeLen);
+	return buf;
+    }
+
+    private ByteBuffer reserve(int size) {
+	if (m_failed) {
+	    // Nothing writes the buffers out any more, encode into the
+	    // active buffer and drop the record.
+	    m_active.clear();
+	    return size > m_active.capacity() ? newBuffer(size) : m_active;
+	}
+	if (m_active.remaining() < size) {
+	    m_full.add(m_active);
+	    m_active = m_free.isEmpty() || size > kBufferSize ? newBuffer(Math.max(size, kBufferSize))
+		    : m_free.poll();
+	    notifyAll();
+	}
+	return m_active;
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+	return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void flushLoop() {
+	List<ByteBuffer> toWrite = new ArrayList<>();
+	boolean done = false;
+	boolean failed = false;
+	while (!done) {
+	    synchronized (this) {
+		if (m_full.isEmpty() && !m_closing) {
+		    try {
+			wait(kFlushPeriodMs);
+		    } catch (InterruptedException ie) {
+			m_closing = true;
+		    }
+		}
+		if (m_active.position() > 0) {
+		    m_full.add(m_active);
+		    m_active = m_free.isEmpty() ? newBuffer(kBufferSize) : m_free.poll();
+		}
+		toWrite.addAll(m_full);
+		m_full.clear();
+		done = m_closing;
+	    }
+	    try {
+		for (ByteBuffer b : toWrite) {
+		    b.flip();
+		    while (b.hasRemaining())
+			m_channel.write(b);
+		    b.clear();
+		}
+	    } catch (IOException ioe) {
+		System.err.println("DataLog write failed, the rest of the log is dropped");
+		ioe.printStackTrace();
+		done = true;
+		failed = true;
+	    }
+	    synchronized (this) {
+		if (failed) {
+		    m_failed = true;
+		    m_full.clear();
+		    m_free.clear();
+		} else {
+		    for (ByteBuffer b : toWrite)
+			if (b.capacity() == kBufferSize)
+			    m_free.add(b);
+		}
+	    }
+	    toWrite.clear();
+	}
+	try {
+	    m_channel.close();
+	} catch (IOException ioe) {
+	    ioe.printStackTrace();
+	}
+    }
+
+    /**
+     * Write out everything buffered and close the file.
+     */
+    public void close() {
+	synchronized (this) {
+	    if (m_closing)
+		return;
+	    m_closing = true;
+	    notifyAll();
+	}
+	try {
+	    m_flushThread.join();
+	} catch (InterruptedException ie) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+}
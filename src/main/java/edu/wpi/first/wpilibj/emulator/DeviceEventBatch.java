@@ -0,0 +1,37 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * A view of consecutive events delivered to a {@link DeviceEventListener}.
+ * Events are addressed by index, 0 to size()-1; see
+ * {@link DeviceEventKind} for the meaning of the payload fields.
+ */
+public interface DeviceEventBatch {
+    int size();
+
+    /**
+     * @return The number of events this subscriber dropped because its
+     *         queue was full, since the bus started.
+     */
+    long getDropped();
+
+    /** FPGA time of the event, in microseconds. */
+    long getTime(int i);
+
+    /** The publishing device, see {@link DeviceEventBus#registerDevice}. */
+    int getDevice(int i);
+
+    DeviceEventKind getKind(int i);
+
+    /** The publishing thread, see {@link DeviceEventBus#getThreadName}. */
+    int getThread(int i);
+
+    int getInt0(int i);
+
+    int getInt1(int i);
+
+    double getDouble0(int i);
+
+    double getDouble1(int i);
+
+    Object getObject(int i);
+}
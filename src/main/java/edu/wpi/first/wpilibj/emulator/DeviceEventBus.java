@@ -0,0 +1,352 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Central bus for actuator and emulator events.
+ *
+ * <p>Publishers (the robot threads) stamp each event with the FPGA time
+ * and copy its primitive payload into a bounded ring buffer per
+ * subscriber; nothing is allocated and no subscriber code runs on the
+ * publishing thread.  Each subscriber has a dispatcher thread that
+ * delivers the queued events in batches.  When a subscriber falls behind
+ * and its ring fills up, new events for that subscriber are dropped and
+ * counted instead of stalling the robot.
+ *
+ * <p>Publication is serialized, so every subscriber sees all events in
+ * the same, time ordered, sequence.
+ */
+public class DeviceEventBus {
+    public static final int kDefaultCapacity = 1 << 16;
+    public static final int kMaxBatch = 1024;
+    static final long kIdleNanos = 5_000_000;
+
+    private static final DeviceEventKind[] kKinds = DeviceEventKind.values();
+
+    /**
+     * A subscriber's ring buffer, also used as the batch view handed to
+     * its listener.
+     */
+    public class Subscription implements DeviceEventBatch {
+	private final String m_name;
+	private final DeviceEventListener m_listener;
+	private final int m_mask;
+	private final long[] m_time;
+	private final int[] m_device;
+	private final byte[] m_kind;
+	private final int[] m_threadIdx;
+	private final int[] m_i0;
+	private final int[] m_i1;
+	private final double[] m_d0;
+	private final double[] m_d1;
+	private final Object[] m_obj;
+	// m_head is written by publishers (under the bus lock), m_tail by
+	// the dispatcher thread only.
+	private volatile long m_head;
+	private volatile long m_tail;
+	private volatile long m_dropped;
+	private volatile boolean m_closing;
+	private final Thread m_dispatcher;
+	private long m_batchStart;
+	private int m_batchSize;
+
+	Subscription(String name, DeviceEventListener listener, int capacity) {
+	    int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+	    m_name = name;
+	    m_listener = listener;
+	    m_mask = size - 1;
+	    m_time = new long[size];
+	    m_device = new int[size];
+	    m_kind = new byte[size];
+	    m_threadIdx = new int[size];
+	    m_i0 = new int[size];
+	    m_i1 = new int[size];
+	    m_d0 = new double[size];
+	    m_d1 = new double[size];
+	    m_obj = new Object[size];
+	    m_dispatcher = new Thread(this::dispatch, "EventBus-" + name);
+	    m_dispatcher.setDaemon(true);
+	}
+
+	// Called with the bus lock held.
+	void put(long time, int device, DeviceEventKind kind, int thread, int i0, int i1, double d0,
+		double d1, Object obj) {
+	    long head = m_head;
+	    if (head - m_tail > m_mask) {
+		m_dropped++;
+		return;
+	    }
+	    int s = (int) head & m_mask;
+	    m_time[s] = time;
+	    m_device[s] = device;
+	    m_kind[s] = (byte) kind.ordinal();
+	    m_threadIdx[s] = thread;
+	    m_i0[s] = i0;
+	    m_i1[s] = i1;
+	    m_d0[s] = d0;
+	    m_d1[s] = d1;
+	    m_obj[s] = obj;
+	    m_head = head + 1;
+	}
+
+	private void dispatch() {
+	    while (true) {
+		long tail = m_tail;
+		long head = m_head;
+		if (head == tail) {
+		    if (m_closing)
+			break;
+		    LockSupport.parkNanos(kIdleNanos);
+		    continue;
+		}
+		m_batchStart = tail;
+		m_batchSize = (int) Math.min(head - tail, kMaxBatch);
+		try {
+		    m_listener.onEvents(this);
+		} catch (RuntimeException re) {
+		    re.printStackTrace();
+		}
+		for (int i = 0; i < m_batchSize; i++)
+		    m_obj[(int) (tail + i) & m_mask] = null;
+		m_tail = tail + m_batchSize;
+	    }
+	    try {
+		m_listener.onClose();
+	    } catch (RuntimeException re) {
+		re.printStackTrace();
+	    }
+	}
+
+	public String getName() {
+	    return m_name;
+	}
+
+	/**
+	 * Wait until every event published so far has been delivered.
+	 */
+	public void flush() {
+	    long head = m_head;
+	    while (m_tail < head && m_dispatcher.isAlive()) {
+		LockSupport.unpark(m_dispatcher);
+		LockSupport.parkNanos(100_000);
+	    }
+	}
+
+	void close() {
+	    m_closing = true;
+	    LockSupport.unpark(m_dispatcher);
+	    try {
+		m_dispatcher.join();
+	    } catch (InterruptedException ie) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+
+	private int slot(int i) {
+	    return (int) (m_batchStart + i) & m_mask;
+	}
+
+	@Override
+	public int size() {
+	    return m_batchSize;
+	}
+
+	@Override
+	public long getDropped() {
+	    return m_dropped;
+	}
+
+	@Override
+	public long getTime(int i) {
+	    return m_time[slot(i)];
+	}
+
+	@Override
+	public int getDevice(int i) {
+	    return m_device[slot(i)];
+	}
+
+	@Override
+	public DeviceEventKind getKind(int i) {
+	    return kKinds[m_kind[slot(i)]];
+	}
+
+	@Override
+	public int getThread(int i) {
+	    return m_threadIdx[slot(i)];
+	}
+
+	@Override
+	public int getInt0(int i) {
+	    return m_i0[slot(i)];
+	}
+
+	@Override
+	public int getInt1(int i) {
+	    return m_i1[slot(i)];
+	}
+
+	@Override
+	public double getDouble0(int i) {
+	    return m_d0[slot(i)];
+	}
+
+	@Override
+	public double getDouble1(int i) {
+	    return m_d1[slot(i)];
+	}
+
+	@Override
+	public Object getObject(int i) {
+	    return m_obj[slot(i)];
+	}
+    }
+
+    private final Object m_publishLock = new Object();
+    private volatile Subscription[] m_subscriptions = new Subscription[0];
+    private boolean m_closed;
+
+    private final Object m_registryLock = new Object();
+    private String[] m_deviceTypes = new String[16];
+    private String[] m_deviceNames = new String[16];
+    private int[] m_deviceIds = new int[16];
+    private int m_deviceCount;
+    private final List<String> m_threadNames = new ArrayList<>();
+    private final ThreadLocal<Integer> m_threadIndex = ThreadLocal.withInitial(this::registerThread);
+
+    /**
+     * Register a device.
+     *
+     * @param type Device type, e.g. "motor", "solenoid", "pwm".
+     * @param name Device name, unique for the type.
+     * @param id Numeric device id (CAN id, channel), -1 if none.
+     * @return The device number used when publishing.
+     */
+    public int registerDevice(String type, String name, int id) {
+	synchronized (m_registryLock) {
+	    int n = m_deviceCount;
+	    if (n == m_deviceNames.length) {
+		m_deviceTypes = Arrays.copyOf(m_deviceTypes, n * 2);
+		m_deviceNames = Arrays.copyOf(m_deviceNames, n * 2);
+		m_deviceIds = Arrays.copyOf(m_deviceIds, n * 2);
+	    }
+	    m_deviceTypes[n] = type;
+	    m_deviceNames[n] = name;
+	    m_deviceIds[n] = id;
+	    m_deviceCount = n + 1;
+	    return n;
+	}
+    }
+
+    public String getDeviceType(int device) {
+	synchronized (m_registryLock) {
+	    return device < 0 ? "emulator" : m_deviceTypes[device];
+	}
+    }
+
+    public String getDeviceName(int device) {
+	synchronized (m_registryLock) {
+	    return device < 0 ? "emulator" : m_deviceNames[device];
+	}
+    }
+
+    public int getDeviceId(int device) {
+	synchronized (m_registryLock) {
+	    return device < 0 ? -1 : m_deviceIds[device];
+	}
+    }
+
+    private Integer registerThread() {
+	synchronized (m_registryLock) {
+	    m_threadNames.add(Thread.currentThread().getName());
+	    return m_threadNames.size() - 1;
+	}
+    }
+
+    /**
+     * @return The name of a publishing thread, as of its first event.
+     */
+    public String getThreadName(int thread) {
+	synchronized (m_registryLock) {
+	    return m_threadNames.get(thread);
+	}
+    }
+
+    /**
+     * Add a subscriber with its own queue of the given capacity.
+     */
+    public Subscription subscribe(String name, DeviceEventListener listener, int capacity) {
+	Subscription s = new Subscription(name, listener, capacity);
+	synchronized (m_publishLock) {
+	    Subscription[] subs = Arrays.copyOf(m_subscriptions, m_subscriptions.length + 1);
+	    subs[subs.length - 1] = s;
+	    m_subscriptions = subs;
+	}
+	s.m_dispatcher.start();
+	return s;
+    }
+
+    public Subscription subscribe(String name, DeviceEventListener listener) {
+	return subscribe(name, listener, kDefaultCapacity);
+    }
+
+    /**
+     * @return true if anyone is listening, so publishers can skip
+     *         computing an expensive payload.
+     */
+    public boolean hasSubscribers() {
+	return m_subscriptions.length > 0;
+    }
+
+    public void publish(int device, DeviceEventKind kind, int i0, int i1, double d0, double d1) {
+	publish(device, kind, i0, i1, d0, d1, null);
+    }
+
+    public void publish(int device, DeviceEventKind kind, Object obj) {
+	publish(device, kind, 0, 0, 0, 0, obj);
+    }
+
+    private void publish(int device, DeviceEventKind kind, int i0, int i1, double d0, double d1, Object obj) {
+	Subscription[] subs = m_subscriptions;
+	if (subs.length == 0)
+	    return;
+	int thread = m_threadIndex.get();
+	synchronized (m_publishLock) {
+	    if (m_closed)
+		return;
+	    long time = RobotController.getFPGATime();
+	    for (Subscription s : m_subscriptions)
+		s.put(time, device, kind, thread, i0, i1, d0, d1, obj);
+	}
+    }
+
+    /**
+     * Wait until every subscriber has handled all events published so far.
+     */
+    public void flush() {
+	for (Subscription s : m_subscriptions)
+	    s.flush();
+    }
+
+    /**
+     * Stop accepting events, deliver the queued ones and close the
+     * subscribers.
+     */
+    public void close() {
+	Subscription[] subs;
+	synchronized (m_publishLock) {
+	    m_closed = true;
+	    subs = m_subscriptions;
+	}
+	for (Subscription s : subs) {
+	    if (s.getDropped() > 0)
+		System.err.println("Event bus subscriber " + s.getName() + " dropped " + s.getDropped() + " events");
+	    s.close();
+	}
+    }
+}
@@ -0,0 +1,30 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * The kinds of events published on the {@link DeviceEventBus}, with the
+ * meaning of their primitive payload.
+ */
+public enum DeviceEventKind {
+    /** CTRE motor controller set: i0 ControlMode ordinal, i1 DemandType ordinal, d0 demand0, d1 demand1. */
+    kMotorSet,
+    /** Solenoid set: i0 1 for on, 0 for off. */
+    kSolenoidSet,
+    /** PWM speed: d0 speed. */
+    kPWMSpeed,
+    /** PWM position: d0 position. */
+    kPWMPosition,
+    /** PWM raw value: i0 value. */
+    kPWMRaw,
+    /** PWM output disabled. */
+    kPWMDisabled,
+    /** SpeedControllerGroup set: d0 speed. */
+    kGroupSet,
+    /** SPARK MAX setpoint: i0 control type, i1 pid slot, d0 value, d1 arbitrary feed forward. */
+    kSparkMaxSetpoint,
+    /** Driver station mode: i0 1 if enabled, i1 1 if autonomous. */
+    kMode,
+    /** Command file command: object the command text, null at end of file. */
+    kCommand,
+    /** Notifier handler note: object the note text. */
+    kNotifier
+}
@@ -0,0 +1,22 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * A subscriber to the {@link DeviceEventBus}.
+ *
+ * <p>Listeners run on their own dispatcher thread and receive events in
+ * batches, in publication order.
+ */
+public interface DeviceEventListener {
+    /**
+     * Handle a batch of events.  The batch is only valid for the duration
+     * of the call.
+     */
+    void onEvents(DeviceEventBatch batch);
+
+    /**
+     * Called on the dispatcher thread after the last batch, when the bus
+     * is closed.
+     */
+    default void onClose() {
+    }
+}
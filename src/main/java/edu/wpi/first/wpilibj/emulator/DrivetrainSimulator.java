@@ -0,0 +1,375 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.PrintWriter;
+
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.ctre.phoenix.motorcontrol.can.VictorSPX;
+import com.revrobotics.CANSparkMaxLowLevel;
+
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.SpeedControllerGroup;
+
+/**
+ * Pose of the robot on the field, integrated from the wheels of the
+ * DifferentialDrive, MecanumDrive or KilloughDrive of the robot program.
+ *
+ * <p>The drive registers its wheel controllers when it is created.  The
+ * speed of a wheel driven by a CTRE controller or a SPARK MAX is the speed
+ * of its simulated motor in {@link MotorPhysics}, so the pose agrees with
+ * what the controller encoders report; motor.model should give the
+ * gearing to the wheel and the inertia of the robot as seen by the wheel.
+ * Other wheels (PWM controllers) reach their output times the maximum
+ * wheel speed at once.  The right wheels of differential and mecanum
+ * drives are mounted mirrored, as the drive classes assume by default.
+ *
+ * <p>The chassis velocity is the least squares solution of the wheel
+ * kinematics, precomputed whenever the drivetrain changes, and the pose is
+ * integrated every {@link MotorPhysics#kTickMicros}.  The dimensions are
+ * given by the command file
+ * <pre>
+ *   drive.model &lt;track width&gt; &lt;wheelbase&gt; &lt;wheel diameter&gt; [&lt;max wheel speed&gt;]
+ *   drive.pose &lt;x&gt; &lt;y&gt; &lt;heading&gt;
+ * </pre>
+ * in meters, meters per second and degrees.  The wheels of a Killough
+ * drive are half the track width from the center.
+ *
+ * <p>The heading is counter-clockwise from the field X axis, the robot
+ * starts at the origin facing along X.  The ADXRS450_Gyro reports it, and
+ * ROBOT_POSE_LOG records the path.
+ */
+public class DrivetrainSimulator implements MotorPhysics.Controller {
+    public static final double kDefaultTrackWidth = 0.6;
+    public static final double kDefaultWheelBase = 0.6;
+    public static final double kDefaultWheelDiameter = 0.1524;
+    public static final double kDefaultMaxSpeed = 4;
+    public static final long kPoseLogMicros = 20_000;
+
+    private static final DrivetrainSimulator instance = new DrivetrainSimulator();
+
+    private final MotorPhysics m_physics = MotorPhysics.getInstance();
+    private String m_drive;
+    private double m_trackWidth = kDefaultTrackWidth;
+    private double m_wheelBase = kDefaultWheelBase;
+    private double m_wheelDiameter = kDefaultWheelDiameter;
+    private double m_maxSpeed = kDefaultMaxSpeed;
+
+    // Per wheel: the controller, its motor or -1, the mounting sign, the
+    // direction of travel in the robot frame (right, forward) and the
+    // side, 1 for the wheels that go forward when turning clockwise.
+    private SpeedController[] m_controller = new SpeedController[0];
+    private int[] m_motor = new int[0];
+    private double[] m_sign = new double[0];
+    private double[] m_right = new double[0];
+    private double[] m_forward = new double[0];
+    private double[] m_side = new double[0];
+    // The chassis velocity (right, forward, clockwise rate) from the wheel
+    // speeds: kinematics[k * wheels + i].
+    private double[] m_kinematics = new double[0];
+    private double[] m_speed = new double[0];
+
+    private long m_lastUpdate = -1;
+    private double m_x;
+    private double m_y;
+    private double m_heading;
+    private double m_yawRate;
+
+    private PrintWriter m_poseLog;
+    private long m_nextPoseLog;
+
+    public static DrivetrainSimulator getInstance() {
+	return instance;
+    }
+
+    // The motor of a controller, or -1 if it has none.
+    private int motorOf(SpeedController c) {
+	while (c instanceof SpeedControllerGroup)
+	    c = ((SpeedControllerGroup)c).getSpeedControllers()[0];
+	if (c instanceof BaseMotorController)
+	    return m_physics.indexOf((c instanceof VictorSPX ? "victorspx:" : "talonsrx:")
+				     + ((BaseMotorController)c).getDeviceID());
+	if (c instanceof CANSparkMaxLowLevel)
+	    return m_physics.indexOf("sparkmax:" + ((CANSparkMaxLowLevel)c).getDeviceId());
+	return -1;
+    }
+
+    private boolean setDrive(String drive, SpeedController... wheels) {
+	if (m_drive != null) {
+	    System.err.println("Only one drivetrain is simulated, ignoring " + drive);
+	    return false;
+	}
+	int n = wheels.length;
+	m_drive = drive;
+	m_controller = wheels;
+	m_motor = new int[n];
+	m_sign = new double[n];
+	m_right = new double[n];
+	m_forward = new double[n];
+	m_side = new double[n];
+	m_kinematics = new double[3 * n];
+	m_speed = new double[n];
+	for (int i = 0; i < n; i++) {
+	    m_motor[i] = motorOf(wheels[i]);
+	    m_sign[i] = 1;
+	    m_forward[i] = 1;
+	    m_side[i] = 1;
+	}
+	m_physics.addController(this);
+	return true;
+    }
+
+    /**
+     * Simulate a DifferentialDrive.
+     */
+    public void setDifferentialDrive(SpeedController left, SpeedController right) {
+	synchronized (m_physics) {
+	    if (!setDrive("DifferentialDrive", left, right))
+		return;
+	    m_sign[1] = -1;
+	    m_side[1] = -1;
+	    updateKinematics();
+	}
+    }
+
+    /**
+     * Simulate a MecanumDrive, with 45 degree rollers.
+     */
+    public void setMecanumDrive(SpeedController frontLeft, SpeedController rearLeft,
+	    SpeedController frontRight, SpeedController rearRight) {
+	synchronized (m_physics) {
+	    if (!setDrive("MecanumDrive", frontLeft, rearLeft, frontRight, rearRight))
+		return;
+	    m_right[0] = 1;
+	    m_right[1] = -1;
+	    m_right[2] = -1;
+	    m_right[3] = 1;
+	    m_sign[2] = -1;
+	    m_sign[3] = -1;
+	    m_side[2] = -1;
+	    m_side[3] = -1;
+	    updateKinematics();
+	}
+    }
+
+    /**
+     * Simulate a KilloughDrive.
+     *
+     * @param leftAngle Angle of the direction of travel of the left wheel,
+     *        as given to the KilloughDrive, in degrees.
+     */
+    public void setKilloughDrive(SpeedController left, SpeedController right, SpeedController back,
+	    double leftAngle, double rightAngle, double backAngle) {
+	synchronized (m_physics) {
+	    if (!setDrive("KilloughDrive", left, right, back))
+		return;
+	    double[] angles = { leftAngle, rightAngle, backAngle };
+	    for (int i = 0; i < 3; i++) {
+		m_right[i] = Math.cos(Math.toRadians(angles[i]));
+		m_forward[i] = Math.sin(Math.toRadians(angles[i]));
+	    }
+	    updateKinematics();
+	}
+    }
+
+    // Precompute the pseudo-inverse of the wheel kinematics.  A component
+    // no wheel can drive (sideways for a differential drive) is left 0.
+    private void updateKinematics() {
+	int n = m_controller.length;
+	double rotation = m_trackWidth / 2;
+	if (m_drive.equals("MecanumDrive"))
+	    rotation += m_wheelBase / 2;
+	double[][] a = new double[n][3];
+	for (int i = 0; i < n; i++) {
+	    a[i][0] = m_right[i];
+	    a[i][1] = m_forward[i];
+	    a[i][2] = m_side[i] * rotation;
+	}
+	double[][] ata = new double[3][3];
+	for (int j = 0; j < 3; j++) {
+	    for (int k = 0; k < 3; k++) {
+		for (int i = 0; i < n; i++)
+		    ata[j][k] += a[i][j] * a[i][k];
+	    }
+	}
+	for (int j = 0; j < 3; j++) {
+	    if (ata[j][j] == 0)
+		ata[j][j] = 1;
+	}
+	double[][] inv = invert(ata);
+	for (int k = 0; k < 3; k++) {
+	    for (int i = 0; i < n; i++) {
+		double v = 0;
+		for (int j = 0; j < 3; j++)
+		    v += inv[k][j] * a[i][j];
+		m_kinematics[k * n + i] = v;
+	    }
+	}
+    }
+
+    private static double[][] invert(double[][] m) {
+	double det = m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1])
+		- m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0])
+		+ m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+	double[][] inv = new double[3][3];
+	for (int r = 0; r < 3; r++) {
+	    for (int c = 0; c < 3; c++) {
+		// Cofactor of (c, r), for the adjugate.
+		int r0 = (c + 1) % 3, r1 = (c + 2) % 3, c0 = (r + 1) % 3, c1 = (r + 2) % 3;
+		inv[r][c] = (m[r0][c0] * m[r1][c1] - m[r0][c1] * m[r1][c0]) / det;
+	    }
+	}
+	return inv;
+    }
+
+    /**
+     * Handle the drive.model and drive.pose commands.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public boolean processCommand(String[] cmd) {
+	boolean model = cmd[0].equalsIgnoreCase("drive.model");
+	if (!model && !cmd[0].equalsIgnoreCase("drive.pose"))
+	    return false;
+	if (model ? cmd.length < 4 || cmd.length > 5 : cmd.length != 4)
+	    throw new IllegalArgumentException("Invalid number of arguments to " + cmd[0]);
+	double[] v = new double[cmd.length - 1];
+	try {
+	    for (int i = 0; i < v.length; i++)
+		v[i] = Double.parseDouble(cmd[i + 1]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	synchronized (m_physics) {
+	    m_physics.update();
+	    if (model) {
+		for (double d : v) {
+		    if (!(d > 0))
+			throw new IllegalArgumentException("drive.model values must be positive");
+		}
+		m_trackWidth = v[0];
+		m_wheelBase = v[1];
+		m_wheelDiameter = v[2];
+		if (v.length > 3)
+		    m_maxSpeed = v[3];
+		if (m_drive != null)
+		    updateKinematics();
+	    } else {
+		m_x = v[0];
+		m_y = v[1];
+		m_heading = Math.toRadians(v[2]);
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Record the pose every {@link #kPoseLogMicros} of emulated time, as
+     * "time,x,y,heading" lines.
+     */
+    public void setPoseLog(PrintWriter log) {
+	synchronized (m_physics) {
+	    m_poseLog = log;
+	    m_poseLog.println("time,x,y,heading");
+	}
+    }
+
+    /**
+     * Flush the pose log.
+     */
+    public void close() {
+	synchronized (m_physics) {
+	    if (m_poseLog != null)
+		m_poseLog.close();
+	    m_poseLog = null;
+	}
+    }
+
+    @Override
+    public boolean isActive() {
+	return true;
+    }
+
+    @Override
+    public void update(long now) {
+	if (m_lastUpdate < 0)
+	    m_lastUpdate = now;
+	double dt = (now - m_lastUpdate) / 1e6;
+	m_lastUpdate = now;
+	int n = m_controller.length;
+	boolean enabled = m_physics.isEnabled();
+	for (int i = 0; i < n; i++) {
+	    double speed;
+	    if (m_motor[i] >= 0)
+		speed = m_physics.getShaftVelocity(m_motor[i]) * m_wheelDiameter / 2;
+	    else
+		speed = enabled ? m_controller[i].get() * m_maxSpeed : 0;
+	    m_speed[i] = speed * m_sign[i];
+	}
+	double right = 0, forward = 0, clockwise = 0;
+	for (int i = 0; i < n; i++) {
+	    right += m_kinematics[i] * m_speed[i];
+	    forward += m_kinematics[n + i] * m_speed[i];
+	    clockwise += m_kinematics[2 * n + i] * m_speed[i];
+	}
+	m_yawRate = -clockwise;
+	double heading = m_heading + m_yawRate * dt / 2;
+	double cos = Math.cos(heading), sin = Math.sin(heading);
+	m_x += (forward * cos + right * sin) * dt;
+	m_y += (forward * sin - right * cos) * dt;
+	m_heading += m_yawRate * dt;
+	if (m_poseLog != null && now >= m_nextPoseLog) {
+	    m_poseLog.printf("%.6f,%.4f,%.4f,%.3f\n", now / 1e6, m_x, m_y, Math.toDegrees(m_heading));
+	    m_nextPoseLog = now + kPoseLogMicros;
+	}
+    }
+
+    /**
+     * @return true if the robot program created a drive.
+     */
+    public boolean hasDrivetrain() {
+	synchronized (m_physics) {
+	    return m_drive != null;
+	}
+    }
+
+    /**
+     * @return X position on the field, meters.
+     */
+    public double getX() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return m_x;
+	}
+    }
+
+    /**
+     * @return Y position on the field, meters.
+     */
+    public double getY() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return m_y;
+	}
+    }
+
+    /**
+     * @return Heading, degrees counter-clockwise from the field X axis,
+     *         not wrapped.
+     */
+    public double getHeading() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return Math.toDegrees(m_heading);
+	}
+    }
+
+    /**
+     * @return Yaw rate, degrees per second counter-clockwise.
+     */
+    public double getYawRate() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return Math.toDegrees(m_yawRate);
+	}
+    }
+}
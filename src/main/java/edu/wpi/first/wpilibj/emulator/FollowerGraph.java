@@ -0,0 +1,142 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Follower relationships between the motors of {@link MotorPhysics}.
+ *
+ * <p>Motor controllers register their motor under their CAN arbitration
+ * id, and followers name their leader by arbitration id as they do on
+ * the bus, so a follower may be configured before its leader exists.
+ * Whenever the relationships change the graph is resolved once: leaders
+ * are looked up, cycles are reported and broken, and the followers are
+ * ordered so that every leader comes before its followers.  Propagating
+ * the outputs is then a single pass over primitive arrays.
+ *
+ * <p>A follower either copies the output of its leader, or the demand of
+ * its leader before the leader's inversion (CTRE followers that are not
+ * FollowMaster or OpposeMaster), times a gain of +1 or -1.  A follower
+ * whose leader is missing, or that is part of a cycle, is neutral.
+ */
+class FollowerGraph {
+    private final Map<Integer, Integer> m_byArbId = new HashMap<>();
+
+    // Per motor, as configured.
+    private int[] m_leaderArbId = new int[16];
+    private double[] m_gain = new double[16];
+    private boolean[] m_followsDemand = new boolean[16];
+    private boolean m_dirty;
+
+    // The resolved followers, in propagation order.
+    private int m_count;
+    private int[] m_follower = new int[16];
+    private int[] m_leader = new int[16];
+    private double[] m_orderGain = new double[16];
+    private boolean[] m_orderDemand = new boolean[16];
+
+    private void grow(int m) {
+	if (m < m_leaderArbId.length)
+	    return;
+	int n = Math.max(m + 1, m_leaderArbId.length * 2);
+	m_leaderArbId = Arrays.copyOf(m_leaderArbId, n);
+	m_gain = Arrays.copyOf(m_gain, n);
+	m_followsDemand = Arrays.copyOf(m_followsDemand, n);
+	m_follower = Arrays.copyOf(m_follower, n);
+	m_leader = Arrays.copyOf(m_leader, n);
+	m_orderGain = Arrays.copyOf(m_orderGain, n);
+	m_orderDemand = Arrays.copyOf(m_orderDemand, n);
+    }
+
+    void register(int m, int arbId) {
+	grow(m);
+	m_byArbId.put(arbId, m);
+	m_dirty = true;
+    }
+
+    /**
+     * @param leaderArbId Arbitration id of the leader, 0 to stop following.
+     */
+    void follow(int m, int leaderArbId, double gain, boolean followsDemand) {
+	grow(m);
+	if (m_leaderArbId[m] == leaderArbId && m_gain[m] == gain && m_followsDemand[m] == followsDemand)
+	    return;
+	m_leaderArbId[m] = leaderArbId;
+	m_gain[m] = gain;
+	m_followsDemand[m] = followsDemand;
+	m_dirty = true;
+    }
+
+    boolean isFollower(int m) {
+	return m < m_leaderArbId.length && m_leaderArbId[m] != 0;
+    }
+
+    // Order the followers, leaders first, and break the cycles.
+    private void resolve(int motors, String[] names) {
+	grow(motors);
+	int[] leader = new int[motors];
+	for (int m = 0; m < motors; m++) {
+	    Integer l = m_leaderArbId[m] == 0 ? null : m_byArbId.get(m_leaderArbId[m]);
+	    leader[m] = l == null ? -1 : l;
+	}
+	// 0: not visited, 1: on the current chain, 2: ordered.
+	byte[] state = new byte[motors];
+	int[] chain = new int[motors];
+	m_count = 0;
+	for (int m = 0; m < motors; m++) {
+	    if (!isFollower(m) || state[m] != 0)
+		continue;
+	    // Walk up the leaders until an ordered motor, a motor that
+	    // does not follow, or a motor already on the chain.
+	    int length = 0;
+	    int cur = m;
+	    while (cur >= 0 && isFollower(cur) && state[cur] == 0) {
+		state[cur] = 1;
+		chain[length++] = cur;
+		cur = leader[cur];
+	    }
+	    if (cur >= 0 && state[cur] == 1) {
+		StringBuilder cycle = new StringBuilder("Follower cycle: ");
+		int start = 0;
+		while (chain[start] != cur)
+		    start++;
+		for (int i = start; i < length; i++) {
+		    cycle.append(names[chain[i]]).append(" -> ");
+		    leader[chain[i]] = -1;
+		}
+		System.err.println(cycle.append(names[cur]));
+	    }
+	    for (int i = length - 1; i >= 0; i--) {
+		int f = chain[i];
+		state[f] = 2;
+		m_follower[m_count] = f;
+		m_leader[m_count] = leader[f];
+		m_orderGain[m_count] = m_gain[f];
+		m_orderDemand[m_count] = m_followsDemand[f];
+		m_count++;
+	    }
+	}
+	m_dirty = false;
+    }
+
+    /**
+     * Set the output of every follower from its leader.
+     *
+     * @param motors Number of motors.
+     * @param output Output duty cycles, indexed by motor.
+     * @param sign -1 for the motors whose controller inverts its output.
+     * @param names Motor names, for the error messages.
+     */
+    void propagate(int motors, double[] output, double[] sign, String[] names) {
+	if (m_dirty)
+	    resolve(motors, names);
+	for (int i = 0; i < m_count; i++) {
+	    int l = m_leader[i];
+	    double v = 0;
+	    if (l >= 0)
+		v = output[l] * m_orderGain[i] * (m_orderDemand[i] ? sign[l] : 1);
+	    output[m_follower[i]] = v;
+	}
+    }
+}
@@ -0,0 +1,83 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * A mechanism driven by simulated motors: an arm, an elevator, a flywheel.
+ *
+ * <p>The mechanism takes over the motion of the motors it names from the
+ * simple inertia model of {@link MotorPhysics}.  Its state is a vector of
+ * doubles, which MotorPhysics integrates at a fixed rate from the
+ * derivative the mechanism computes out of the torques of its motors.
+ * The encoders of the motor controllers then report the positions and
+ * velocities the mechanism gives for its motors, and the motors draw
+ * current from the battery at those speeds.
+ *
+ * <p>Mechanisms are found with {@link java.util.ServiceLoader}: list the
+ * implementing classes in
+ * META-INF/services/edu.wpi.first.wpilibj.emulator.Mechanism on the class
+ * path, or, in a module, declare them with
+ * <pre>
+ *   provides edu.wpi.first.wpilibj.emulator.Mechanism with &lt;class&gt;;
+ * </pre>
+ * They can also be added with {@link MotorPhysics#addMechanism}.
+ * The command file passes settings to a mechanism by name:
+ * <pre>
+ *   mechanism &lt;name&gt; &lt;arguments&gt;...
+ * </pre>
+ *
+ * <p>The methods are called with the physics lock held, on every step,
+ * and must not allocate or block.
+ */
+public interface Mechanism {
+    /**
+     * @return The name of the mechanism in the command file.
+     */
+    String getName();
+
+    /**
+     * @return The motors driving the mechanism, named as in motor.model,
+     *         e.g. "talonsrx:3", "sparkmax:7" or "pwm:2".  The motor.model of
+     *         each gives its motor, count and gearing to the output shaft.
+     */
+    String[] getMotors();
+
+    /**
+     * @return The number of state variables.
+     */
+    int getStateSize();
+
+    /**
+     * Set the initial state.
+     */
+    void initialize(double[] state);
+
+    /**
+     * Compute the derivative of the state.
+     *
+     * @param state The state.
+     * @param torque The torque of each motor on its output shaft, Nm, in
+     *        the order of {@link #getMotors}.
+     * @param derivative Filled with the derivative of each state variable
+     *        with respect to time, in seconds.
+     */
+    void derivative(double[] state, double[] torque, double[] derivative);
+
+    /**
+     * @return The position of the output shaft of a motor, radians.
+     */
+    double getPosition(double[] state, int motor);
+
+    /**
+     * @return The speed of the output shaft of a motor, radians per
+     *         second.
+     */
+    double getVelocity(double[] state, int motor);
+
+    /**
+     * Handle the arguments of a mechanism command.
+     *
+     * @throws IllegalArgumentException if they are not valid.
+     */
+    default void configure(String[] args) {
+	throw new IllegalArgumentException("Mechanism " + getName() + " takes no arguments");
+    }
+}
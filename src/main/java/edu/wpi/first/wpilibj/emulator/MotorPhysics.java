@@ -0,0 +1,968 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Physics of every emulated motor: a DC motor model driving an inertia
+ * through a gearbox.
+ *
+ * <p>The state of all motors is kept in parallel primitive arrays and
+ * advanced together, lazily, whenever a motor is read or driven and the
+ * emulated time has moved.  The controllers set the output duty cycle of
+ * their motor, and the motor sees that fraction of the bus voltage.  The
+ * applied voltage is constant between two updates, so each step uses the
+ * exact solution of the first order motor equation, which is stable for
+ * any step length:
+ * <pre>
+ *   dw/dt = (n Kt G / (J R)) (V - G w / Kv)
+ * </pre>
+ * where w is the speed of the output shaft, G the gear reduction, n the
+ * number of motors in the gearbox and J the inertia at the output shaft.
+ *
+ * <p>Motors are registered by name, "talonsrx:&lt;CAN id&gt;" and
+ * "victorspx:&lt;CAN id&gt;" for the CTRE controllers and
+ * "sparkmax:&lt;CAN id&gt;" for the SPARK MAX.  The model of
+ * a motor is set with the command file
+ * <pre>
+ *   motor.model &lt;name&gt; &lt;motor&gt; [&lt;count&gt; [&lt;gearing&gt; [&lt;inertia&gt; [&lt;counts per rev&gt;]]]]
+ * </pre>
+ * before or after the motor is created.  Motors without a model are a
+ * single CIM on a 1:1 gearbox driving 0.001 kg m^2, with a 4096 count
+ * encoder on the output shaft, unless the controller gives another
+ * default (a NEO and its 42 count hall sensor for a brushless SPARK MAX).
+ *
+ * <p>Motor controllers register their motor under their CAN arbitration id
+ * so that other controllers can follow it, see {@link FollowerGraph}.  The
+ * output of a follower is always derived from its leader.
+ *
+ * <p>The bus voltage is the voltage of the {@link BatteryModel} under the
+ * current drawn by all motors and other loads, solved at each step, and
+ * discharges the battery.  When it falls below {@link #kBrownoutVoltage}
+ * the robot browns out: the outputs are disabled until the voltage is
+ * back above {@link #kBrownoutRecoveryVoltage}, as the roboRIO does.
+ *
+ * <p>Each motor of a gearbox carries its share of the current and heats
+ * as given by the thermal model of {@link DCMotor}, from the ambient
+ * temperature:
+ * <pre>
+ *   thermal.ambient &lt;C&gt; [&lt;overheat C&gt;]
+ * </pre>
+ * Motors reaching the overheat temperature, 100C by default, are reported
+ * on standard error.
+ *
+ * <p>Motor controller firmware that closes loops on the simulated sensors
+ * registers a {@link Controller}.  While one is active, or while the
+ * motors draw current, the motors are advanced in {@link #kTickMicros}
+ * steps and the controllers run between the steps, as they would on the
+ * real hardware.  The controllers are
+ * called with the physics lock held, and must not block.
+ *
+ * <p>A {@link Mechanism} takes over the motion of its motors: its state is
+ * integrated with the fourth order Runge-Kutta method from the torques of
+ * its motors, and gives their positions and speeds.  Each
+ * {@link #kTickMicros} tick is split in substeps for stiff mechanisms:
+ * <pre>
+ *   physics.rate &lt;Hz&gt;
+ * </pre>
+ * sets the rate of the substeps, a multiple of the 1 kHz tick.  The bus
+ * voltage and the outputs are held over a tick.  The wall clock time
+ * spent stepping is measured, see {@link #reportCost}.
+ */
+public class MotorPhysics {
+    public static final double kDefaultInertia = 0.001;
+    public static final int kDefaultCountsPerRev = 4096;
+    public static final long kTickMicros = 1000;
+    public static final double kBrownoutVoltage = 6.8;
+    public static final double kBrownoutRecoveryVoltage = 7.5;
+    public static final double kDefaultAmbient = 25;
+    public static final double kDefaultOverheat = 100;
+    // Below the overheat temperature by this much, a motor is reported
+    // again when it overheats.
+    private static final double kOverheatHysteresis = 10;
+
+    /**
+     * Emulated motor controller firmware.
+     */
+    public interface Controller {
+	/**
+	 * @return true while the firmware needs to run every tick.
+	 */
+	boolean isActive();
+
+	/**
+	 * Run the firmware at the given FPGA time.
+	 */
+	void update(long now);
+    }
+
+    // The model of a motor, as given to motor.model.
+    private static class Model {
+	DCMotor m_motor = DCMotor.kCIM;
+	int m_count = 1;
+	double m_gearing = 1;
+	double m_inertia = kDefaultInertia;
+	int m_countsPerRev = kDefaultCountsPerRev;
+    }
+
+    // A limit switch given by limit.switch: pressed as scripted, or
+    // beyond a position of the mechanism.
+    private static class LimitSwitch {
+	boolean m_scripted;
+	boolean m_pressed;
+	double m_position;
+    }
+
+    // A mechanism, the indices of its motors, -1 until they are added,
+    // and the arrays of its integration.
+    private static class Plant {
+	final Mechanism m_mechanism;
+	final String[] m_motorNames;
+	final int[] m_motors;
+	final double[] m_torque;
+	final double[] m_state;
+	final double[] m_stage;
+	final double[] m_derivative;
+	final double[] m_sum;
+
+	Plant(Mechanism mechanism) {
+	    m_mechanism = mechanism;
+	    m_motorNames = mechanism.getMotors().clone();
+	    m_motors = new int[m_motorNames.length];
+	    Arrays.fill(m_motors, -1);
+	    m_torque = new double[m_motorNames.length];
+	    int n = mechanism.getStateSize();
+	    m_state = new double[n];
+	    m_stage = new double[n];
+	    m_derivative = new double[n];
+	    m_sum = new double[n];
+	}
+    }
+
+    private static final MotorPhysics instance = new MotorPhysics();
+
+    private final Map<String, Integer> m_byName = new HashMap<>();
+    private final Map<String, Model> m_models = new HashMap<>();
+    private final Map<String, LimitSwitch> m_forwardLimits = new HashMap<>();
+    private final Map<String, LimitSwitch> m_reverseLimits = new HashMap<>();
+    private final List<Controller> m_controllers = new ArrayList<>();
+    private final List<Plant> m_plants = new ArrayList<>();
+    private final FollowerGraph m_followers = new FollowerGraph();
+    private final BatteryModel m_battery = new BatteryModel();
+    private boolean m_enabled;
+    private boolean m_brownedOut;
+    private double m_busVoltage = BatteryModel.kDefaultVoltage;
+    private double m_batteryCurrent;
+    // Other loads on the battery, such as the compressor.
+    private final Map<String, Double> m_loads = new HashMap<>();
+    private double m_loadCurrent;
+    private int m_brownouts;
+    private long m_lastBrownoutReport = -1;
+    private double m_ambient = kDefaultAmbient;
+    private double m_overheat = kDefaultOverheat;
+    private boolean m_stepping;
+    private long m_lastStep = -1;
+    private int m_substeps = 1;
+    // The cost of the steps.
+    private long m_ticks;
+    private long m_steppedMicros;
+    private long m_stepNanos;
+
+    private int m_count;
+    private String[] m_name = new String[16];
+    private Model[] m_model = new Model[16];
+    // Coefficients derived from the model.
+    private double[] m_speedPerVolt = new double[16];
+    private double[] m_rate = new double[16];
+    private double[] m_currentPerVolt = new double[16];
+    private double[] m_currentPerSpeed = new double[16];
+    private double[] m_countsPerRadian = new double[16];
+    private double[] m_torquePerVolt = new double[16];
+    // Index in m_plants of the mechanism driven by the motor, or -1.
+    private int[] m_plant = new int[16];
+    private double[] m_heatPerAmp2 = new double[16];
+    private double[] m_thermalResistance = new double[16];
+    private double[] m_thermalRate = new double[16];
+    // Inputs and state.
+    private double[] m_output = new double[16];
+    private double[] m_outputSign = new double[16];
+    private double[] m_position = new double[16];
+    private double[] m_velocity = new double[16];
+    private double[] m_current = new double[16];
+    private double[] m_temperature = new double[16];
+    private boolean[] m_overheated = new boolean[16];
+
+    public static MotorPhysics getInstance() {
+	return instance;
+    }
+
+    /**
+     * Add a motor.
+     *
+     * @return The motor index used by the other methods.
+     */
+    public int add(String name) {
+	return add(name, DCMotor.kCIM, kDefaultCountsPerRev);
+    }
+
+    /**
+     * Add a motor, with the motor and encoder used when the command file
+     * does not give a model.
+     *
+     * @return The motor index used by the other methods.
+     */
+    public synchronized int add(String name, DCMotor defaultMotor, int defaultCountsPerRev) {
+	Integer existing = m_byName.get(name);
+	if (existing != null)
+	    return existing;
+	int m = m_count;
+	if (m == m_name.length) {
+	    int n = m * 2;
+	    m_name = Arrays.copyOf(m_name, n);
+	    m_model = Arrays.copyOf(m_model, n);
+	    m_speedPerVolt = Arrays.copyOf(m_speedPerVolt, n);
+	    m_rate = Arrays.copyOf(m_rate, n);
+	    m_currentPerVolt = Arrays.copyOf(m_currentPerVolt, n);
+	    m_currentPerSpeed = Arrays.copyOf(m_currentPerSpeed, n);
+	    m_countsPerRadian = Arrays.copyOf(m_countsPerRadian, n);
+	    m_torquePerVolt = Arrays.copyOf(m_torquePerVolt, n);
+	    m_plant = Arrays.copyOf(m_plant, n);
+	    m_heatPerAmp2 = Arrays.copyOf(m_heatPerAmp2, n);
+	    m_thermalResistance = Arrays.copyOf(m_thermalResistance, n);
+	    m_thermalRate = Arrays.copyOf(m_thermalRate, n);
+	    m_output = Arrays.copyOf(m_output, n);
+	    m_outputSign = Arrays.copyOf(m_outputSign, n);
+	    m_position = Arrays.copyOf(m_position, n);
+	    m_velocity = Arrays.copyOf(m_velocity, n);
+	    m_current = Arrays.copyOf(m_current, n);
+	    m_temperature = Arrays.copyOf(m_temperature, n);
+	    m_overheated = Arrays.copyOf(m_overheated, n);
+	}
+	m_name[m] = name;
+	m_outputSign[m] = 1;
+	m_plant[m] = -1;
+	m_temperature[m] = m_ambient;
+	m_count = m + 1;
+	m_byName.put(name, m);
+	Model model = m_models.get(name);
+	if (model == null) {
+	    model = new Model();
+	    model.m_motor = defaultMotor;
+	    model.m_countsPerRev = defaultCountsPerRev;
+	}
+	setModel(m, model);
+	for (int i = 0; i < m_plants.size(); i++)
+	    bind(i);
+	return m;
+    }
+
+    /**
+     * Add a mechanism, which drives its motors from now on.
+     *
+     * @throws IllegalArgumentException if another mechanism has the same
+     *         name, or drives one of its motors.
+     */
+    public synchronized void addMechanism(Mechanism mechanism) {
+	step();
+	Plant plant = new Plant(mechanism);
+	for (Plant p : m_plants) {
+	    if (p.m_mechanism.getName().equalsIgnoreCase(mechanism.getName()))
+		throw new IllegalArgumentException("Duplicate mechanism " + mechanism.getName());
+	    for (String a : p.m_motorNames) {
+		for (String b : plant.m_motorNames) {
+		    if (a.equals(b))
+			throw new IllegalArgumentException("Motor " + a + " drives mechanisms " +
+							   p.m_mechanism.getName() + " and " + mechanism.getName());
+		}
+	    }
+	}
+	mechanism.initialize(plant.m_state);
+	m_plants.add(plant);
+	bind(m_plants.size() - 1);
+	updateBus();
+    }
+
+    /**
+     * Add the mechanisms listed in the META-INF/services files on the
+     * class path.
+     */
+    public void loadMechanisms() {
+	for (Mechanism mechanism : ServiceLoader.load(Mechanism.class))
+	    addMechanism(mechanism);
+    }
+
+    // Look up the motors of a mechanism that were added since, and move
+    // them to the state of the mechanism.
+    private void bind(int index) {
+	Plant plant = m_plants.get(index);
+	for (int i = 0; i < plant.m_motors.length; i++) {
+	    if (plant.m_motors[i] >= 0)
+		continue;
+	    Integer m = m_byName.get(plant.m_motorNames[i]);
+	    if (m == null)
+		continue;
+	    plant.m_motors[i] = m;
+	    m_plant[m] = index;
+	}
+	readPlant(plant);
+    }
+
+    private void readPlant(Plant plant) {
+	for (int i = 0; i < plant.m_motors.length; i++) {
+	    int m = plant.m_motors[i];
+	    if (m < 0)
+		continue;
+	    m_position[m] = plant.m_mechanism.getPosition(plant.m_state, i);
+	    m_velocity[m] = plant.m_mechanism.getVelocity(plant.m_state, i);
+	}
+    }
+
+    // mechanism <name> <arguments>...
+    private void processMechanism(String[] cmd) {
+	if (cmd.length < 2)
+	    throw new IllegalArgumentException("Invalid number of arguments to mechanism");
+	synchronized (this) {
+	    step();
+	    for (Plant plant : m_plants) {
+		if (plant.m_mechanism.getName().equalsIgnoreCase(cmd[1])) {
+		    plant.m_mechanism.configure(Arrays.copyOfRange(cmd, 2, cmd.length));
+		    plant.m_mechanism.initialize(plant.m_state);
+		    readPlant(plant);
+		    updateBus();
+		    return;
+		}
+	    }
+	}
+	throw new IllegalArgumentException("Unknown mechanism '" + cmd[1] + "'");
+    }
+
+    private void setModel(int m, Model model) {
+	DCMotor motor = model.m_motor;
+	double g = model.m_gearing;
+	double k = model.m_count * motor.Kt * g / (model.m_inertia * motor.R);
+	m_model[m] = model;
+	m_speedPerVolt[m] = motor.Kv / g;
+	m_rate[m] = k * g / motor.Kv;
+	m_currentPerVolt[m] = model.m_count / motor.R;
+	m_currentPerSpeed[m] = model.m_count * g / (motor.R * motor.Kv);
+	m_countsPerRadian[m] = model.m_countsPerRev / (2 * Math.PI);
+	m_torquePerVolt[m] = model.m_count * motor.Kt * g / motor.R;
+	// Each motor of the gearbox carries 1/n of the current.
+	m_heatPerAmp2[m] = motor.R / (model.m_count * model.m_count);
+	m_thermalResistance[m] = motor.thermalResistance;
+	m_thermalRate[m] = 1 / (motor.thermalResistance * motor.heatCapacity);
+    }
+
+    // limit.switch <device> forward|reverse pressed|released|<position>|none
+    private void processLimitSwitch(String[] cmd) {
+	if (cmd.length != 4)
+	    throw new IllegalArgumentException("Invalid number of arguments to limit.switch");
+	Map<String, LimitSwitch> limits;
+	if (cmd[2].equalsIgnoreCase("forward"))
+	    limits = m_forwardLimits;
+	else if (cmd[2].equalsIgnoreCase("reverse"))
+	    limits = m_reverseLimits;
+	else
+	    throw new IllegalArgumentException("Invalid limit switch '" + cmd[2] + "'");
+	LimitSwitch limit = new LimitSwitch();
+	if (cmd[3].equalsIgnoreCase("pressed") || cmd[3].equalsIgnoreCase("released")) {
+	    limit.m_scripted = true;
+	    limit.m_pressed = cmd[3].equalsIgnoreCase("pressed");
+	} else if (!cmd[3].equalsIgnoreCase("none")) {
+	    try {
+		limit.m_position = Double.parseDouble(cmd[3]);
+	    } catch (NumberFormatException nfe) {
+		throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	    }
+	}
+	synchronized (this) {
+	    step();
+	    if (cmd[3].equalsIgnoreCase("none"))
+		limits.remove(cmd[1]);
+	    else
+		limits.put(cmd[1], limit);
+	}
+    }
+
+    /**
+     * Handle the motor.model, battery.model, limit.switch, mechanism and
+     * physics.rate commands.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public boolean processCommand(String[] cmd) {
+	if (cmd[0].equalsIgnoreCase("limit.switch")) {
+	    processLimitSwitch(cmd);
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("mechanism")) {
+	    processMechanism(cmd);
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("thermal.ambient")) {
+	    // thermal.ambient <C> [<overheat C>]
+	    if (cmd.length != 2 && cmd.length != 3)
+		throw new IllegalArgumentException("Invalid number of arguments to thermal.ambient");
+	    double ambient;
+	    double overheat = kDefaultOverheat;
+	    try {
+		ambient = Double.parseDouble(cmd[1]);
+		if (cmd.length > 2)
+		    overheat = Double.parseDouble(cmd[2]);
+	    } catch (NumberFormatException nfe) {
+		throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	    }
+	    if (!(overheat > ambient))
+		throw new IllegalArgumentException("The overheat temperature must be above the ambient");
+	    synchronized (this) {
+		step();
+		// Keep the heating of the motors above the ambient.
+		for (int m = 0; m < m_count; m++)
+		    m_temperature[m] += ambient - m_ambient;
+		m_ambient = ambient;
+		m_overheat = overheat;
+	    }
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("physics.rate")) {
+	    // physics.rate <Hz>
+	    if (cmd.length != 2)
+		throw new IllegalArgumentException("Invalid number of arguments to physics.rate");
+	    long rate;
+	    try {
+		rate = Long.parseLong(cmd[1]);
+	    } catch (NumberFormatException nfe) {
+		throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	    }
+	    long tickRate = 1000000 / kTickMicros;
+	    if (rate < tickRate || rate % tickRate != 0 || rate / tickRate > 1000)
+		throw new IllegalArgumentException("physics.rate must be a multiple of " + tickRate + "Hz");
+	    synchronized (this) {
+		step();
+		m_substeps = (int) (rate / tickRate);
+	    }
+	    return true;
+	}
+	if (cmd[0].equalsIgnoreCase("battery.model")) {
+	    synchronized (this) {
+		step();
+		m_battery.processCommand(cmd);
+		updateBus();
+	    }
+	    return true;
+	}
+	if (!cmd[0].equalsIgnoreCase("motor.model"))
+	    return false;
+	if (cmd.length < 3 || cmd.length > 7)
+	    throw new IllegalArgumentException("Invalid number of arguments to motor.model");
+	Model model = new Model();
+	model.m_motor = DCMotor.fromName(cmd[2]);
+	if (model.m_motor == null)
+	    throw new IllegalArgumentException("Unknown motor '" + cmd[2] + "'");
+	try {
+	    if (cmd.length > 3)
+		model.m_count = Integer.parseInt(cmd[3]);
+	    if (cmd.length > 4)
+		model.m_gearing = Double.parseDouble(cmd[4]);
+	    if (cmd.length > 5)
+		model.m_inertia = Double.parseDouble(cmd[5]);
+	    if (cmd.length > 6)
+		model.m_countsPerRev = Integer.parseInt(cmd[6]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	if (model.m_count < 1 || !(model.m_gearing > 0) || !(model.m_inertia > 0) || model.m_countsPerRev < 1)
+	    throw new IllegalArgumentException("motor.model values must be positive");
+	synchronized (this) {
+	    step();
+	    m_models.put(cmd[1], model);
+	    Integer m = m_byName.get(cmd[1]);
+	    if (m != null)
+		setModel(m, model);
+	}
+	return true;
+    }
+
+    /**
+     * Register the CAN arbitration id of the controller of a motor, for
+     * its followers.
+     */
+    public synchronized void registerDevice(int m, int arbId) {
+	step();
+	m_followers.register(m, arbId);
+	propagate();
+    }
+
+    /**
+     * Make a motor follow the motor of another controller.
+     *
+     * @param leaderArbId Arbitration id of the leader, 0 to stop following.
+     * @param gain +1 or -1.
+     * @param followsDemand true to follow the output of the leader before
+     *        its inversion, false to follow its output.
+     */
+    public synchronized void follow(int m, int leaderArbId, double gain, boolean followsDemand) {
+	step();
+	boolean wasFollower = m_followers.isFollower(m);
+	m_followers.follow(m, leaderArbId, gain, followsDemand);
+	if (wasFollower && leaderArbId == 0)
+	    m_output[m] = 0;
+	propagate();
+    }
+
+    public synchronized boolean isFollower(int m) {
+	return m_followers.isFollower(m);
+    }
+
+    /**
+     * Tell the followers that the controller of a motor inverts its
+     * output.
+     */
+    public synchronized void setInverted(int m, boolean inverted) {
+	step();
+	m_outputSign[m] = inverted ? -1 : 1;
+	propagate();
+    }
+
+    // Apply the leader outputs to the followers.
+    private void propagate() {
+	m_followers.propagate(m_count, m_output, m_outputSign, m_name);
+	updateBus();
+    }
+
+    private boolean outputsEnabled() {
+	return m_enabled && !m_brownedOut;
+    }
+
+    // Solve the bus voltage for the current outputs and speeds, and the
+    // currents, which respond at once.  The speeds will follow.
+    private void updateBus() {
+	solveBus();
+	if (m_brownedOut ? m_busVoltage >= kBrownoutRecoveryVoltage : m_busVoltage < kBrownoutVoltage) {
+	    m_brownedOut = !m_brownedOut;
+	    if (m_brownedOut)
+		reportBrownout();
+	    solveBus();
+	}
+	double on = outputsEnabled() ? 1 : 0;
+	for (int m = 0; m < m_count; m++)
+	    m_current[m] = m_output[m] * on * m_busVoltage * m_currentPerVolt[m] - m_velocity[m] * m_currentPerSpeed[m];
+    }
+
+    // Outputs cycle on and off while the load keeps browning out the
+    // robot, so report at most once a second.
+    private void reportBrownout() {
+	m_brownouts++;
+	if (m_lastBrownoutReport >= 0 && m_lastStep - m_lastBrownoutReport < 1000000)
+	    return;
+	System.err.printf("Brownout at %.2fV (%d brownouts)%n", m_busVoltage, m_brownouts);
+	m_lastBrownoutReport = m_lastStep;
+    }
+
+    // A motor draws d I = d^2 V / R - d w G / (R Kv) from the battery, so
+    // the load is linear in the bus voltage.
+    private void solveBus() {
+	double conductance = 0;
+	double backCurrent = 0;
+	if (outputsEnabled()) {
+	    for (int m = 0; m < m_count; m++) {
+		double d = m_output[m];
+		conductance += d * d * m_currentPerVolt[m];
+		backCurrent += d * m_velocity[m] * m_currentPerSpeed[m];
+	    }
+	}
+	m_busVoltage = m_battery.getVoltage(conductance, backCurrent - m_loadCurrent);
+	m_batteryCurrent = conductance * m_busVoltage - backCurrent + m_loadCurrent;
+    }
+
+    public synchronized void addController(Controller c) {
+	m_controllers.add(c);
+    }
+
+    /**
+     * Motor controllers only drive their motors while the robot is
+     * enabled.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+	step();
+	m_enabled = enabled;
+	updateBus();
+    }
+
+    /**
+     * @return true while the robot is enabled and not browned out.
+     */
+    public synchronized boolean isEnabled() {
+	return outputsEnabled();
+    }
+
+    private boolean controllersActive() {
+	for (Controller c : m_controllers) {
+	    if (c.isActive())
+		return true;
+	}
+	return false;
+    }
+
+    // Advance every motor to the current time, running the controllers
+    // on each tick when needed.  Motors loading the battery and
+    // mechanisms also step every tick, as the bus voltage changes with
+    // their speed.  Reads and writes made by the controllers do not step
+    // again.  The motors of the mechanisms move on the ticks only.
+    private void step() {
+	long now = RobotController.getFPGATime();
+	if (m_stepping)
+	    return;
+	if (m_lastStep < 0)
+	    m_lastStep = now;
+	if (m_lastStep >= now)
+	    return;
+	long start = System.nanoTime();
+	m_steppedMicros += now - m_lastStep;
+	m_stepping = true;
+	try {
+	    while (m_lastStep < now) {
+		if (m_batteryCurrent == 0 && m_plants.isEmpty() && !controllersActive()) {
+		    integrate(now - m_lastStep);
+		    m_lastStep = now;
+		    break;
+		}
+		long tick = (m_lastStep / kTickMicros + 1) * kTickMicros;
+		long t = Math.min(tick, now);
+		integrate(t - m_lastStep);
+		m_lastStep = t;
+		if (t == tick) {
+		    m_ticks++;
+		    if (!m_plants.isEmpty())
+			stepPlants();
+		    for (Controller c : m_controllers)
+			c.update(t);
+		}
+	    }
+	} finally {
+	    m_stepping = false;
+	    m_stepNanos += System.nanoTime() - start;
+	}
+    }
+
+    private void integrate(long micros) {
+	double dt = micros / 1e6;
+	double bus = outputsEnabled() ? m_busVoltage : 0;
+	m_battery.discharge(m_batteryCurrent, dt);
+	for (int m = 0; m < m_count; m++) {
+	    heat(m, dt);
+	    if (m_plant[m] >= 0)
+		continue;
+	    double v = m_output[m] * bus;
+	    double w0 = m_velocity[m];
+	    double wss = v * m_speedPerVolt[m];
+	    double decay = Math.exp(-m_rate[m] * dt);
+	    double w = wss + (w0 - wss) * decay;
+	    m_position[m] += wss * dt + (w0 - wss) * (1 - decay) / m_rate[m];
+	    m_velocity[m] = w;
+	}
+	updateBus();
+    }
+
+    // The motor temperature tends exponentially to where the I^2 R heat
+    // balances the cooling, for the current of the step.
+    private void heat(int m, double dt) {
+	double i = m_current[m];
+	double tss = m_ambient + i * i * m_heatPerAmp2[m] * m_thermalResistance[m];
+	m_temperature[m] = tss + (m_temperature[m] - tss) * Math.exp(-m_thermalRate[m] * dt);
+	if (m_overheated[m]) {
+	    if (m_temperature[m] < m_overheat - kOverheatHysteresis)
+		m_overheated[m] = false;
+	} else if (m_temperature[m] >= m_overheat) {
+	    m_overheated[m] = true;
+	    System.err.printf("Motor %s overheating at %.0fC after %.1fs%n", m_name[m], m_temperature[m],
+			      m_lastStep / 1e6);
+	}
+    }
+
+    // Advance the mechanisms by a tick, at the bus voltage of its start.
+    private void stepPlants() {
+	double h = kTickMicros / 1e6 / m_substeps;
+	double bus = outputsEnabled() ? m_busVoltage : 0;
+	for (Plant plant : m_plants) {
+	    for (int s = 0; s < m_substeps; s++)
+		rk4(plant, h, bus);
+	    readPlant(plant);
+	}
+	updateBus();
+    }
+
+    private void rk4(Plant plant, double h, double bus) {
+	double[] x = plant.m_state;
+	double[] stage = plant.m_stage;
+	double[] k = plant.m_derivative;
+	double[] sum = plant.m_sum;
+	derivative(plant, x, bus);
+	for (int j = 0; j < x.length; j++) {
+	    sum[j] = k[j];
+	    stage[j] = x[j] + h / 2 * k[j];
+	}
+	derivative(plant, stage, bus);
+	for (int j = 0; j < x.length; j++) {
+	    sum[j] += 2 * k[j];
+	    stage[j] = x[j] + h / 2 * k[j];
+	}
+	derivative(plant, stage, bus);
+	for (int j = 0; j < x.length; j++) {
+	    sum[j] += 2 * k[j];
+	    stage[j] = x[j] + h * k[j];
+	}
+	derivative(plant, stage, bus);
+	for (int j = 0; j < x.length; j++)
+	    x[j] += h / 6 * (sum[j] + k[j]);
+    }
+
+    // The motor torque is n Kt G (V - G w / Kv) / R at the output shaft.
+    private void derivative(Plant plant, double[] state, double bus) {
+	for (int i = 0; i < plant.m_motors.length; i++) {
+	    int m = plant.m_motors[i];
+	    if (m < 0) {
+		plant.m_torque[i] = 0;
+		continue;
+	    }
+	    double w = plant.m_mechanism.getVelocity(state, i);
+	    plant.m_torque[i] = m_torquePerVolt[m] * (m_output[m] * bus - w / m_speedPerVolt[m]);
+	}
+	plant.m_mechanism.derivative(state, plant.m_torque, plant.m_derivative);
+    }
+
+    /**
+     * Set the output duty cycle of a motor, from now on.  Followers keep
+     * the output given by their leader.
+     */
+    public synchronized void setOutput(int m, double output) {
+	step();
+	m_output[m] = output;
+	propagate();
+    }
+
+    /**
+     * @return The output duty cycle of the motor, 0 while disabled or
+     *         browned out.
+     */
+    public synchronized double getOutput(int m) {
+	step();
+	return outputsEnabled() ? m_output[m] : 0;
+    }
+
+    /**
+     * @return The voltage applied to the motor, 0 while disabled or
+     *         browned out.
+     */
+    public synchronized double getVoltage(int m) {
+	step();
+	return outputsEnabled() ? m_output[m] * m_busVoltage : 0;
+    }
+
+    /**
+     * @return Current drawn from the battery by the controller of the
+     *         motor, amps, negative when regenerating.
+     */
+    public synchronized double getSupplyCurrent(int m) {
+	step();
+	return outputsEnabled() ? m_output[m] * m_current[m] : 0;
+    }
+
+    /**
+     * Reduce an output so that the motor draws no more than a current at
+     * its present speed and bus voltage, as a controller limiting its
+     * current does.
+     *
+     * @param output Output duty cycle.
+     * @param amps Current limit, amps.
+     * @return The output, or the output of the same sign or 0 that draws
+     *         the limit.
+     */
+    public synchronized double limitCurrent(int m, double output, double amps) {
+	step();
+	double back = m_velocity[m] * m_currentPerSpeed[m];
+	double perOutput = m_busVoltage * m_currentPerVolt[m];
+	if (output > 0)
+	    return Math.min(output, Math.max(0, (amps + back) / perOutput));
+	if (output < 0)
+	    return Math.max(output, Math.min(0, (back - amps) / perOutput));
+	return output;
+    }
+
+    /**
+     * Draw a constant current from the battery, from now on.
+     *
+     * @param name Name of the load, as given to the PDP wiring.
+     */
+    public synchronized void setLoad(String name, double amps) {
+	step();
+	m_loads.put(name, amps);
+	m_loadCurrent = 0;
+	for (double load : m_loads.values())
+	    m_loadCurrent += load;
+	updateBus();
+    }
+
+    /**
+     * @return The current of a load, 0 if there is no such load.
+     */
+    public synchronized double getLoad(String name) {
+	step();
+	return m_loads.getOrDefault(name, 0.);
+    }
+
+    /**
+     * @return The battery voltage at the motor controllers.
+     */
+    public synchronized double getBusVoltage() {
+	step();
+	return m_busVoltage;
+    }
+
+    /**
+     * @return The current drawn from the battery by the motors and the
+     *         other loads, amps.
+     */
+    public synchronized double getBatteryCurrent() {
+	step();
+	return m_batteryCurrent;
+    }
+
+    /**
+     * @return The state of charge of the battery, from 0 to 1.
+     */
+    public synchronized double getBatteryCharge() {
+	step();
+	return m_battery.getCharge();
+    }
+
+    /**
+     * @return true while the bus voltage is too low for the outputs.
+     */
+    public synchronized boolean isBrownedOut() {
+	step();
+	return m_brownedOut;
+    }
+
+    /**
+     * @return Position of the output shaft in encoder counts.
+     */
+    public synchronized double getPosition(int m) {
+	step();
+	return m_position[m] * m_countsPerRadian[m];
+    }
+
+    /**
+     * @return Velocity of the output shaft in encoder counts per second.
+     */
+    public synchronized double getVelocity(int m) {
+	step();
+	return m_velocity[m] * m_countsPerRadian[m];
+    }
+
+    /**
+     * @return Current through the motors of the gearbox, amps, positive
+     *         when driving forward.
+     */
+    public synchronized double getSignedCurrent(int m) {
+	step();
+	return m_current[m];
+    }
+
+    /**
+     * @return Total current drawn by the motors of the gearbox, amps.
+     */
+    public synchronized double getCurrent(int m) {
+	step();
+	return Math.abs(m_current[m]);
+    }
+
+    /**
+     * @return Temperature of the motors of the gearbox, degrees C.
+     */
+    public synchronized double getTemperature(int m) {
+	step();
+	return m_temperature[m];
+    }
+
+    /**
+     * @return true if the command file gave any limit switch.
+     */
+    public synchronized boolean hasLimitSwitches() {
+	return !m_forwardLimits.isEmpty() || !m_reverseLimits.isEmpty();
+    }
+
+    /**
+     * A limit switch given a position is pressed while the mechanism is at
+     * or beyond it, in encoder counts from where the motor started,
+     * positive in the direction the controller drives forward.
+     *
+     * @param forward true for the forward limit switch.
+     * @return true if the limit switch of the motor is pressed.
+     */
+    public synchronized boolean isLimitSwitchPressed(int m, boolean forward) {
+	step();
+	LimitSwitch limit = (forward ? m_forwardLimits : m_reverseLimits).get(m_name[m]);
+	if (limit == null)
+	    return false;
+	if (limit.m_scripted)
+	    return limit.m_pressed;
+	double position = m_position[m] * m_countsPerRadian[m] * m_outputSign[m];
+	return forward ? position >= limit.m_position : position <= limit.m_position;
+    }
+
+    /**
+     * Advance every motor to the current time.
+     */
+    public synchronized void update() {
+	step();
+    }
+
+    /**
+     * Print the wall clock time spent stepping the physics and the
+     * controllers, per tick, and how much faster than real time that is.
+     */
+    public synchronized void reportCost(PrintStream out) {
+	if (m_ticks == 0 || m_stepNanos == 0)
+	    return;
+	out.printf("Physics: %d ticks, %d substeps per tick, %.2fus per tick, %.0fx real time%n",
+		   m_ticks, m_substeps, m_stepNanos / 1e3 / m_ticks, m_steppedMicros * 1e3 / m_stepNanos);
+    }
+
+    /**
+     * @return The index of a motor, or -1 if there is no motor with that
+     *         name.
+     */
+    synchronized int indexOf(String name) {
+	Integer m = m_byName.get(name);
+	return m == null ? -1 : m;
+    }
+
+    /**
+     * @return Speed of the output shaft, radians per second, as of the
+     *         last step.
+     */
+    synchronized double getShaftVelocity(int m) {
+	return m_velocity[m];
+    }
+
+    public synchronized String getName(int m) {
+	return m_name[m];
+    }
+
+    public synchronized DCMotor getMotor(int m) {
+	return m_model[m].m_motor;
+    }
+
+    public synchronized int getCountsPerRev(int m) {
+	return m_model[m].m_countsPerRev;
+    }
+}
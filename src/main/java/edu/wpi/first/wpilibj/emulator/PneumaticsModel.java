@@ -0,0 +1,338 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * The Pneumatics Control Modules: their solenoid outputs, one-shot
+ * pulses, compressor and air tanks.
+ *
+ * <p>The outputs of a PCM are a single state word, one bit per channel,
+ * read by Solenoid.get and SolenoidBase.getAll as one snapshot.  A pulse
+ * started by startPulse turns its channel on for the duration set by
+ * setPulseDuration, in 10ms steps from 10ms to 2.55s, and is ended by the
+ * physics tick ({@link MotorPhysics#kTickMicros}), which times the
+ * pulses of all channels.
+ *
+ * <p>Each PCM has its own tanks, given in the command file by
+ * <pre>
+ *   pcm.model &lt;module&gt; &lt;tank volume&gt; [&lt;compressor flow&gt; [&lt;working pressure&gt; [&lt;pressure&gt;]]]
+ *   pcm.cylinder &lt;module&gt; &lt;channel&gt; &lt;on volume&gt; [&lt;off volume&gt;]
+ * </pre>
+ * with the tank volume in liters, the compressor flow of free air at 0
+ * psi in liters per minute, the regulated working pressure and the
+ * initial tank pressure in psi, and the volume of the cylinders moved
+ * when the channel turns on and off in cm^3.  Each move fills its
+ * cylinders with air at the working pressure, or at the tank pressure
+ * when it is lower.  The compressor delivers less air as the pressure
+ * rises, half its flow at {@link #kFullPressure}.
+ *
+ * <p>With closed loop control, the default, the compressor runs while the
+ * robot is enabled and the pressure switch is low: from below
+ * {@link #kRefillPressure} until {@link #kFullPressure}.  It draws its
+ * current from the battery as the compressor load, see
+ * {@link PowerDistributionModel}.  Moves that leave the tank below the
+ * working pressure are reported on standard error.
+ */
+public class PneumaticsModel implements MotorPhysics.Controller {
+    public static final int kChannels = 10;
+    public static final double kAtmosphere = 14.7;
+    public static final double kFullPressure = 120;
+    public static final double kRefillPressure = 95;
+    public static final double kDefaultTankVolume = 1.2;
+    public static final double kDefaultCompressorFlow = 25;
+    public static final double kDefaultWorkingPressure = 60;
+    public static final double kCompressorFreeCurrent = 7;
+    public static final double kCompressorCurrentPerPsi = 0.06;
+
+    // One PCM.
+    private static class Module {
+	int m_state;
+	final int[] m_pulseMs = new int[kChannels];
+	final long[] m_pulseEnd = new long[kChannels];
+	final double[] m_onVolume = new double[kChannels];
+	final double[] m_offVolume = new double[kChannels];
+	double m_tankVolume = kDefaultTankVolume;
+	double m_compressorFlow = kDefaultCompressorFlow;
+	double m_workingPressure = kDefaultWorkingPressure;
+	double m_pressure = kFullPressure;
+	boolean m_closedLoop = true;
+	boolean m_pressureLow;
+	boolean m_compressorOn;
+	long m_lastLowReport = -1;
+
+	Module() {
+	    Arrays.fill(m_pulseMs, 10);
+	    Arrays.fill(m_pulseEnd, -1);
+	}
+    }
+
+    private static final PneumaticsModel instance = new PneumaticsModel();
+
+    private final MotorPhysics m_physics = MotorPhysics.getInstance();
+    private Module[] m_modules = new Module[0];
+    private long m_lastUpdate = -1;
+
+    public static PneumaticsModel getInstance() {
+	return instance;
+    }
+
+    private PneumaticsModel() {
+	m_physics.addController(this);
+    }
+
+    // Called with the physics lock held.
+    private Module module(int module) {
+	if (module >= m_modules.length)
+	    m_modules = Arrays.copyOf(m_modules, module + 1);
+	if (m_modules[module] == null)
+	    m_modules[module] = new Module();
+	return m_modules[module];
+    }
+
+    /**
+     * Handle the pcm.model and pcm.cylinder commands.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public boolean processCommand(String[] cmd) {
+	boolean model = cmd[0].equalsIgnoreCase("pcm.model");
+	if (!model && !cmd[0].equalsIgnoreCase("pcm.cylinder"))
+	    return false;
+	if (model ? cmd.length < 3 || cmd.length > 6 : cmd.length < 4 || cmd.length > 5)
+	    throw new IllegalArgumentException("Invalid number of arguments to " + cmd[0]);
+	int module;
+	double[] v = new double[cmd.length - 2];
+	try {
+	    module = Integer.parseInt(cmd[1]);
+	    for (int i = 0; i < v.length; i++)
+		v[i] = Double.parseDouble(cmd[i + 2]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	if (module < 0 || module > 62)
+	    throw new IllegalArgumentException("Invalid PCM " + module);
+	for (double d : v) {
+	    if (!(d >= 0))
+		throw new IllegalArgumentException(cmd[0] + " values must not be negative");
+	}
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    if (model) {
+		if (!(v[0] > 0))
+		    throw new IllegalArgumentException("Invalid tank volume");
+		p.m_tankVolume = v[0];
+		if (v.length > 1)
+		    p.m_compressorFlow = v[1];
+		if (v.length > 2)
+		    p.m_workingPressure = v[2];
+		if (v.length > 3)
+		    p.m_pressure = v[3];
+	    } else {
+		int channel = (int)v[0];
+		if (channel != v[0] || channel >= kChannels)
+		    throw new IllegalArgumentException("Invalid solenoid channel " + cmd[2]);
+		p.m_onVolume[channel] = v[1];
+		p.m_offVolume[channel] = v.length > 2 ? v[2] : 0;
+	    }
+	    updateCompressor(p);
+	}
+	return true;
+    }
+
+    // Move the cylinders of the channels that change to the new state.
+    private void setState(int module, Module p, int state) {
+	int changed = p.m_state ^ state;
+	p.m_state = state;
+	if (changed == 0)
+	    return;
+	double volume = 0;
+	for (int c = 0; c < kChannels; c++) {
+	    if ((changed & (1 << c)) != 0)
+		volume += (state & (1 << c)) != 0 ? p.m_onVolume[c] : p.m_offVolume[c];
+	}
+	if (volume == 0)
+	    return;
+	// Free air used, liters, and the pressure drop it makes in the tank.
+	double pressure = Math.min(p.m_workingPressure, p.m_pressure);
+	double air = volume / 1000 * (pressure + kAtmosphere) / kAtmosphere;
+	p.m_pressure = Math.max(0, p.m_pressure - air * kAtmosphere / p.m_tankVolume);
+	if (p.m_pressure < p.m_workingPressure) {
+	    long now = RobotController.getFPGATime();
+	    if (p.m_lastLowReport < 0 || now - p.m_lastLowReport >= 1000000) {
+		System.err.printf("PCM %d: %.1f psi is below the working pressure%n", module, p.m_pressure);
+		p.m_lastLowReport = now;
+	    }
+	}
+	updateCompressor(p);
+    }
+
+    // Follow the pressure switch, and draw the compressor current.
+    private void updateCompressor(Module p) {
+	if (p.m_pressure >= kFullPressure)
+	    p.m_pressureLow = false;
+	else if (p.m_pressure < kRefillPressure)
+	    p.m_pressureLow = true;
+	p.m_compressorOn = p.m_closedLoop && p.m_pressureLow && m_physics.isEnabled();
+	double current = 0;
+	for (Module q : m_modules) {
+	    if (q != null && q.m_compressorOn)
+		current += kCompressorFreeCurrent + kCompressorCurrentPerPsi * q.m_pressure;
+	}
+	m_physics.setLoad("compressor", current);
+    }
+
+    /**
+     * Turn a solenoid on or off, ending its pulse.
+     */
+    public void set(int module, int channel, boolean on) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    p.m_pulseEnd[channel] = -1;
+	    setState(module, p, on ? p.m_state | (1 << channel) : p.m_state & ~(1 << channel));
+	}
+    }
+
+    /**
+     * @return The state word of a PCM, bit n for channel n.
+     */
+    public int getAll(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return module(module).m_state;
+	}
+    }
+
+    /**
+     * Set the duration of the pulses of a channel, rounded to 10ms.
+     */
+    public void setPulseDuration(int module, int channel, long durationMs) {
+	synchronized (m_physics) {
+	    module(module).m_pulseMs[channel] = (int)Math.max(1, Math.min(255, (durationMs + 5) / 10)) * 10;
+	}
+    }
+
+    /**
+     * Turn a channel on for its pulse duration.
+     */
+    public void startPulse(int module, int channel) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    setState(module, p, p.m_state | (1 << channel));
+	    p.m_pulseEnd[channel] = RobotController.getFPGATime() + p.m_pulseMs[channel] * 1000L;
+	}
+    }
+
+    public void setClosedLoopControl(int module, boolean on) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    p.m_closedLoop = on;
+	    updateCompressor(p);
+	}
+    }
+
+    public boolean getClosedLoopControl(int module) {
+	synchronized (m_physics) {
+	    return module(module).m_closedLoop;
+	}
+    }
+
+    /**
+     * @return true while the compressor runs.
+     */
+    public boolean isCompressorOn(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return module(module).m_compressorOn;
+	}
+    }
+
+    /**
+     * @return true while the pressure switch calls for air.
+     */
+    public boolean isPressureLow(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return module(module).m_pressureLow;
+	}
+    }
+
+    /**
+     * @return The current of the compressor, amps.
+     */
+    public double getCompressorCurrent(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    return p.m_compressorOn ? kCompressorFreeCurrent + kCompressorCurrentPerPsi * p.m_pressure : 0;
+	}
+    }
+
+    /**
+     * @return The pressure in the tanks, psi.
+     */
+    public double getPressure(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return module(module).m_pressure;
+	}
+    }
+
+    /**
+     * @return The pressure at the cylinders, psi.
+     */
+    public double getWorkingPressure(int module) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    Module p = module(module);
+	    return Math.min(p.m_workingPressure, p.m_pressure);
+	}
+    }
+
+    // Tick while a pulse is pending or the compressor runs or should.
+    @Override
+    public boolean isActive() {
+	for (Module p : m_modules) {
+	    if (p == null)
+		continue;
+	    if (p.m_compressorOn || p.m_closedLoop && p.m_pressureLow)
+		return true;
+	    for (long end : p.m_pulseEnd) {
+		if (end >= 0)
+		    return true;
+	    }
+	}
+	return false;
+    }
+
+    @Override
+    public void update(long now) {
+	// Longer intervals were without compressor or pulses.
+	double dt = m_lastUpdate < 0 ? 0 : Math.min(now - m_lastUpdate, MotorPhysics.kTickMicros) / 1e6;
+	m_lastUpdate = now;
+	for (int module = 0; module < m_modules.length; module++) {
+	    Module p = m_modules[module];
+	    if (p == null)
+		continue;
+	    if (p.m_compressorOn) {
+		double flow = p.m_compressorFlow / 60 * (1 - p.m_pressure / (2 * kFullPressure));
+		p.m_pressure += flow * dt * kAtmosphere / p.m_tankVolume;
+	    }
+	    int state = p.m_state;
+	    for (int c = 0; c < kChannels; c++) {
+		if (p.m_pulseEnd[c] >= 0 && now >= p.m_pulseEnd[c]) {
+		    p.m_pulseEnd[c] = -1;
+		    state &= ~(1 << c);
+		}
+	    }
+	    setState(module, p, state);
+	    updateCompressor(p);
+	}
+    }
+}
@@ -0,0 +1,150 @@
+package edu.wpi.first.wpilibj.emulator;
+
+import java.util.Arrays;
+
+/**
+ * The channels of the Power Distribution Panel, wired to the emulated
+ * devices by the command file
+ * <pre>
+ *   pdp.channel &lt;channel&gt; &lt;device&gt;
+ * </pre>
+ * where the device is talonsrx:&lt;CAN device number&gt; for a Talon SRX,
+ * victorspx:&lt;CAN device number&gt; for a Victor SPX,
+ * sparkmax:&lt;CAN id&gt; for a SPARK MAX, pwm:&lt;channel&gt;
+ * for a PWM speed controller, compressor for the compressor, or none.
+ *
+ * <p>The current of a channel is the current the controller draws from
+ * the battery in {@link MotorPhysics}, or the current of the load of the
+ * same name, so it is 0 until the device exists and for channels that are
+ * not wired.  The total energy is integrated every
+ * {@link MotorPhysics#kTickMicros} from the bus voltage and the total
+ * current of the channels.
+ */
+public class PowerDistributionModel implements MotorPhysics.Controller {
+    public static final int kChannels = 16;
+
+    private static final PowerDistributionModel instance = new PowerDistributionModel();
+
+    private final MotorPhysics m_physics = MotorPhysics.getInstance();
+    private final String[] m_device = new String[kChannels];
+    // The motor of each channel, -1 until it exists.
+    private final int[] m_motor = new int[kChannels];
+    private long m_lastUpdate = -1;
+    private double m_energy;
+
+    public static PowerDistributionModel getInstance() {
+	return instance;
+    }
+
+    private PowerDistributionModel() {
+	Arrays.fill(m_motor, -1);
+	m_physics.addController(this);
+    }
+
+    /**
+     * Handle the pdp.channel command.
+     *
+     * @return false if the command is not recognized.
+     * @throws IllegalArgumentException if the command is malformed.
+     */
+    public boolean processCommand(String[] cmd) {
+	if (!cmd[0].equalsIgnoreCase("pdp.channel"))
+	    return false;
+	if (cmd.length != 3)
+	    throw new IllegalArgumentException("Invalid number of arguments to pdp.channel");
+	int channel;
+	try {
+	    channel = Integer.parseInt(cmd[1]);
+	} catch (NumberFormatException nfe) {
+	    throw new IllegalArgumentException("Invalid number " + nfe.getMessage());
+	}
+	if (channel < 0 || channel >= kChannels)
+	    throw new IllegalArgumentException("Invalid PDP channel " + channel);
+	String device = cmd[2];
+	if (!device.matches("(talonsrx|victorspx|sparkmax|pwm):\\d+|compressor|none"))
+	    throw new IllegalArgumentException("Unknown PDP device '" + device + "'");
+	synchronized (m_physics) {
+	    m_physics.update();
+	    m_device[channel] = device.equals("none") ? null : device;
+	    m_motor[channel] = -1;
+	}
+	return true;
+    }
+
+    // Called with the physics lock held.
+    private double channelCurrent(int channel) {
+	String device = m_device[channel];
+	if (device == null)
+	    return 0;
+	if (m_motor[channel] < 0) {
+	    m_motor[channel] = m_physics.indexOf(device);
+	    if (m_motor[channel] < 0)
+		return Math.abs(m_physics.getLoad(device));
+	}
+	return Math.abs(m_physics.getSupplyCurrent(m_motor[channel]));
+    }
+
+    /**
+     * @return The current of a channel, amps.
+     */
+    public double getCurrent(int channel) {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return channelCurrent(channel);
+	}
+    }
+
+    /**
+     * @return The total current of the channels, amps.
+     */
+    public double getTotalCurrent() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    double total = 0;
+	    for (int channel = 0; channel < kChannels; channel++)
+		total += channelCurrent(channel);
+	    return total;
+	}
+    }
+
+    /**
+     * @return The power drawn by the channels, watts.
+     */
+    public double getTotalPower() {
+	synchronized (m_physics) {
+	    return getTotalCurrent() * m_physics.getBusVoltage();
+	}
+    }
+
+    /**
+     * @return The energy drawn by the channels since the last reset,
+     *         joules.
+     */
+    public double getTotalEnergy() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    return m_energy;
+	}
+    }
+
+    public void resetTotalEnergy() {
+	synchronized (m_physics) {
+	    m_physics.update();
+	    m_energy = 0;
+	}
+    }
+
+    @Override
+    public boolean isActive() {
+	return false;
+    }
+
+    // The physics only runs the controllers every tick while there is
+    // current, so a longer interval is one without power.
+    @Override
+    public void update(long now) {
+	if (m_lastUpdate >= 0)
+	    m_energy += getTotalPower() * Math.min(now - m_lastUpdate, MotorPhysics.kTickMicros) / 1e6;
+	m_lastUpdate = now;
+    }
+}
@@ -0,0 +1,18 @@
+package edu.wpi.first.wpilibj.emulator;
+
+/**
+ * Emulation of a device on an SPI port, answering the transfers made by
+ * the SPI auto-transfer engine.
+ */
+public interface SPIDevice {
+    /**
+     * Answer one transfer.  Called with the physics lock held, at the
+     * physics tick that the transfer happened in, and must not block.
+     *
+     * @param time FPGA time of the transfer.
+     * @param dataToSend The bytes sent to the device.
+     * @param dataReceived The bytes the device sends back, as many as
+     *        were sent.
+     */
+    void transfer(long time, byte[] dataToSend, byte[] dataReceived);
+}
@@ -10,8 +10,11 @@ module robot_sim {
     exports edu.wpi.first.networktables;
     exports edu.wpi.first.wpilibj;
     exports edu.wpi.first.wpilibj.drive;
+    exports edu.wpi.first.wpilibj.emulator;
     exports edu.wpi.first.wpilibj.interfaces;
     exports edu.wpi.first.wpilibj.shuffleboard;
     exports edu.wpi.first.wpilibj.smartdashboard;
     exports edu.wpi.first.wpilibj.util;
+
+    uses edu.wpi.first.wpilibj.emulator.Mechanism;
 }
\ No newline at end of file